@@ -0,0 +1,68 @@
+package chess;
+
+import chess.pieces.Piece;
+
+/**
+ * Draws the board as text for the CLI.  The frame, labels and separators are laid out once in a character template;
+ * rendering only rewrites the cells whose piece has changed since the last render, so it creates no garbage.
+ * A renderer belongs to one CLI and is not thread-safe.
+ */
+class BoardRenderer {
+    private final char[] template;
+    private final int[] cells = new int[64];
+    private final Piece[] shown = new Piece[64];
+
+    /**
+     * @param newline The line separator to end lines with
+     */
+    BoardRenderer(String newline) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(newline);
+
+        appendColumnLabels(builder, newline);
+        for (int row = Position.MAX_ROW; row >= Position.MIN_ROW; row--) {
+            appendSeparator(builder, newline);
+            builder.append(row);
+            for (char column = Position.MIN_COLUMN; column <= Position.MAX_COLUMN; column++) {
+                builder.append(" | ");
+                cells[(row - Position.MIN_ROW) * 8 + column - Position.MIN_COLUMN] = builder.length();
+                builder.append(' ');
+            }
+            builder.append(" | ").append(row).append(newline);
+        }
+
+        appendSeparator(builder, newline);
+        appendColumnLabels(builder, newline);
+
+        template = new char[builder.length()];
+        builder.getChars(0, template.length, template, 0);
+    }
+
+    /**
+     * Bring the template up to date with the board.
+     * @return The rendered board, which is overwritten by the next render
+     */
+    char[] render(GameState state) {
+        for (int square = 0; square < 64; square++) {
+            Piece piece = state.getPieceAt(Position.fromIndex(square));
+            if (piece != shown[square]) {
+                template[cells[square]] = piece == null ? ' ' : piece.getIdentifier();
+                shown[square] = piece;
+            }
+        }
+        return template;
+    }
+
+    private static void appendSeparator(StringBuilder builder, String newline) {
+        builder.append("  +---+---+---+---+---+---+---+---+").append(newline);
+    }
+
+    private static void appendColumnLabels(StringBuilder builder, String newline) {
+        builder.append("   ");
+        for (char c = Position.MIN_COLUMN; c <= Position.MAX_COLUMN; c++) {
+            builder.append(" ").append(c).append("  ");
+        }
+
+        builder.append(newline);
+    }
+}
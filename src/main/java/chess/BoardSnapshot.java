@@ -0,0 +1,93 @@
+package chess;
+
+/**
+ * An immutable copy of a position that any thread can read.  The board is held as eight rank arrays of FEN letters
+ * which are never written after construction, so a snapshot taken after a move shares every rank the move did not
+ * touch with the snapshot before it.
+ * @see GameState#publishSnapshot()
+ */
+public final class BoardSnapshot {
+    private final byte[][] ranks;
+    private final Player currentPlayer;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+    private final long hash;
+
+    BoardSnapshot(byte[][] ranks, Player currentPlayer, int halfmoveClock, int fullmoveNumber, long hash) {
+        this.ranks = ranks;
+        this.currentPlayer = currentPlayer;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+        this.hash = hash;
+    }
+
+    /**
+     * @param square The square index, a1 = 0 to h8 = 63
+     * @return The FEN letter of the piece on the square, upper case for White, or 0 if it is empty
+     */
+    public char getPieceAt(int square) {
+        return (char) ranks[square >> 3][square & 7];
+    }
+
+    public char getPieceAt(Position position) {
+        return getPieceAt(position.getIndex());
+    }
+
+    public Player getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * @return The rank array for a rank, a row index from 0; shared with other snapshots and never to be written
+     */
+    byte[] getRank(int rank) {
+        return ranks[rank];
+    }
+
+    /**
+     * Describe the position in Forsyth-Edwards Notation, as {@link GameState#toFen()} does.
+     */
+    public String toFen() {
+        StringBuilder builder = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int column = 0; column < 8; column++) {
+                byte piece = ranks[rank][column];
+                if (piece == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    builder.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                builder.append((char) piece);
+            }
+            if (empty > 0)
+                builder.append((char) ('0' + empty));
+            if (rank > 0)
+                builder.append('/');
+        }
+
+        builder.append(currentPlayer == Player.White ? " w - - " : " b - - ");
+        builder.append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
@@ -1,5 +1,12 @@
 package chess;
 
+import chess.engine.ClassicEvaluator;
+import chess.engine.Search;
+import chess.engine.SearchListener;
+import chess.engine.SearchResult;
+import chess.engine.TranspositionTable;
+import chess.metrics.LatencyHistogram;
+import chess.metrics.Metrics;
 import chess.pieces.Piece;
 
 import java.io.*;
@@ -11,24 +18,125 @@ import java.util.Map;
  */
 public class CLI {
     private static final String NEWLINE = System.getProperty("line.separator");
+    private static final LatencyHistogram RENDERING = Metrics.histogram("render");
+    private static final LatencyHistogram CHECKMATE = Metrics.histogram("checkmate");
+    private static final LatencyHistogram DRAW = Metrics.histogram("draw");
 
     private final BufferedReader inReader;
     private final PrintStream outStream;
 
     private GameState gameState = null;
+    private final GameHistory history = new GameHistory();
+    private final List<GameListener> listeners = new ArrayList<GameListener>();
+    private final Map<String, CliCommand> commands = new LinkedHashMap<String, CliCommand>();
+    private final Map<String, String> commandHelp = new LinkedHashMap<String, String>();
+    private final BoardRenderer renderer = new BoardRenderer(NEWLINE);
+    private static final int ANALYSIS_DEPTH = 4;
+
+    /**
+     * Limits on analysis, which anyone connected to the server can ask for
+     */
+    private static final int MAX_ANALYSIS_DEPTH = 8;
+    private static final int MAX_MULTI_PV = 8;
+    private static final long ANALYSIS_TIME_MILLIS = 5000;
+    private Search analysis;
+    private int analysisTableEntries = 1 << 16;
+    private int multiPv = 1;
+
+    private boolean batch = false;
+    private int flushInterval = 0;
+    private Writer batchWriter;
 
     public CLI(InputStream inputStream, PrintStream outStream) {
-        this.inReader = new BufferedReader(new InputStreamReader(inputStream));
+        this(new BufferedReader(new InputStreamReader(inputStream)), outStream);
+    }
+
+    /**
+     * @param inReader The commands, one per line
+     * @param outStream Receives the output; it is flushed after every prompt
+     */
+    public CLI(BufferedReader inReader, PrintStream outStream) {
+        this.inReader = inReader;
         this.outStream = outStream;
         writeOutput("Welcome to Chess!");
     }
 
+    /**
+     * Register a listener for the games played in this CLI.  Listeners added before the event loop starts are told
+     * about the first game.
+     */
+    public void addGameListener(GameListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeGameListener(GameListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Size the transposition table of the 'analyze' command, which is only allocated once a position is analysed.
+     * @param entries A power of two, or 0 to analyse without a table; 65536 by default
+     */
+    public void setAnalysisTableEntries(int entries) {
+        if (entries < 0 || entries > 0 && Integer.bitCount(entries) != 1)
+            throw new IllegalArgumentException("Entries must be 0 or a power of two: " + entries);
+        this.analysisTableEntries = entries;
+    }
+
+    /**
+     * Add a command to the ones the CLI knows.
+     * @param usage How 'help' shows the command, starting with its name, i.e. "resume <session>"
+     * @param description What 'help' says the command does
+     */
+    public void addCommand(String usage, String description, CliCommand command) {
+        commands.put(usage.split(" ")[0], command);
+        commandHelp.put(usage, description);
+    }
+
+    /**
+     * Set up a position, as the 'fen' command does.  The moves that led to it cannot be taken back.
+     */
+    public void loadPosition(GameState state) {
+        gameState.loadFen(state.toFen());
+        fireGameStarted();
+    }
+
+    /**
+     * Run without prompts or a board after every command, for scripts.  The board is only shown by the 'board'
+     * command, and output is buffered until the given number of commands have run or the input ends.
+     * @param flushInterval Commands between flushes, or 0 to flush only at the end
+     */
+    public void setBatchMode(int flushInterval) {
+        this.batch = true;
+        this.flushInterval = flushInterval;
+        this.batchWriter = new BufferedWriter(new OutputStreamWriter(outStream), 1 << 16);
+    }
+
     /**
      * Write the string to the output
      * @param str The string to write
      */
     private void writeOutput(String str) {
-        this.outStream.println(str);
+        if (batchWriter == null) {
+            this.outStream.println(str);
+            return;
+        }
+        try {
+            batchWriter.write(str);
+            batchWriter.write(NEWLINE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write output: ", e);
+        }
+    }
+
+    private void flushOutput() {
+        if (batchWriter == null)
+            return;
+        try {
+            batchWriter.flush();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write output: ", e);
+        }
     }
 
     /**
@@ -37,20 +145,39 @@ public class CLI {
      */
     private String getInput() {
         try {
-            this.outStream.print("> ");
+            if (!batch) {
+                this.outStream.print("> ");
+                this.outStream.flush();
+            }
             return inReader.readLine();
         } catch (IOException e) {
             throw new RuntimeException("Failed to read from input: ", e);
         }
     }
 
-    void startEventLoop() {
-        writeOutput("Type 'help' for a list of commands.");
+    /**
+     * Read and run commands until the input ends, the user quits or the game is drawn.
+     */
+    public void startEventLoop() {
+        try {
+            runEventLoop();
+        } finally {
+            flushOutput();
+        }
+    }
+
+    private void runEventLoop() {
+        if (!batch)
+            writeOutput("Type 'help' for a list of commands.");
         doNewGame();
 
-        while (true) {
-            showBoard();
-            writeOutput(gameState.getCurrentPlayer() + "'s Move");
+        for (int commands = 0; ; commands++) {
+            if (!batch) {
+                showBoard();
+                writeOutput(gameState.getCurrentPlayer() + "'s Move");
+            } else if (flushInterval > 0 && commands > 0 && commands % flushInterval == 0) {
+                flushOutput();
+            }
 
             String input = getInput();
             if (input == null) {
@@ -62,35 +189,104 @@ public class CLI {
                     doNewGame();
                 } else if (input.equals("quit")) {
                     writeOutput("Goodbye!");
-                    System.exit(0);
+                    return;
                 } else if (input.equals("board")) {
-                    writeOutput("Current Game:");
+                    if (batch)
+                        showBoard();
+                    else
+                        writeOutput("Current Game:");
                 } else if (input.equals("list")) {
                     displayMoveList();
+                } else if (input.equals("fen") || input.startsWith("fen ")) {
+                    doFen(input);
+                } else if (input.startsWith("multipv")) {
+                    doMultiPv(input);
+                } else if (input.startsWith("analyze")) {
+                    doAnalyze(input);
+                } else if (input.equals("stats")) {
+                    showStats();
+                } else if (input.equals("undo")) {
+                    doUndo();
+                } else if (input.equals("redo")) {
+                    doRedo();
+                } else if (input.startsWith("goto")) {
+                    doGoto(input);
                 } else if (input.startsWith("move")) {
                     performMove(input);
-                    if(isInDraw()) {
+                    long start = Metrics.ENABLED ? System.nanoTime() : 0;
+                    boolean draw = isInDraw();
+                    if (Metrics.ENABLED)
+                        DRAW.recordSince(start);
+                    if(draw) {
                          writeOutput("DRAW");
                          doNewGame();
                          return;
                     }
-                    if(isInCheckmate()) {
+                    start = Metrics.ENABLED ? System.nanoTime() : 0;
+                    boolean checkmate = isInCheckmate();
+                    if (Metrics.ENABLED)
+                        CHECKMATE.recordSince(start);
+                    if(checkmate) {
                         doNewGame();
                     }
-                } else {
+                } else if (!runAddedCommand(input)) {
                     writeOutput("I didn't understand that.  Type 'help' for a list of commands.");
                 }
             }
         }
     }
 
+    private boolean runAddedCommand(String input) {
+        for (Map.Entry<String, CliCommand> command : commands.entrySet()) {
+            String name = command.getKey();
+            if (input.equals(name) || input.startsWith(name + " ")) {
+                writeOutput(command.getValue().run(input.substring(name.length()).trim()));
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void doNewGame() {
         gameState = new GameState();
+        gameState.setIncrementalMoveGeneration(true);
         gameState.reset();
+        fireGameStarted();
+    }
+
+    private void fireGameStarted() {
+        history.start(gameState);
+        firePositionChanged();
+    }
+
+    /**
+     * Tell the listeners about a position that is not the result of a move, without touching the history
+     */
+    private void firePositionChanged() {
+        gameState.publishSnapshot();
+        for (GameListener listener : listeners) {
+            listener.gameStarted(gameState);
+        }
     }
 
-    private void showBoard() {
-        writeOutput(getBoardAsString());
+    /**
+     * Display the board for the user(s), writing the rendered characters straight to the output
+     */
+    void showBoard() {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        if (batchWriter == null) {
+            outStream.println(renderer.render(gameState));
+        } else {
+            // Straight from the template into the buffer
+            try {
+                batchWriter.write(renderer.render(gameState));
+                batchWriter.write(NEWLINE);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write output: ", e);
+            }
+        }
+        if (Metrics.ENABLED)
+            RENDERING.recordSince(start);
     }
 
     private void showCommands() {
@@ -101,70 +297,120 @@ public class CLI {
         writeOutput("    'board'                      Show the chess board");
         writeOutput("    'list'                       List all possible moves");
         writeOutput("    'move <colrow> <colrow>'     Make a move");
+        writeOutput("    'fen [<fen>]'                Show the position as FEN, or set up a FEN position");
+        writeOutput("    'undo'                       Take back the last move");
+        writeOutput("    'redo'                       Play the last move taken back again");
+        writeOutput("    'goto <ply>'                 Go to the position after the given number of moves");
+        writeOutput("    'stats'                      Show timings of move generation, validation and rendering");
+        writeOutput("    'multipv <n>'                Set how many moves 'analyze' shows, at most " + MAX_MULTI_PV);
+        writeOutput("    'analyze [<depth>]'          Search the position and show the best moves as they are found, "
+                + "to at most depth " + MAX_ANALYSIS_DEPTH);
+        for (Map.Entry<String, String> command : commandHelp.entrySet()) {
+            writeOutput(String.format("    %-29s%s", "'" + command.getKey() + "'", command.getValue()));
+        }
     }
 
-    /**
-     * Display the board for the user(s)
-     */
-    String getBoardAsString() {
-        StringBuilder builder = new StringBuilder();
-        builder.append(NEWLINE);
+    private void doMultiPv(String input) {
+        int lines = tryParseInt(input.substring(7).trim());
+        if (lines < 1) {
+            writeOutput("Invalid number of lines for multipv command");
+            return;
+        }
+        multiPv = Math.min(lines, MAX_MULTI_PV);
+    }
 
-        printColumnLabels(builder);
-        for (int i = Position.MAX_ROW; i >= Position.MIN_ROW; i--) {
-            printSeparator(builder);
-            printSquares(i, builder);
+    private void doAnalyze(String input) {
+        String argument = input.substring(7).trim();
+        int depth = argument.length() == 0 ? ANALYSIS_DEPTH : tryParseInt(argument);
+        if (depth < 1) {
+            writeOutput("Invalid depth for analyze command");
+            return;
+        }
+        depth = Math.min(depth, MAX_ANALYSIS_DEPTH);
+        if (analysis == null) {
+            analysis = new Search(new ClassicEvaluator());
+            if (analysisTableEntries > 0)
+                analysis.setTranspositionTable(new TranspositionTable(analysisTableEntries));
         }
 
-        printSeparator(builder);
-        printColumnLabels(builder);
+        SearchListener listener = new SearchListener() {
+            @Override
+            public void lineUpdated(int line, SearchResult result) {
+                StringBuilder pv = new StringBuilder();
+                for (Move move : result.getPrincipalVariation()) {
+                    pv.append(' ').append(move);
+                }
+                writeOutput("depth " + result.getDepth() + " line " + line + " score " + result.getScore()
+                        + " pv" + pv);
+            }
+        };
+        List<SearchResult> lines = analysis.search(gameState, depth, ANALYSIS_TIME_MILLIS, multiPv, listener);
+        if (lines.get(0).getBestMove() == null)
+            writeOutput("No legal moves");
+    }
 
-        return builder.toString();
+    private void showStats() {
+        if (!Metrics.ENABLED) {
+            writeOutput("Metrics are off; start with -Dchess.metrics=true to collect them");
+            return;
+        }
+        String report = Metrics.report();
+        writeOutput(report.length() == 0 ? "Nothing recorded yet" : report.trim());
     }
 
+    private void doFen(String input) {
+        String fen = input.substring(3).trim();
+        if (fen.length() == 0) {
+            writeOutput(gameState.toFen());
+            return;
+        }
 
-    private void printSquares(int rowLabel, StringBuilder builder) {
-        builder.append(rowLabel);
+        try {
+            gameState.loadFen(fen);
+            fireGameStarted();
+        } catch (IllegalArgumentException e) {
+            writeOutput("Invalid FEN: " + fen);
+        }
+    }
 
-        for (char c = Position.MIN_COLUMN; c <= Position.MAX_COLUMN; c++) {
-            Piece piece = gameState.getPieceAt(String.valueOf(c) + rowLabel);
-            char pieceChar = piece == null ? ' ' : piece.getIdentifier();
-            builder.append(" | ").append(pieceChar);
+    private void doUndo() {
+        if (!history.canUndo()) {
+            writeOutput("Nothing to undo");
+            return;
         }
-        builder.append(" | ").append(rowLabel).append(NEWLINE);
+        history.undo(gameState);
+        firePositionChanged();
     }
 
-    private void printSeparator(StringBuilder builder) {
-        builder.append("  +---+---+---+---+---+---+---+---+").append(NEWLINE);
+    private void doRedo() {
+        if (!history.canRedo()) {
+            writeOutput("Nothing to redo");
+            return;
+        }
+        history.redo(gameState);
+        firePositionChanged();
     }
 
-    private void printColumnLabels(StringBuilder builder) {
-        builder.append("   ");
-        for (char c = Position.MIN_COLUMN; c <= Position.MAX_COLUMN; c++) {
-            builder.append(" ").append(c).append("  ");
+    private void doGoto(String input) {
+        int ply = tryParseInt(input.substring(4).trim());
+        if (ply < 0 || ply > history.getLength()) {
+            writeOutput("Invalid ply for goto command, the game has " + history.getLength() + " plies");
+            return;
         }
+        history.goTo(gameState, ply);
+        firePositionChanged();
+    }
 
-        builder.append(NEWLINE);
+    /**
+     * The board as {@link #showBoard()} writes it, for tests
+     */
+    String getBoardAsString() {
+        return new String(renderer.render(gameState));
     }
 
     private void displayMoveList(){
-        Map<Position, Piece> map = gameState.getGameState();
-        Player currentPlayer = gameState.getCurrentPlayer();
-
-        Iterator it = map.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pairs = (Map.Entry)it.next();
-            Piece piece = (Piece)pairs.getValue();
-            Position pos = (Position)pairs.getKey();
-
-            if(piece.getOwner() == currentPlayer){
-                List<Position> positions = piece.getPossiblePositions(pos, map, currentPlayer);
-                if(positions != null){
-                    for (Position p : positions){
-                       writeOutput( pos.toString() + " " + p.toString());
-                    }
-                }
-            }
+        for (Move move : gameState.getLegalMoves()) {
+            writeOutput(move.toString());
         }
     }
 
@@ -187,17 +433,22 @@ public class CLI {
         Position destination = new Position(colDest, rowDest);
 
         Move move = new Move(origin, destination);
-        if (!move.VerifyOrigin(gameState.getGameState(), gameState.getCurrentPlayer())) {
+        if (!move.VerifyOrigin(gameState)) {
             writeOutput("invalid origin for move command");
             return;
         }
 
-        if (!move.VerifyDestination(gameState.getGameState(), gameState.getCurrentPlayer())) {
+        if (!move.VerifyDestination(gameState)) {
             writeOutput("invalid destination for move command");
             return;
         }
 
         gameState.movePiece(move);
+        history.record(gameState, move);
+        gameState.publishSnapshot();
+        for (GameListener listener : listeners) {
+            listener.movePlayed(gameState, move);
+        }
     }
 
     private boolean verifyMoveInput(String input) {
@@ -244,48 +495,16 @@ public class CLI {
         if(currentPlayer == Player.Black)
             attackingPlayer = Player.White;
 
-        List<Position> attackerPositions = getPositions(attackingPlayer);
-        List<Position> kingPositions = getKingPositions(currentPlayer);
-        List<Position> matchedPositions = new LinkedList<Position>();
+        if(!gameState.isCheckmate()) return false;
 
-        for (Position kp : kingPositions) {
-            for (Position ap : attackerPositions) {
-                if (kp.getColumn() == ap.getColumn() && kp.getRow() == ap.getRow()) {
-                    matchedPositions.add(ap);
-                    break;
-                }
-            }
-        }
-
-        //not in danger
-        if(matchedPositions.size() == 0) return false;
-
-        //if all king positions can be matched by the opponent
-        if(matchedPositions.size() == kingPositions.size()) {
-            writeOutput("Checkmate - " +attackingPlayer + " WINS!");
-            return true;
-        }
-
-        return false;
+        writeOutput("Checkmate - " +attackingPlayer + " WINS!");
+        return true;
     }
 
     private boolean isInDraw(){
         //if checkmate is not possible
-        Map<Position, Piece> blackMap = new HashMap<Position, Piece>();
-        Map<Position, Piece> whiteMap = new HashMap<Position, Piece>();
-        Map<Position, Piece> map = gameState.getGameState();
-
-        Iterator it = map.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry pairs = (Map.Entry)it.next();
-            Piece piece = (Piece)pairs.getValue();
-            Position pos = (Position)pairs.getKey();
-
-            if(piece.getOwner() == Player.Black)
-               blackMap.put(pos, piece);
-            else
-               whiteMap.put(pos, piece);
-        }
+        Map<Position, Piece> blackMap = getPieces(Player.Black);
+        Map<Position, Piece> whiteMap = getPieces(Player.White);
 
         //both are king
         if(blackMap.size() == 1 && whiteMap.size()== 1) return true;
@@ -329,78 +548,55 @@ public class CLI {
         return true;
     }
 
-    private List<Position> getPositions(Player player){
-        List<Position> positions = new LinkedList<Position>();
-        Map<Position, Piece> map = gameState.getGameState();
-        Iterator it = map.entrySet().iterator();
-
-        while (it.hasNext()) {
-            Map.Entry pairs = (Map.Entry)it.next();
-            Piece piece = (Piece)pairs.getValue();
-            Position pos = (Position)pairs.getKey();
-
-            if(piece.getOwner() == player) {
-                List<Position> piecePositions = piece.getPossiblePositions(pos, map, player);
-                for (Position p : piecePositions){
-                    positions.add(p);
-                }
-            }
+    private Map<Position, Piece> getPieces(Player player){
+        Map<Position, Piece> pieces = new HashMap<Position, Piece>();
+        long mask = gameState.getPieceMask(player);
+        while (mask != 0) {
+            Position pos = Position.fromIndex(Long.numberOfTrailingZeros(mask));
+            mask &= mask - 1;
+            pieces.put(pos, gameState.getPieceAt(pos));
         }
-
-        return positions;
+        return pieces;
     }
 
-    private List<Position> getKingPositions(Player player){
-        List<Position> positions = new LinkedList<Position>();
-        Map<Position, Piece> map = gameState.getGameState();
-        Iterator it = map.entrySet().iterator();
-
-        while (it.hasNext()) {
-            Map.Entry pairs = (Map.Entry)it.next();
-            Piece piece = (Piece)pairs.getValue();
-            if(piece.getIdentifier() != 'k') continue;
-
-            Position pos = (Position)pairs.getKey();
-
-            if(piece.getOwner() == player) {
-                List<Position> piecePositions = piece.getPossiblePositions(pos, map, player);
-                for (Position p : piecePositions){
-                    positions.add(p);
-                }
-
-                //add current position because king doesn't have to move if not in danger
-                positions.add(pos);
+    /**
+     * Play interactively, or with {@code --batch [file] [--flush <commands>]} run the commands in the file or on
+     * standard input without prompts or boards.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean batch = false;
+        int flushInterval = 0;
+        String script = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--batch")) {
+                batch = true;
+                if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                    script = args[++i];
+            } else if (args[i].equals("--flush") && i + 1 < args.length && isNumber(args[i + 1])) {
+                flushInterval = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Unknown argument: " + args[i]);
+                System.err.println("Usage: CLI [--batch [<file>] [--flush <commands>]]");
+                return;
             }
         }
 
-        return positions;
-    }
-
-    private List<Position> getDefensivePositions(Player player){
-        List<Position> positions = new LinkedList<Position>();
-        Map<Position, Piece> map = gameState.getGameState();
-        Iterator it = map.entrySet().iterator();
-
-        while (it.hasNext()) {
-            Map.Entry pairs = (Map.Entry)it.next();
-            Piece piece = (Piece)pairs.getValue();
-            if(piece.getIdentifier() == 'k') continue;
-
-            Position pos = (Position)pairs.getKey();
-
-            if(piece.getOwner() == player) {
-                List<Position> piecePositions = piece.getPossiblePositions(pos, map, player);
-                for (Position p : piecePositions){
-                    positions.add(p);
-                }
-            }
+        InputStream in = script == null ? System.in : new FileInputStream(script);
+        CLI cli = new CLI(in, System.out);
+        if (batch)
+            cli.setBatchMode(flushInterval);
+        try {
+            cli.startEventLoop();
+        } finally {
+            in.close();
         }
-
-        return positions;
     }
 
-    public static void main(String[] args) {
-        CLI cli = new CLI(System.in, System.out);
-        cli.startEventLoop();
+    private static boolean isNumber(String value) {
+        try {
+            return Integer.parseInt(value) >= 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 }
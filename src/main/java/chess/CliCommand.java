@@ -0,0 +1,14 @@
+package chess;
+
+/**
+ * A command added to a {@link CLI} by whatever hosts it, such as the server's 'resume'.
+ */
+public interface CliCommand {
+
+    /**
+     * Run the command.  It runs on the thread of the CLI's event loop, so it may call back into the CLI.
+     * @param argument The rest of the command line after the command's name, trimmed
+     * @return The line to show the user
+     */
+    String run(String argument);
+}
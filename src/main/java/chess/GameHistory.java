@@ -0,0 +1,123 @@
+package chess;
+
+import java.util.Arrays;
+
+/**
+ * The moves of a game, for taking moves back and jumping to any ply.  Moves are kept as one short each, and the
+ * position is saved as FEN every few plies, so going to any ply sets up the nearest saved position at or before it
+ * and replays at most that many moves, however long the game is.  Taking moves back keeps them for redo until a
+ * different move is played.
+ */
+public class GameHistory {
+    private final int snapshotInterval;
+    private short[] moves = new short[64];
+    private String[] snapshots = new String[8];
+    private int length;
+    private int ply;
+
+    public GameHistory() {
+        this(16);
+    }
+
+    /**
+     * @param snapshotInterval Save the position every this many plies
+     */
+    public GameHistory(int snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    /**
+     * Forget the previous game and start from the given position.
+     */
+    public void start(GameState state) {
+        length = 0;
+        ply = 0;
+        Arrays.fill(snapshots, null);
+        snapshots[0] = state.toFen();
+    }
+
+    /**
+     * Record a move that was just played.  If it is the move that was taken back next, the moves after it are kept
+     * for redo; otherwise every move taken back is forgotten.
+     * @param state The game, already after the move
+     */
+    public void record(GameState state, Move move) {
+        short code = (short) (move.getOrigin().getIndex() << 6 | move.getDestination().getIndex());
+        if (ply < length && moves[ply] == code) {
+            ply++;
+            return;
+        }
+
+        if (ply == moves.length)
+            moves = Arrays.copyOf(moves, ply * 2);
+        moves[ply++] = code;
+        length = ply;
+
+        if (ply % snapshotInterval == 0) {
+            int snapshot = ply / snapshotInterval;
+            if (snapshot == snapshots.length)
+                snapshots = Arrays.copyOf(snapshots, snapshot * 2);
+            snapshots[snapshot] = state.toFen();
+        }
+    }
+
+    /**
+     * @return The number of plies played to reach the current position
+     */
+    public int getPly() {
+        return ply;
+    }
+
+    /**
+     * @return The number of plies recorded, including those taken back
+     */
+    public int getLength() {
+        return length;
+    }
+
+    public boolean canUndo() {
+        return ply > 0;
+    }
+
+    public boolean canRedo() {
+        return ply < length;
+    }
+
+    /**
+     * Take back the last move.
+     */
+    public void undo(GameState state) {
+        goTo(state, ply - 1);
+    }
+
+    /**
+     * Play the last move taken back again.
+     */
+    public void redo(GameState state) {
+        goTo(state, ply + 1);
+    }
+
+    /**
+     * Set the game to the position after the given ply.
+     * @param state The game, which must be in the position this history is at
+     * @param target Between 0 for the starting position and {@link #getLength()}
+     * @throws IllegalArgumentException if the ply is out of range
+     */
+    public void goTo(GameState state, int target) {
+        if (target < 0 || target > length)
+            throw new IllegalArgumentException("No such ply: " + target);
+
+        // Replay from the current position when it is closer than the snapshot
+        int from = target / snapshotInterval * snapshotInterval;
+        if (target < ply || ply < from) {
+            state.loadFen(snapshots[target / snapshotInterval]);
+        } else {
+            from = ply;
+        }
+
+        for (int i = from; i < target; i++) {
+            state.movePiece(new Move(Position.fromIndex(moves[i] >> 6), Position.fromIndex(moves[i] & 63)));
+        }
+        ply = target;
+    }
+}
@@ -0,0 +1,20 @@
+package chess;
+
+/**
+ * Notified of the moves actually played in a game, as opposed to the moves a search tries and takes back.
+ */
+public interface GameListener {
+
+    /**
+     * A new game was started or a position was set up.
+     * @param state The game, already in its starting position
+     */
+    void gameStarted(GameState state);
+
+    /**
+     * A move was played.
+     * @param state The game, already after the move
+     * @param move The move
+     */
+    void movePlayed(GameState state, Move move);
+}
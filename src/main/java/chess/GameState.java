@@ -1,9 +1,16 @@
 package chess;
 
 
+import chess.cache.CachedMoveList;
+import chess.cache.MoveListCache;
+import chess.metrics.LatencyHistogram;
+import chess.metrics.Metrics;
 import chess.pieces.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -11,17 +18,83 @@ import java.util.Map;
  * board.
  */
 public class GameState {
+    private static final int KING = 5;
+    private static final LatencyHistogram GENERATION = Metrics.histogram("movegen");
+
+    /**
+     * Legal move lists shared by every game in the process, or null
+     */
+    private static volatile MoveListCache sharedMoveCache;
 
     /**
      * The current player
      */
     private Player currentPlayer = Player.White;
 
+    /**
+     * Plies since the last capture or pawn move, as counted by FEN
+     */
+    private int halfmoveClock = 0;
+
+    /**
+     * The full move number, starting at 1 and incremented after Black's move
+     */
+    private int fullmoveNumber = 1;
+
+    /**
+     * The Zobrist hash of the position, kept up to date as pieces are placed and removed
+     */
+    private long hash = Zobrist.WHITE_TO_MOVE;
+
+    /**
+     * The Zobrist hash of the pawns alone
+     */
+    private long pawnHash;
+
     /**
      * A map of board positions to pieces at that position
      */
     private Map<Position, Piece> positionToPieceMap;
 
+    /**
+     * The last published snapshot, for other threads to read
+     */
+    private volatile BoardSnapshot snapshot;
+
+    /**
+     * One bit per rank changed since the last snapshot was published
+     */
+    private int dirtyRanks = 0xff;
+
+    /**
+     * The legal destinations of the current player's pieces as a bitmask per origin square, valid while
+     * legalMovesCached is set; any change to the board clears it
+     */
+    private long[] legalDestinations;
+    private long legalOrigins;
+    private byte legalStatus;
+    private boolean legalMovesCached;
+
+    /**
+     * The squares of the pieces of each Polyglot kind (see {@link Zobrist#kind(Piece)}), the number of pieces of
+     * each kind, and for every occupied square its index in its kind's list, so pieces can be removed in O(1)
+     */
+    private final int[][] pieceSquares = new int[12][];
+    private final int[] pieceCounts = new int[12];
+    private final int[] pieceListIndex = new int[64];
+
+    /**
+     * Scratch space for packing the board to check shared move lists
+     */
+    private byte[] packedKinds;
+    private long[] packedBoard;
+
+    /**
+     * Keeps every piece's moves up to date as the board changes, or null to generate moves from the pieces
+     */
+    private MoveGenerator generator;
+    private PieceListener pieceListener;
+
     /**
      * Create the game state.
      */
@@ -33,6 +106,30 @@ public class GameState {
         return currentPlayer;
     }
 
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Get the Zobrist hash of the current position, which covers the pieces and the side to move.
+     * @see Zobrist
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the Zobrist hash of the pawns alone, which changes only when a pawn moves, is captured or is placed.
+     * It is 0 when there are no pawns.
+     */
+    public long getPawnHash() {
+        return pawnHash;
+    }
+
     /**
      * Call to initialize the game state into the starting positions
      */
@@ -99,16 +196,430 @@ public class GameState {
      * @param position The position
      */
     private void placePiece(Piece piece, Position position) {
-        positionToPieceMap.put(position, piece);
+        dirtyRanks |= 1 << (position.getIndex() >> 3);
+        legalMovesCached = false;
+        if (generator != null)
+            generator.setPiece(position.getIndex(), piece);
+        Piece previous = positionToPieceMap.put(position, piece);
+        if (previous != null) {
+            hash ^= Zobrist.key(previous, position.getIndex());
+            if (previous instanceof Pawn)
+                pawnHash ^= Zobrist.key(previous, position.getIndex());
+            removeFromList(Zobrist.kind(previous), position.getIndex());
+            if (pieceListener != null)
+                pieceListener.pieceRemoved(position.getIndex(), previous);
+        }
+        hash ^= Zobrist.key(piece, position.getIndex());
+        if (piece instanceof Pawn)
+            pawnHash ^= Zobrist.key(piece, position.getIndex());
+        addToList(Zobrist.kind(piece), position.getIndex());
+        if (pieceListener != null)
+            pieceListener.piecePlaced(position.getIndex(), piece);
+    }
+
+    private void removePiece(Position position){
+        dirtyRanks |= 1 << (position.getIndex() >> 3);
+        legalMovesCached = false;
+        if (generator != null)
+            generator.setPiece(position.getIndex(), null);
+        Piece removed = positionToPieceMap.remove(position);
+        if (removed != null) {
+            hash ^= Zobrist.key(removed, position.getIndex());
+            if (removed instanceof Pawn)
+                pawnHash ^= Zobrist.key(removed, position.getIndex());
+            removeFromList(Zobrist.kind(removed), position.getIndex());
+            if (pieceListener != null)
+                pieceListener.pieceRemoved(position.getIndex(), removed);
+        }
     }
 
-    private void removePiece(Position position){positionToPieceMap.remove(position);}
+    private void addToList(int kind, int square) {
+        int[] squares = pieceSquares[kind];
+        int count = pieceCounts[kind];
+        if (squares == null)
+            squares = pieceSquares[kind] = new int[kind < 2 ? 8 : 2];
+        else if (count == squares.length)
+            squares = pieceSquares[kind] = Arrays.copyOf(squares, count * 2);
+        squares[count] = square;
+        pieceListIndex[square] = count;
+        pieceCounts[kind] = count + 1;
+    }
+
+    private void removeFromList(int kind, int square) {
+        // Move the last square of the list into the gap
+        int[] squares = pieceSquares[kind];
+        int last = squares[--pieceCounts[kind]];
+        int index = pieceListIndex[square];
+        squares[index] = last;
+        pieceListIndex[last] = index;
+    }
+
+    /**
+     * @param type The piece type as numbered by {@link Zobrist#type(Piece)}, 0 (pawn) through 5 (king)
+     * @return How many pieces of the type the player has
+     */
+    public int getPieceCount(Player player, int type) {
+        return pieceCounts[kind(player, type)];
+    }
+
+    /**
+     * Get the square of one of a player's pieces of a type.  The order of the pieces changes as they move.
+     * @param index From 0 to {@link #getPieceCount(Player, int)} - 1
+     * @return The square index, a1 = 0 to h8 = 63
+     */
+    public int getPieceSquare(Player player, int type, int index) {
+        return pieceSquares[kind(player, type)][index];
+    }
+
+    /**
+     * @return The square of the player's king, or null if it has none
+     */
+    public Position getKingPosition(Player player) {
+        int kind = kind(player, KING);
+        return pieceCounts[kind] == 0 ? null : Position.fromIndex(pieceSquares[kind][0]);
+    }
+
+    /**
+     * @return The squares of all the player's pieces as a bitmask
+     */
+    public long getPieceMask(Player player) {
+        long mask = 0;
+        for (int type = 0; type <= KING; type++) {
+            int kind = kind(player, type);
+            for (int i = 0; i < pieceCounts[kind]; i++) {
+                mask |= 1L << pieceSquares[kind][i];
+            }
+        }
+        return mask;
+    }
+
+    private static int kind(Player player, int type) {
+        return 2 * type + (player == Player.White ? 1 : 0);
+    }
 
     public void movePiece(Move move){
         Piece piece = getPieceAt(move.origin);
+        Piece captured = getPieceAt(move.destination);
+        move.captured = captured;
+        move.previousHalfmoveClock = halfmoveClock;
         placePiece(piece, move.destination);
         removePiece(move.origin);
+
+        if (captured != null || piece instanceof Pawn)
+            halfmoveClock = 0;
+        else
+            halfmoveClock++;
+        if (currentPlayer == Player.Black)
+            fullmoveNumber++;
+
+        togglePlayer();
+    }
+
+    /**
+     * Take back the last move made, which must have been played with {@link #movePiece(Move)} on this state.
+     * @param move The move to take back
+     */
+    public void undoMove(Move move) {
         togglePlayer();
+        if (currentPlayer == Player.Black)
+            fullmoveNumber--;
+        halfmoveClock = move.previousHalfmoveClock;
+
+        Piece piece = getPieceAt(move.destination);
+        removePiece(move.destination);
+        placePiece(piece, move.origin);
+        if (move.captured != null)
+            placePiece(move.captured, move.destination);
+    }
+
+    /**
+     * Whether a player's king could be taken by one of the opponent's moves
+     * @param player The player whose king to look at
+     * @return true if the king is attacked; false if it is safe or not on the board
+     */
+    public boolean isInCheck(Player player) {
+        Player opponent = player == Player.White ? Player.Black : Player.White;
+        if (generator != null) {
+            int square = generator.findKing(player);
+            return square >= 0 && generator.isAttacked(square, opponent);
+        }
+
+        Position king = getKingPosition(player);
+        if (king == null)
+            return false;
+
+        long opponents = getPieceMask(opponent);
+        while (opponents != 0) {
+            Position origin = Position.fromIndex(Long.numberOfTrailingZeros(opponents));
+            opponents &= opponents - 1;
+            Piece piece = positionToPieceMap.get(origin);
+            if (piece.getPossiblePositions(origin, positionToPieceMap, opponent).contains(king))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * List the possible moves that do not leave the current player's king open to capture, ordered by origin square
+     * and then by destination square.  The legal moves are worked out once per position and cached until the board
+     * changes.
+     */
+    public List<Move> getLegalMoves() {
+        cacheLegalMoves();
+        List<Move> legal = new ArrayList<Move>();
+        long origins = legalOrigins;
+        while (origins != 0) {
+            int origin = Long.numberOfTrailingZeros(origins);
+            origins &= origins - 1;
+            long destinations = legalDestinations[origin];
+            while (destinations != 0) {
+                legal.add(new Move(Position.fromIndex(origin),
+                        Position.fromIndex(Long.numberOfTrailingZeros(destinations))));
+                destinations &= destinations - 1;
+            }
+        }
+        return legal;
+    }
+
+    /**
+     * Find a move in {@link #getLegalMoves()} by counting the cached legal destinations before it, without listing
+     * the moves.
+     * @return The index, or -1 if the move is not legal
+     */
+    public int getLegalMoveIndex(Move move) {
+        cacheLegalMoves();
+        int origin = move.origin.getIndex();
+        long destination = 1L << move.destination.getIndex();
+        if ((legalDestinations[origin] & destination) == 0)
+            return -1;
+
+        int index = Long.bitCount(legalDestinations[origin] & (destination - 1));
+        long before = legalOrigins & ((1L << origin) - 1);
+        while (before != 0) {
+            index += Long.bitCount(legalDestinations[Long.numberOfTrailingZeros(before)]);
+            before &= before - 1;
+        }
+        return index;
+    }
+
+    /**
+     * The reverse of {@link #getLegalMoveIndex(Move)}.
+     * @return The move at the index in {@link #getLegalMoves()}, or null if there are not that many legal moves
+     */
+    public Move getLegalMove(int index) {
+        cacheLegalMoves();
+        long origins = legalOrigins;
+        while (origins != 0 && index >= 0) {
+            int origin = Long.numberOfTrailingZeros(origins);
+            origins &= origins - 1;
+            long destinations = legalDestinations[origin];
+            int count = Long.bitCount(destinations);
+            if (index < count) {
+                for (int i = 0; i < index; i++) {
+                    destinations &= destinations - 1;
+                }
+                return new Move(Position.fromIndex(origin),
+                        Position.fromIndex(Long.numberOfTrailingZeros(destinations)));
+            }
+            index -= count;
+        }
+        return null;
+    }
+
+    /**
+     * @return The squares the piece on the origin can legally move to, as a bitmask of square indexes; 0 if there
+     * is no piece of the current player there or it cannot move
+     */
+    public long getLegalDestinations(Position origin) {
+        cacheLegalMoves();
+        return legalDestinations[origin.getIndex()];
+    }
+
+    public boolean isLegalMove(Move move) {
+        return (getLegalDestinations(move.origin) & 1L << move.destination.getIndex()) != 0;
+    }
+
+    public boolean hasLegalMoves() {
+        cacheLegalMoves();
+        return legalOrigins != 0;
+    }
+
+    /**
+     * @return true if the current player has no legal move and is in check
+     */
+    public boolean isCheckmate() {
+        cacheLegalMoves();
+        return legalStatus == CachedMoveList.CHECKMATE;
+    }
+
+    /**
+     * @return true if the current player has no legal move but is not in check
+     */
+    public boolean isStalemate() {
+        cacheLegalMoves();
+        return legalStatus == CachedMoveList.STALEMATE;
+    }
+
+    /**
+     * Switch between generating the moves of every piece for every position, and keeping each piece's moves up to
+     * date as pieces move, which only works out again the moves of the pieces a move affects.  Both produce the same
+     * moves in the same order.
+     */
+    public void setIncrementalMoveGeneration(boolean enabled) {
+        generator = enabled ? new MoveGenerator(this) : null;
+    }
+
+    /**
+     * Tell a listener about every piece placed and removed from now on.  There is one listener per game.
+     * @param listener The listener, or null to stop telling
+     */
+    public void setPieceListener(PieceListener listener) {
+        this.pieceListener = listener;
+    }
+
+    public PieceListener getPieceListener() {
+        return pieceListener;
+    }
+
+    /**
+     * @return The incremental generator, or null if it is not enabled
+     */
+    MoveGenerator getMoveGenerator() {
+        return generator;
+    }
+
+    /**
+     * Share legal move lists between all games, so that a position seen in any game is not worked out again.
+     * @param cache The cache, or null to stop sharing
+     */
+    public static void setSharedMoveCache(MoveListCache cache) {
+        sharedMoveCache = cache;
+    }
+
+    private void cacheLegalMoves() {
+        if (legalMovesCached)
+            return;
+        if (legalDestinations == null)
+            legalDestinations = new long[64];
+        else
+            Arrays.fill(legalDestinations, 0);
+
+        MoveListCache shared = sharedMoveCache;
+        int packedLength = shared == null ? 0 : packBoard();
+        CachedMoveList cached = shared == null ? null : shared.get(hash, packedBoard, packedLength);
+        if (cached != null) {
+            long origins = 0;
+            for (int i = 0; i < cached.size(); i++) {
+                int move = cached.getMove(i);
+                legalDestinations[move >> 6] |= 1L << (move & 63);
+                origins |= 1L << (move >> 6);
+            }
+            legalOrigins = origins;
+            legalStatus = cached.getStatus();
+            legalMovesCached = true;
+            return;
+        }
+
+        // Trying the moves clears the flag, so it is only set once they have all been tried
+        Player player = currentPlayer;
+        long origins = 0;
+        short[] encoded = new short[16];
+        int count = 0;
+        for (Move move : getPossibleMoves()) {
+            movePiece(move);
+            if (!isInCheck(player)) {
+                legalDestinations[move.origin.getIndex()] |= 1L << move.destination.getIndex();
+                origins |= 1L << move.origin.getIndex();
+                if (count == encoded.length)
+                    encoded = Arrays.copyOf(encoded, count * 2);
+                encoded[count++] = (short) (move.origin.getIndex() << 6 | move.destination.getIndex());
+            }
+            undoMove(move);
+        }
+        legalOrigins = origins;
+        if (origins != 0)
+            legalStatus = CachedMoveList.ONGOING;
+        else
+            legalStatus = isInCheck(player) ? CachedMoveList.CHECKMATE : CachedMoveList.STALEMATE;
+        legalMovesCached = true;
+
+        if (shared != null)
+            shared.put(hash, new CachedMoveList(Arrays.copyOf(encoded, count), legalStatus,
+                    Arrays.copyOf(packedBoard, packedLength)));
+    }
+
+    /**
+     * Pack the board exactly into packedBoard: the occupied squares, the side to move, then four bits per piece in
+     * square order giving its kind.  The legal moves depend on nothing else.
+     * @return The number of longs used
+     */
+    private int packBoard() {
+        if (packedKinds == null) {
+            packedKinds = new byte[64];
+            packedBoard = new long[6];
+        }
+        long occupied = 0;
+        for (int kind = 0; kind < 12; kind++) {
+            for (int i = 0; i < pieceCounts[kind]; i++) {
+                int square = pieceSquares[kind][i];
+                occupied |= 1L << square;
+                packedKinds[square] = (byte) kind;
+            }
+        }
+
+        int length = 2 + (Long.bitCount(occupied) + 15) / 16;
+        if (packedBoard.length < length)
+            packedBoard = new long[length];
+        packedBoard[0] = occupied;
+        packedBoard[1] = currentPlayer == Player.White ? 0 : 1;
+        int pieces = 0;
+        long word = 0;
+        for (long rest = occupied; rest != 0; rest &= rest - 1) {
+            word |= (long) packedKinds[Long.numberOfTrailingZeros(rest)] << 4 * (pieces & 15);
+            if ((++pieces & 15) == 0) {
+                packedBoard[1 + pieces / 16] = word;
+                word = 0;
+            }
+        }
+        if ((pieces & 15) != 0)
+            packedBoard[2 + pieces / 16] = word;
+        return length;
+    }
+
+    /**
+     * Publish the current position for other threads.  Only the thread that plays the game may call this, usually
+     * after every move it actually plays; moves made and taken back by a search need not be published.  Ranks that
+     * did not change since the last snapshot are shared with it.
+     * @return The new snapshot, which {@link #getSnapshot()} returns from now on
+     */
+    public BoardSnapshot publishSnapshot() {
+        BoardSnapshot previous = snapshot;
+        byte[][] ranks = new byte[8][];
+        for (int rank = 0; rank < 8; rank++) {
+            if (previous != null && (dirtyRanks & 1 << rank) == 0) {
+                ranks[rank] = previous.getRank(rank);
+                continue;
+            }
+            ranks[rank] = new byte[8];
+            for (int column = 0; column < 8; column++) {
+                Piece piece = positionToPieceMap.get(Position.fromIndex(rank * 8 + column));
+                if (piece != null)
+                    ranks[rank][column] = (byte) getFenCharacter(piece);
+            }
+        }
+        dirtyRanks = 0;
+
+        BoardSnapshot published = new BoardSnapshot(ranks, currentPlayer, halfmoveClock, fullmoveNumber, hash);
+        snapshot = published;
+        return published;
+    }
+
+    /**
+     * Get the last published position.  Safe to call from any thread.
+     * @return The snapshot, or null if none has been published
+     */
+    public BoardSnapshot getSnapshot() {
+        return snapshot;
     }
 
     private void togglePlayer(){
@@ -116,6 +627,232 @@ public class GameState {
             currentPlayer = Player.White;
         else
             currentPlayer = Player.Black;
+        hash ^= Zobrist.WHITE_TO_MOVE;
+    }
+
+    /**
+     * Create a game state from a position in Forsyth-Edwards Notation.
+     * @param fen The FEN string, i.e. "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1"
+     * @return The new game state
+     * @throws IllegalArgumentException if the string is not a valid FEN position
+     */
+    public static GameState fromFen(String fen) {
+        GameState state = new GameState();
+        state.loadFen(fen);
+        return state;
+    }
+
+    /**
+     * Replace the contents of this game state with a FEN position.  The castling and en passant fields are
+     * accepted but ignored, since neither move is supported.  The move counters are optional so that EPD
+     * positions can be loaded as well.
+     * @param fen The FEN string
+     * @throws IllegalArgumentException if the string is not a valid FEN position
+     */
+    public void loadFen(String fen) {
+        int length = fen.length();
+        int i = skipSpaces(fen, 0);
+        Map<Position, Piece> pieces = new HashMap<Position, Piece>();
+
+        int row = Position.MAX_ROW;
+        int column = 0;
+        for (; i < length; i++) {
+            char c = fen.charAt(i);
+            if (c == ' ') {
+                break;
+            } else if (c == '/') {
+                if (column != 8 || row == Position.MIN_ROW)
+                    throw new IllegalArgumentException("Invalid FEN board: " + fen);
+                row--;
+                column = 0;
+            } else if (c >= '1' && c <= '8') {
+                column += c - '0';
+                if (column > 8)
+                    throw new IllegalArgumentException("Invalid FEN board: " + fen);
+            } else {
+                Piece piece = createPiece(c);
+                if (piece == null || column >= 8)
+                    throw new IllegalArgumentException("Invalid FEN board: " + fen);
+                pieces.put(Position.fromIndex((row - Position.MIN_ROW) * 8 + column), piece);
+                column++;
+            }
+        }
+        if (column != 8 || row != Position.MIN_ROW)
+            throw new IllegalArgumentException("Invalid FEN board: " + fen);
+
+        i = skipSpaces(fen, i);
+        if (i >= length)
+            throw new IllegalArgumentException("Missing side to move: " + fen);
+        Player player;
+        char side = fen.charAt(i++);
+        if (side == 'w')
+            player = Player.White;
+        else if (side == 'b')
+            player = Player.Black;
+        else
+            throw new IllegalArgumentException("Invalid side to move: " + fen);
+
+        // Castling rights and en passant square
+        i = skipField(fen, skipSpaces(fen, i));
+        i = skipField(fen, skipSpaces(fen, i));
+
+        int halfmoves = 0;
+        int fullmoves = 1;
+        i = skipSpaces(fen, i);
+        if (i < length) {
+            int end = skipField(fen, i);
+            halfmoves = parseNumber(fen, i, end);
+            i = skipSpaces(fen, end);
+            if (i < length) {
+                end = skipField(fen, i);
+                fullmoves = parseNumber(fen, i, end);
+            }
+        }
+
+        long newHash = player == Player.White ? Zobrist.WHITE_TO_MOVE : 0;
+        long newPawnHash = 0;
+        for (Map.Entry<Position, Piece> entry : pieces.entrySet()) {
+            long key = Zobrist.key(entry.getValue(), entry.getKey().getIndex());
+            newHash ^= key;
+            if (entry.getValue() instanceof Pawn)
+                newPawnHash ^= key;
+        }
+
+        positionToPieceMap = pieces;
+        Arrays.fill(pieceCounts, 0);
+        for (Map.Entry<Position, Piece> entry : pieces.entrySet()) {
+            addToList(Zobrist.kind(entry.getValue()), entry.getKey().getIndex());
+        }
+        dirtyRanks = 0xff;
+        legalMovesCached = false;
+        if (generator != null)
+            generator = new MoveGenerator(this);
+        currentPlayer = player;
+        halfmoveClock = halfmoves;
+        fullmoveNumber = fullmoves;
+        hash = newHash;
+        pawnHash = newPawnHash;
+        if (pieceListener != null)
+            pieceListener.boardReset(this);
+    }
+
+    /**
+     * Describe the current position in Forsyth-Edwards Notation.  Castling rights and the en passant square
+     * are always written as '-'.
+     * @return The FEN string
+     */
+    public String toFen() {
+        StringBuilder builder = new StringBuilder(90);
+        for (int row = Position.MAX_ROW; row >= Position.MIN_ROW; row--) {
+            int empty = 0;
+            for (int column = 0; column < 8; column++) {
+                Piece piece = positionToPieceMap.get(Position.fromIndex((row - Position.MIN_ROW) * 8 + column));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    builder.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                builder.append(getFenCharacter(piece));
+            }
+            if (empty > 0)
+                builder.append((char) ('0' + empty));
+            if (row > Position.MIN_ROW)
+                builder.append('/');
+        }
+
+        builder.append(currentPlayer == Player.White ? " w - - " : " b - - ");
+        builder.append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return builder.toString();
+    }
+
+    /**
+     * Create the piece for a FEN piece letter; upper case letters are White.
+     * @return The piece, or null if the letter does not name a piece
+     */
+    static Piece createPiece(char c) {
+        Player owner = Character.isUpperCase(c) ? Player.White : Player.Black;
+        switch (Character.toLowerCase(c)) {
+            case 'p': return new Pawn(owner);
+            case 'n': return new Knight(owner);
+            case 'b': return new Bishop(owner);
+            case 'r': return new Rook(owner);
+            case 'q': return new Queen(owner);
+            case 'k': return new King(owner);
+            default: return null;
+        }
+    }
+
+    /**
+     * The FEN letter of a piece.  FEN uses upper case for White, the reverse of {@link Piece#getIdentifier()}.
+     */
+    static char getFenCharacter(Piece piece) {
+        char id = piece.getIdentifier();
+        return piece.getOwner() == Player.White ? Character.toUpperCase(id) : Character.toLowerCase(id);
+    }
+
+    private static int skipSpaces(String str, int i) {
+        while (i < str.length() && str.charAt(i) == ' ')
+            i++;
+        return i;
+    }
+
+    private static int skipField(String str, int i) {
+        while (i < str.length() && str.charAt(i) != ' ')
+            i++;
+        return i;
+    }
+
+    private static int parseNumber(String str, int start, int end) {
+        if (start == end)
+            throw new IllegalArgumentException("Invalid FEN move counter: " + str);
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = str.charAt(i);
+            if (c < '0' || c > '9' || result > 100000)
+                throw new IllegalArgumentException("Invalid FEN move counter: " + str);
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * List the moves the current player can make.  The list is ordered by origin square and then by destination
+     * square (a1 first), so the same position always produces the same list.
+     * @return The possible moves
+     */
+    public List<Move> getPossibleMoves() {
+        if (!Metrics.ENABLED)
+            return generatePossibleMoves();
+        long start = System.nanoTime();
+        List<Move> moves = generatePossibleMoves();
+        GENERATION.recordSince(start);
+        return moves;
+    }
+
+    private List<Move> generatePossibleMoves() {
+        if (generator != null)
+            return generator.getPossibleMoves(currentPlayer);
+
+        List<Move> moves = new ArrayList<Move>();
+        long pieces = getPieceMask(currentPlayer);
+        while (pieces != 0) {
+            Position origin = Position.fromIndex(Long.numberOfTrailingZeros(pieces));
+            pieces &= pieces - 1;
+            Piece piece = positionToPieceMap.get(origin);
+
+            long destinations = 0;
+            for (Position destination : piece.getPossiblePositions(origin, positionToPieceMap, currentPlayer)) {
+                destinations |= 1L << destination.getIndex();
+            }
+            while (destinations != 0) {
+                moves.add(new Move(origin, Position.fromIndex(Long.numberOfTrailingZeros(destinations))));
+                destinations &= destinations - 1;
+            }
+        }
+        return moves;
     }
 
     public Map<Position, Piece> getGameState(){
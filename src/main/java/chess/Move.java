@@ -1,5 +1,7 @@
 package chess;
 
+import chess.metrics.LatencyHistogram;
+import chess.metrics.Metrics;
 import chess.pieces.Piece;
 import java.util.*;
 import java.util.HashMap;
@@ -8,14 +10,49 @@ import java.util.Map;
  * Created by Fabi on 6/15/2014.
  */
 public class Move {
+    private static final LatencyHistogram VALIDATION = Metrics.histogram("validate");
+
     Position origin;
     Position destination;
 
+    /**
+     * Filled in by {@link GameState#movePiece(Move)} so that the move can be taken back
+     */
+    Piece captured;
+    int previousHalfmoveClock;
+
     public Move(Position origin, Position destination){
         this.origin = origin;
         this.destination = destination;
     }
 
+    public Position getOrigin() {
+        return origin;
+    }
+
+    public Position getDestination() {
+        return destination;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Move move = (Move) o;
+        return origin.equals(move.origin) && destination.equals(move.destination);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * origin.hashCode() + destination.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return origin + " " + destination;
+    }
+
     public boolean VerifyOrigin(Map<Position, Piece> map, Player currentPlayer) {
         Iterator it = map.entrySet().iterator();
 
@@ -57,4 +94,27 @@ public class Move {
 
         return false;
     }
-}
\ No newline at end of file
+
+    /**
+     * Whether the current player has a piece on the origin that can legally move; answered from the game's legal
+     * move cache
+     */
+    public boolean VerifyOrigin(GameState state) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        boolean valid = state.getLegalDestinations(origin) != 0;
+        if (Metrics.ENABLED)
+            VALIDATION.recordSince(start);
+        return valid;
+    }
+
+    /**
+     * Whether this is a legal move for the current player; answered from the game's legal move cache
+     */
+    public boolean VerifyDestination(GameState state) {
+        long start = Metrics.ENABLED ? System.nanoTime() : 0;
+        boolean valid = state.isLegalMove(this);
+        if (Metrics.ENABLED)
+            VALIDATION.recordSince(start);
+        return valid;
+    }
+}
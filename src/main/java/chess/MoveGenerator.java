@@ -0,0 +1,243 @@
+package chess;
+
+import chess.pieces.Bishop;
+import chess.pieces.King;
+import chess.pieces.Knight;
+import chess.pieces.Pawn;
+import chess.pieces.Piece;
+import chess.pieces.Queen;
+import chess.pieces.Rook;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the possible moves of every piece on the board up to date as pieces are placed and removed, instead of
+ * generating them from scratch for every position.  Each piece has a destination mask and an influence mask: the
+ * squares whose contents its moves depend on, which for a slider is every square along its rays up to and including
+ * the first piece.  When a square changes, only the piece on it and the pieces whose influence covers it are worked
+ * out again, so a move costs work in proportion to what it changes.
+ *
+ * The moves are exactly those of {@link Piece#getPossiblePositions}: pseudo-legal, with pawns able to advance two
+ * squares from any rank.  Masks use square indexes, a1 = 0 to h8 = 63.
+ */
+public class MoveGenerator {
+    private static final int[][] KNIGHT_STEPS = {{-1, 2}, {1, 2}, {-2, 1}, {2, 1}, {-2, -1}, {2, -1}, {-1, -2}, {1, -2}};
+    private static final int[][] KING_STEPS = {{0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}, {-1, 1}};
+    private static final int[][] ROOK_RAYS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
+    private static final int[][] BISHOP_RAYS = {{1, 1}, {-1, -1}, {-1, 1}, {1, -1}};
+
+    private final Piece[] board = new Piece[64];
+    private final long[] destinations = new long[64];
+    private final long[] influence = new long[64];
+
+    /**
+     * For every square, the squares of the pieces whose influence covers it
+     */
+    private final long[] watchers = new long[64];
+    private long white;
+    private long black;
+    private long recomputed;
+
+    /**
+     * Set up the generator from a board.
+     */
+    public MoveGenerator(GameState state) {
+        for (int square = 0; square < 64; square++) {
+            Piece piece = state.getPieceAt(Position.fromIndex(square));
+            if (piece != null)
+                setPiece(square, piece);
+        }
+    }
+
+    /**
+     * Put a piece on a square, replacing whatever was there, or empty the square.
+     * @param piece The piece, or null to empty the square
+     */
+    public void setPiece(int square, Piece piece) {
+        long bit = 1L << square;
+        white &= ~bit;
+        black &= ~bit;
+        board[square] = piece;
+        if (piece == null) {
+            unwatch(square);
+            destinations[square] = 0;
+            influence[square] = 0;
+        } else {
+            if (piece.getOwner() == Player.White)
+                white |= bit;
+            else
+                black |= bit;
+            recompute(square);
+        }
+
+        // Pieces that see this square may now be blocked, freed, or able to capture
+        long affected = watchers[square] & ~bit;
+        while (affected != 0) {
+            recompute(Long.numberOfTrailingZeros(affected));
+            affected &= affected - 1;
+        }
+    }
+
+    public Piece getPiece(int square) {
+        return board[square];
+    }
+
+    /**
+     * @return The squares the piece on the square can move to, or 0 if the square is empty
+     */
+    public long getDestinations(int square) {
+        return destinations[square];
+    }
+
+    /**
+     * @return The squares holding a player's pieces
+     */
+    public long getPieces(Player player) {
+        return player == Player.White ? white : black;
+    }
+
+    /**
+     * @return Whether any of the player's pieces could move to the square
+     */
+    public boolean isAttacked(int square, Player by) {
+        long pieces = getPieces(by);
+        long target = 1L << square;
+        while (pieces != 0) {
+            if ((destinations[Long.numberOfTrailingZeros(pieces)] & target) != 0)
+                return true;
+            pieces &= pieces - 1;
+        }
+        return false;
+    }
+
+    /**
+     * @return The square of the player's king, or -1 if it has none
+     */
+    public int findKing(Player player) {
+        long pieces = getPieces(player);
+        while (pieces != 0) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            if (board[square] instanceof King)
+                return square;
+            pieces &= pieces - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * List a player's moves, ordered by origin square and then by destination square as
+     * {@link GameState#getPossibleMoves()} does.
+     */
+    public List<Move> getPossibleMoves(Player player) {
+        List<Move> moves = new ArrayList<Move>();
+        long pieces = getPieces(player);
+        while (pieces != 0) {
+            int origin = Long.numberOfTrailingZeros(pieces);
+            pieces &= pieces - 1;
+            long targets = destinations[origin];
+            while (targets != 0) {
+                moves.add(new Move(Position.fromIndex(origin), Position.fromIndex(Long.numberOfTrailingZeros(targets))));
+                targets &= targets - 1;
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * @return How many times a piece's moves were worked out since the generator was created
+     */
+    public long getRecomputed() {
+        return recomputed;
+    }
+
+    private void unwatch(int square) {
+        long old = influence[square];
+        long bit = ~(1L << square);
+        while (old != 0) {
+            watchers[Long.numberOfTrailingZeros(old)] &= bit;
+            old &= old - 1;
+        }
+    }
+
+    private void recompute(int square) {
+        recomputed++;
+        unwatch(square);
+
+        Piece piece = board[square];
+        long own = piece.getOwner() == Player.White ? white : black;
+        long occupied = white | black;
+        int column = square & 7;
+        int row = square >> 3;
+        long moves = 0;
+        long seen = 0;
+
+        if (piece instanceof Pawn) {
+            int forward = piece.getOwner() == Player.White ? 1 : -1;
+            long enemy = occupied & ~own;
+            for (int step = 1; step <= 2; step++) {
+                int target = index(column, row + forward * step);
+                if (target >= 0) {
+                    seen |= 1L << target;
+                    if ((occupied & 1L << target) == 0)
+                        moves |= 1L << target;
+                }
+            }
+            for (int side = -1; side <= 1; side += 2) {
+                int target = index(column + side, row + forward);
+                if (target >= 0) {
+                    seen |= 1L << target;
+                    if ((enemy & 1L << target) != 0)
+                        moves |= 1L << target;
+                }
+            }
+        } else if (piece instanceof Knight || piece instanceof King) {
+            for (int[] step : piece instanceof Knight ? KNIGHT_STEPS : KING_STEPS) {
+                int target = index(column + step[0], row + step[1]);
+                if (target >= 0)
+                    seen |= 1L << target;
+            }
+            moves = seen & ~own;
+        } else {
+            if (piece instanceof Rook || piece instanceof Queen)
+                seen |= rays(ROOK_RAYS, column, row, occupied);
+            if (piece instanceof Bishop || piece instanceof Queen)
+                seen |= rays(BISHOP_RAYS, column, row, occupied);
+            moves = seen & ~own;
+        }
+
+        destinations[square] = moves;
+        influence[square] = seen;
+        long bit = 1L << square;
+        while (seen != 0) {
+            watchers[Long.numberOfTrailingZeros(seen)] |= bit;
+            seen &= seen - 1;
+        }
+    }
+
+    /**
+     * @return The squares along the rays up to and including the first occupied square of each
+     */
+    private static long rays(int[][] directions, int column, int row, long occupied) {
+        long seen = 0;
+        for (int[] direction : directions) {
+            int c = column + direction[0];
+            int r = row + direction[1];
+            int target;
+            while ((target = index(c, r)) >= 0) {
+                seen |= 1L << target;
+                if ((occupied & 1L << target) != 0)
+                    break;
+                c += direction[0];
+                r += direction[1];
+            }
+        }
+        return seen;
+    }
+
+    private static int index(int column, int row) {
+        if (column < 0 || column > 7 || row < 0 || row > 7)
+            return -1;
+        return row * 8 + column;
+    }
+}
@@ -0,0 +1,28 @@
+package chess;
+
+import chess.pieces.Piece;
+
+/**
+ * Notified of every change to the pieces on a board, including the moves a search tries and takes back, so that
+ * anything derived from the board can be updated instead of worked out again.  Calls come from the thread changing
+ * the board and must be cheap.
+ */
+public interface PieceListener {
+
+    /**
+     * A piece was put on an empty square; a capture first removes the captured piece.
+     * @param square The square index, a1 = 0 to h8 = 63
+     */
+    void piecePlaced(int square, Piece piece);
+
+    /**
+     * A piece was taken off a square.
+     * @param square The square index, a1 = 0 to h8 = 63
+     */
+    void pieceRemoved(int square, Piece piece);
+
+    /**
+     * The whole board was replaced, as when a FEN position is loaded.
+     */
+    void boardReset(GameState state);
+}
@@ -11,6 +11,17 @@ public class Position {
     private int row;
     private char column;
 
+    /**
+     * Shared instances for the 64 squares, indexed by {@link #getIndex()}
+     */
+    private static final Position[] SQUARES = new Position[64];
+
+    static {
+        for (int i = 0; i < SQUARES.length; i++) {
+            SQUARES[i] = new Position((char) (MIN_COLUMN + (i & 7)), MIN_ROW + (i >> 3));
+        }
+    }
+
     /**
      * Create a new position object
      *
@@ -38,6 +49,22 @@ public class Position {
         return column;
     }
 
+    /**
+     * The square index of this position, a1 = 0, b1 = 1, ..., h8 = 63
+     */
+    public int getIndex() {
+        return (row - MIN_ROW) * 8 + (column - MIN_COLUMN);
+    }
+
+    /**
+     * Get the shared position for a square index
+     * @param index The square index, a1 = 0 through h8 = 63
+     * @return The position for that square
+     */
+    public static Position fromIndex(int index) {
+        return SQUARES[index];
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
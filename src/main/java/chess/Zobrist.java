@@ -0,0 +1,71 @@
+package chess;
+
+import chess.pieces.Piece;
+
+/**
+ * Random keys for Zobrist hashing of positions.  The layout follows the Polyglot book format: one key per piece
+ * kind and square, where the kind is 2 * type + 1 for White pieces and 2 * type for Black ones, with types ordered
+ * pawn, knight, bishop, rook, queen, king, plus one key that is included when White is to move.  The numbers are
+ * this game's own; opening books use Polyglot's published ones through {@link chess.book.PolyglotKey}.
+ */
+public final class Zobrist {
+    /**
+     * Keys indexed by 64 * kind + square
+     */
+    private static final long[] PIECE_SQUARE = new long[12 * 64];
+
+    /**
+     * Included in the hash when White is to move
+     */
+    public static final long WHITE_TO_MOVE;
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            PIECE_SQUARE[i] = mix(seed);
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        WHITE_TO_MOVE = mix(seed);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * @return The key for a piece standing on a square
+     */
+    public static long key(Piece piece, int square) {
+        return PIECE_SQUARE[64 * kind(piece) + square];
+    }
+
+    /**
+     * The Polyglot piece kind, 0 (black pawn) through 11 (white king)
+     */
+    public static int kind(Piece piece) {
+        return 2 * type(piece) + (piece.getOwner() == Player.White ? 1 : 0);
+    }
+
+    /**
+     * The piece type, 0 (pawn) through 5 (king)
+     */
+    public static int type(Piece piece) {
+        switch (Character.toLowerCase(piece.getIdentifier())) {
+            case 'p': return 0;
+            case 'n': return 1;
+            case 'b': return 2;
+            case 'r': return 3;
+            case 'q': return 4;
+            default: return 5;
+        }
+    }
+
+    /**
+     * The SplitMix64 finalizer, which turns a counter into well distributed 64 bit values
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
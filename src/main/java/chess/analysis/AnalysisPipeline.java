@@ -0,0 +1,263 @@
+package chess.analysis;
+
+import chess.GameState;
+import chess.Move;
+import chess.engine.ClassicEvaluator;
+import chess.engine.Evaluator;
+import chess.engine.Search;
+import chess.engine.SearchResult;
+import chess.pgn.San;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Analyses a stream of positions, one FEN or EPD record per line, on a pool of worker threads.  Lines are only read
+ * as fast as the workers keep up: at most a fixed number of positions are in flight, and results are written in
+ * input order as soon as the oldest one is finished.  EPD "bm" and "am" operations are checked against the move
+ * found, so the pipeline can validate puzzles and test suites.  Blank lines and lines starting with '#' are skipped.
+ *
+ * Every result is one tab-separated line: the EPD id (or the line number), the best move in SAN, the score in
+ * centipawns, the depth reached, the nodes searched, the time taken in milliseconds and, for records with a "bm" or
+ * "am" operation, "solved" or "unsolved".  Positions that cannot be analysed produce the id, "error" and the reason.
+ */
+public class AnalysisPipeline {
+    private final Supplier<Evaluator> evaluator;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxPending = 0;
+    private int depth = 4;
+    private long timeLimitMillis = 0;
+
+    /**
+     * @param evaluator Creates an evaluator for each worker thread
+     */
+    public AnalysisPipeline(Supplier<Evaluator> evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param maxPending How many positions may be read ahead of the oldest unfinished one; 0 for four per thread
+     */
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * @param depth The depth to search every position to, or the maximum depth if there is a time limit
+     */
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     * @param timeLimitMillis The time allowed per position, or 0 to always search to the full depth
+     */
+    public void setTimeLimit(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * Analyse every position of the input.  Neither stream is closed.
+     * @param in One position per line
+     * @param out Receives one result per position, in input order
+     * @return Throughput and latency of the run
+     */
+    public AnalysisReport run(BufferedReader in, Writer out)
+            throws IOException, InterruptedException, ExecutionException {
+        final ThreadLocal<Search> searches = new ThreadLocal<Search>() {
+            @Override
+            protected Search initialValue() {
+                return new Search(evaluator.get());
+            }
+        };
+        int limit = maxPending > 0 ? maxPending : threads * 4;
+        AnalysisReport report = new AnalysisReport();
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayDeque<Future<Analysis>> pending = new ArrayDeque<Future<Analysis>>();
+            int lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                final String record = line.trim();
+                if (record.isEmpty() || record.charAt(0) == '#')
+                    continue;
+
+                // Backpressure: don't read further ahead than the oldest position allows
+                if (pending.size() >= limit)
+                    write(pending.poll().get(), out, report);
+
+                final int id = lineNumber;
+                pending.add(executor.submit(new Callable<Analysis>() {
+                    @Override
+                    public Analysis call() {
+                        return analyse(searches.get(), id, record);
+                    }
+                }));
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll().get(), out, report);
+            }
+            out.flush();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report.setElapsed(System.nanoTime() - start);
+        return report;
+    }
+
+    private Analysis analyse(Search search, int lineNumber, String record) {
+        long start = System.nanoTime();
+        Analysis analysis = new Analysis();
+        analysis.id = Integer.toString(lineNumber);
+        try {
+            List<String> operations = new ArrayList<String>();
+            GameState state = parse(record, operations);
+            String bestMoves = null;
+            String avoidMoves = null;
+            for (String operation : operations) {
+                int space = operation.indexOf(' ');
+                String opcode = space < 0 ? operation : operation.substring(0, space);
+                String operand = space < 0 ? "" : unquote(operation.substring(space + 1).trim());
+                if (opcode.equals("id"))
+                    analysis.id = operand;
+                else if (opcode.equals("bm"))
+                    bestMoves = operand;
+                else if (opcode.equals("am"))
+                    avoidMoves = operand;
+            }
+
+            SearchResult result = search.search(state, depth, timeLimitMillis);
+            Move best = result.getBestMove();
+            StringBuilder line = new StringBuilder(analysis.id).append('\t');
+            line.append(best == null ? "-" : San.format(state, best)).append('\t');
+            line.append(result.getScore()).append('\t');
+            line.append(result.getDepth()).append('\t');
+            line.append(result.getNodes()).append('\t');
+            line.append((System.nanoTime() - start) / 1000000);
+            if (bestMoves != null || avoidMoves != null) {
+                analysis.solved = (bestMoves == null || contains(state, bestMoves, best))
+                        && (avoidMoves == null || !contains(state, avoidMoves, best));
+                line.append('\t').append(analysis.solved ? "solved" : "unsolved");
+            }
+            analysis.line = line.toString();
+        } catch (RuntimeException e) {
+            // A malformed record or a failing search spoils its own line, not the rest of the batch
+            analysis.error = true;
+            analysis.line = analysis.id + "\terror\t" + (e instanceof IllegalArgumentException ? e.getMessage() : e);
+        }
+        analysis.nanos = System.nanoTime() - start;
+        return analysis;
+    }
+
+    private static void write(Analysis analysis, Writer out, AnalysisReport report) throws IOException {
+        out.write(analysis.line);
+        out.write('\n');
+        report.addPosition(analysis.nanos, analysis.error, analysis.solved);
+    }
+
+    /**
+     * Set up a FEN or EPD record.  An EPD record has the first four FEN fields followed by operations, which are
+     * added to the given list without their terminating semicolons.
+     */
+    static GameState parse(String record, List<String> operations) {
+        // Skip the board, side to move, castling and en passant fields
+        int end = 0;
+        for (int field = 0; field < 4; field++) {
+            while (end < record.length() && record.charAt(end) == ' ')
+                end++;
+            while (end < record.length() && record.charAt(end) != ' ')
+                end++;
+        }
+        String rest = record.substring(end).trim();
+        if (rest.isEmpty() || Character.isDigit(rest.charAt(0)))
+            return GameState.fromFen(record);
+
+        GameState state = GameState.fromFen(record.substring(0, end));
+        boolean quoted = false;
+        int from = 0;
+        for (int i = 0; i < rest.length(); i++) {
+            char c = rest.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ';' && !quoted) {
+                operations.add(rest.substring(from, i).trim());
+                from = i + 1;
+            }
+        }
+        if (!rest.substring(from).trim().isEmpty())
+            operations.add(rest.substring(from).trim());
+        return state;
+    }
+
+    private static String unquote(String operand) {
+        if (operand.length() >= 2 && operand.charAt(0) == '"' && operand.charAt(operand.length() - 1) == '"')
+            return operand.substring(1, operand.length() - 1);
+        return operand;
+    }
+
+    private static boolean contains(GameState state, String sanMoves, Move move) {
+        for (String san : sanMoves.split(" +")) {
+            if (San.parse(state, san).equals(move))
+                return true;
+        }
+        return false;
+    }
+
+    private static class Analysis {
+        String id;
+        String line;
+        long nanos;
+        boolean error;
+        Boolean solved;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: AnalysisPipeline <input> <output> <depth> [time per position ms] [threads]");
+            return;
+        }
+
+        AnalysisPipeline pipeline = new AnalysisPipeline(new Supplier<Evaluator>() {
+            @Override
+            public Evaluator get() {
+                return new ClassicEvaluator();
+            }
+        });
+        pipeline.setDepth(Integer.parseInt(args[2]));
+        if (args.length > 3)
+            pipeline.setTimeLimit(Long.parseLong(args[3]));
+        if (args.length > 4)
+            pipeline.setThreads(Integer.parseInt(args[4]));
+
+        BufferedReader in = new BufferedReader(new FileReader(args[0]));
+        Writer out = new BufferedWriter(new FileWriter(args[1]));
+        try {
+            System.out.println(pipeline.run(in, out));
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
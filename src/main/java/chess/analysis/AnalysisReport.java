@@ -0,0 +1,77 @@
+package chess.analysis;
+
+import chess.metrics.LatencyHistogram;
+
+/**
+ * Counts and timings of an analysis run.  Latency is the time a worker spent on one position, not counting the time
+ * the position waited in the queue.  Latencies go into a fixed size histogram, so a report takes the same memory
+ * however many positions are streamed through.
+ */
+public class AnalysisReport {
+    private int positions;
+    private int errors;
+    private int solved;
+    private int unsolved;
+    private final LatencyHistogram latencies = new LatencyHistogram("analysis");
+    private long elapsedNanos;
+
+    void addPosition(long nanos, boolean error, Boolean isSolved) {
+        positions++;
+        latencies.record(nanos);
+        if (error)
+            errors++;
+        if (isSolved != null) {
+            if (isSolved)
+                solved++;
+            else
+                unsolved++;
+        }
+    }
+
+    void setElapsed(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return The positions analysed, including those that failed
+     */
+    public int getPositions() {
+        return positions;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return The records with a "bm" or "am" operation whose best move was found
+     */
+    public int getSolved() {
+        return solved;
+    }
+
+    public int getUnsolved() {
+        return unsolved;
+    }
+
+    public double getPositionsPerSecond() {
+        return elapsedNanos == 0 ? 0 : positions * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param percentile Between 0 and 100
+     * @return The latency that the given percentage of positions did not exceed, in milliseconds, to within the
+     * histogram's 12.5%
+     */
+    public double getLatencyMillis(double percentile) {
+        return latencies.getPercentile(percentile) / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d positions (%d errors, %d/%d solved), %.1f positions/s, "
+                        + "latency p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms",
+                positions, errors, solved, solved + unsolved, getPositionsPerSecond(),
+                getLatencyMillis(50), getLatencyMillis(90), getLatencyMillis(99), getLatencyMillis(100));
+    }
+}
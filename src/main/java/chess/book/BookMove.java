@@ -0,0 +1,29 @@
+package chess.book;
+
+import chess.Move;
+
+/**
+ * A move found in the opening book, with its weight relative to the other book moves of the same position
+ */
+public class BookMove {
+    private final Move move;
+    private final int weight;
+
+    public BookMove(Move move, int weight) {
+        this.move = move;
+        this.weight = weight;
+    }
+
+    public Move getMove() {
+        return move;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return move + " (" + weight + ")";
+    }
+}
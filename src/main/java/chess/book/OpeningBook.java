@@ -0,0 +1,145 @@
+package chess.book;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An opening book in the Polyglot binary format: 16 byte big-endian entries of key, move, weight and learn data,
+ * sorted by key.  The file is memory mapped and binary searched in place, so there is no loading phase.
+ *
+ * Keys are computed by {@link PolyglotKey}, so books made by other Polyglot tools can be probed, and books made by
+ * {@link OpeningBookBuilder} can be read by them.  Moves this game does not have, such as castling and promotion,
+ * are left out when probing.
+ */
+public class OpeningBook implements Closeable {
+    static final int ENTRY_SIZE = 16;
+
+    private final RandomAccessFile file;
+    private final ByteBuffer entries;
+    private final int count;
+
+    private OpeningBook(RandomAccessFile file, ByteBuffer entries) {
+        this.file = file;
+        this.entries = entries;
+        this.count = entries.capacity() / ENTRY_SIZE;
+    }
+
+    /**
+     * Map a book file.
+     * @throws IOException if the file cannot be mapped or is not a whole number of entries
+     */
+    public static OpeningBook open(File bookFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(bookFile, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() % ENTRY_SIZE != 0 || channel.size() > Integer.MAX_VALUE)
+                throw new IOException(bookFile + " is not an opening book");
+            return new OpeningBook(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Find the book moves for the current position, keyed with the castling rights read from the board.
+     * @return The moves, heaviest first, or an empty list if the position is not in the book
+     */
+    public List<BookMove> getMoves(GameState state) {
+        return getMoves(state, PolyglotKey.key(state));
+    }
+
+    /**
+     * Find the book moves for the current position.  Moves that are not legal in the position, which come from hash
+     * collisions or from rules this game does not have, are left out, so every move returned can be played.
+     * @param key The position's {@link PolyglotKey}, for callers that follow the castling rights and en passant
+     *            file through the game
+     * @return The moves, heaviest first, or an empty list if the position is not in the book
+     */
+    public List<BookMove> getMoves(GameState state, long key) {
+        List<BookMove> moves = new ArrayList<BookMove>(4);
+
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+
+        for (int i = lo; i < count && keyAt(i) == key; i++) {
+            int code = entries.getShort(i * ENTRY_SIZE + 8) & 0xffff;
+            if (code >> 12 != 0)
+                continue;
+            Move move = decodeMove(code);
+            if (state.isLegalMove(move))
+                moves.add(new BookMove(move, entries.getShort(i * ENTRY_SIZE + 10) & 0xffff));
+        }
+        return moves;
+    }
+
+    /**
+     * Choose a book move at random, in proportion to the weights.
+     * @return The move, or null if the position is not in the book
+     */
+    public Move pickMove(GameState state, Random random) {
+        List<BookMove> moves = getMoves(state);
+        long total = 0;
+        for (BookMove move : moves) {
+            total += move.getWeight();
+        }
+        if (total == 0)
+            return moves.isEmpty() ? null : moves.get(0).getMove();
+
+        long choice = (long) (random.nextDouble() * total);
+        for (BookMove move : moves) {
+            choice -= move.getWeight();
+            if (choice < 0)
+                return move.getMove();
+        }
+        return moves.get(moves.size() - 1).getMove();
+    }
+
+    /**
+     * @return The number of entries in the book
+     */
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    /**
+     * Polyglot packs a move as to-file, to-row, from-file and from-row in three bits each, lowest first, with the
+     * promotion piece in the bits above.
+     */
+    static int encodeMove(Move move) {
+        int from = move.getOrigin().getIndex();
+        int to = move.getDestination().getIndex();
+        return (from << 6) | to;
+    }
+
+    static Move decodeMove(int code) {
+        return new Move(Position.fromIndex((code >> 6) & 63), Position.fromIndex(code & 63));
+    }
+}
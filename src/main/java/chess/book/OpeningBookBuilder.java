@@ -0,0 +1,172 @@
+package chess.book;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import chess.pgn.PgnGame;
+import chess.record.GameRecordReader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds an {@link OpeningBook} from played games.  Every move made in the first plies of a game is scored from
+ * the mover's point of view, two points for a win and one for a draw, and the scores are summed per position.
+ */
+public class OpeningBookBuilder {
+    private final int maxPly;
+    private final int minWeight;
+    private final Map<BookKey, BookKey> entries = new HashMap<BookKey, BookKey>();
+
+    /**
+     * @param maxPly Only moves made before this ply are added
+     * @param minWeight Moves whose summed score is below this are left out of the book
+     */
+    public OpeningBookBuilder(int maxPly, int minWeight) {
+        this.maxPly = maxPly;
+        this.minWeight = minWeight;
+    }
+
+    /**
+     * Add the opening moves of a game.  Games without a decisive or drawn result are skipped.
+     */
+    public void addGame(PgnGame game) {
+        String result = game.getResult();
+        if (!"1-0".equals(result) && !"0-1".equals(result) && !"1/2-1/2".equals(result))
+            return;
+
+        GameState state = game.createInitialState();
+        List<Move> moves = game.getMoves();
+        int castling = PolyglotKey.castlingRights(state);
+        Move lastMove = null;
+        for (int ply = 0; ply < maxPly && ply < moves.size(); ply++) {
+            Move move = moves.get(ply);
+            int score;
+            if ("1/2-1/2".equals(result))
+                score = 1;
+            else if ("1-0".equals(result) == (state.getCurrentPlayer() == Player.White))
+                score = 2;
+            else
+                score = 0;
+
+            long hash = PolyglotKey.key(state, castling, PolyglotKey.enPassantFile(state, lastMove));
+            BookKey key = new BookKey(hash, OpeningBook.encodeMove(move));
+            BookKey existing = entries.get(key);
+            if (existing == null)
+                entries.put(key, key);
+            else
+                key = existing;
+            key.weight += score;
+
+            state.movePiece(move);
+            castling = PolyglotKey.updateCastling(castling, move);
+            lastMove = move;
+        }
+    }
+
+    /**
+     * Add every game of a record file.
+     */
+    public void addGames(GameRecordReader reader) throws IOException {
+        PgnGame game;
+        while ((game = reader.readGame()) != null) {
+            addGame(game);
+        }
+    }
+
+    /**
+     * Write the book.  Entries are sorted by key and then by weight, heaviest first; weights of a position are
+     * scaled down together when the heaviest does not fit in 16 bits.
+     */
+    public void write(File bookFile) throws IOException {
+        List<BookKey> sorted = new ArrayList<BookKey>();
+        for (BookKey key : entries.keySet()) {
+            if (key.weight >= minWeight && key.weight > 0)
+                sorted.add(key);
+        }
+        Collections.sort(sorted, new Comparator<BookKey>() {
+            @Override
+            public int compare(BookKey a, BookKey b) {
+                int byKey = Long.compareUnsigned(a.hash, b.hash);
+                if (byKey != 0)
+                    return byKey;
+                return a.weight > b.weight ? -1 : (a.weight == b.weight ? 0 : 1);
+            }
+        });
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bookFile), 1 << 16));
+        try {
+            long heaviest = 0;
+            for (int i = 0; i < sorted.size(); i++) {
+                BookKey key = sorted.get(i);
+                if (i == 0 || sorted.get(i - 1).hash != key.hash)
+                    heaviest = key.weight;
+
+                long weight = heaviest > 0xffff ? Math.max(1, key.weight * 0xffff / heaviest) : key.weight;
+                out.writeLong(key.hash);
+                out.writeShort(key.move);
+                out.writeShort((int) weight);
+                out.writeInt(0);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Build a book from a game record file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: OpeningBookBuilder <games.rec> <book.bin>");
+            return;
+        }
+
+        OpeningBookBuilder builder = new OpeningBookBuilder(24, 2);
+        GameRecordReader reader = new GameRecordReader(new FileInputStream(args[0]));
+        try {
+            builder.addGames(reader);
+        } finally {
+            reader.close();
+        }
+        builder.write(new File(args[1]));
+    }
+
+    /**
+     * A position and move pair, which also carries the summed score
+     */
+    private static class BookKey {
+        final long hash;
+        final int move;
+        long weight;
+
+        BookKey(long hash, int move) {
+            this.hash = hash;
+            this.move = move;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            BookKey other = (BookKey) o;
+            return hash == other.hash && move == other.move;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash ^ (hash >>> 32)) * 31 + move;
+        }
+    }
+}
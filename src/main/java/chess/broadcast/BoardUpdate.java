@@ -0,0 +1,128 @@
+package chess.broadcast;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * One update of a broadcast game: either a move delta, which is the move with the hash and clocks after it, or a
+ * full snapshot of the position as FEN.  Deltas encode to {@link #DELTA_SIZE} bytes.  Updates are immutable, so they
+ * can be handed to any number of subscriber threads.
+ */
+public final class BoardUpdate {
+    public static final int DELTA_SIZE = 23;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final byte DELTA = 'D';
+    private static final byte SNAPSHOT = 'S';
+
+    private final long sequence;
+    private final String fen;
+    private final int origin;
+    private final int destination;
+    private final long hash;
+    private final int halfmoveClock;
+    private final int fullmoveNumber;
+
+    private BoardUpdate(long sequence, String fen, int origin, int destination, long hash, int halfmoveClock,
+                        int fullmoveNumber) {
+        this.sequence = sequence;
+        this.fen = fen;
+        this.origin = origin;
+        this.destination = destination;
+        this.hash = hash;
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    static BoardUpdate delta(long sequence, int origin, int destination, long hash, int halfmoveClock,
+                             int fullmoveNumber) {
+        return new BoardUpdate(sequence, null, origin, destination, hash, halfmoveClock, fullmoveNumber);
+    }
+
+    static BoardUpdate snapshot(long sequence, String fen, long hash) {
+        return new BoardUpdate(sequence, fen, -1, -1, hash, 0, 0);
+    }
+
+    /**
+     * @return The position of the update in the game's stream; a delta applies to the update before it
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isSnapshot() {
+        return fen != null;
+    }
+
+    /**
+     * @return The position for a snapshot, or null for a delta
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * @return The square index the piece moved from, or -1 for a snapshot
+     */
+    public int getOrigin() {
+        return origin;
+    }
+
+    public int getDestination() {
+        return destination;
+    }
+
+    /**
+     * @return The Zobrist hash after the update, which lets a subscriber check that it is in sync
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * Encode the update for sending.
+     */
+    public void put(ByteBuffer buffer) {
+        if (isSnapshot()) {
+            byte[] text = fen.getBytes(ASCII);
+            buffer.put(SNAPSHOT).putLong(sequence).putLong(hash).putShort((short) text.length).put(text);
+        } else {
+            buffer.put(DELTA).putLong(sequence).put((byte) origin).put((byte) destination).putLong(hash)
+                    .putShort((short) halfmoveClock).putShort((short) fullmoveNumber);
+        }
+    }
+
+    /**
+     * Decode an update written by {@link #put(ByteBuffer)}.
+     * @throws IllegalArgumentException if the buffer does not hold an update
+     */
+    public static BoardUpdate get(ByteBuffer buffer) {
+        byte type = buffer.get();
+        long sequence = buffer.getLong();
+        if (type == SNAPSHOT) {
+            long hash = buffer.getLong();
+            byte[] text = new byte[buffer.getShort() & 0xffff];
+            buffer.get(text);
+            return snapshot(sequence, new String(text, ASCII), hash);
+        }
+        if (type != DELTA)
+            throw new IllegalArgumentException("Unknown update type: " + type);
+        int origin = buffer.get();
+        int destination = buffer.get();
+        long hash = buffer.getLong();
+        return delta(sequence, origin, destination, hash, buffer.getShort() & 0xffff, buffer.getShort() & 0xffff);
+    }
+
+    @Override
+    public String toString() {
+        return isSnapshot() ? sequence + " " + fen : sequence + " " + origin + "-" + destination;
+    }
+}
@@ -0,0 +1,91 @@
+package chess.broadcast;
+
+import chess.GameListener;
+import chess.GameState;
+import chess.Move;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Publishes the moves of one game to any number of spectators.  The game's thread is the only writer: it puts every
+ * update in a ring buffer and then advances the published sequence, and never waits for subscribers.  A subscriber
+ * that falls more than the ring's capacity behind finds its next update overwritten and resyncs from the latest
+ * snapshot instead.  Snapshots are only taken at the start of a game and every half ring, and are only sent to
+ * subscribers that join or resync; everyone else gets the moves as deltas.
+ */
+public class Broadcaster implements GameListener {
+    private final AtomicReferenceArray<BoardUpdate> ring;
+    private final int mask;
+    private final int snapshotInterval;
+
+    private volatile long published = -1;
+    private volatile BoardUpdate latestSnapshot;
+    private int sinceSnapshot;
+
+    public Broadcaster() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity The number of updates kept for subscribers that are behind; a power of two
+     */
+    public Broadcaster(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1)
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        this.ring = new AtomicReferenceArray<BoardUpdate>(capacity);
+        this.mask = capacity - 1;
+        this.snapshotInterval = capacity / 2;
+    }
+
+    /**
+     * Start following a game.  The first update a new subscriber receives is a snapshot.
+     */
+    public Subscription subscribe() {
+        return new Subscription(this);
+    }
+
+    /**
+     * @return The sequence of the latest update, or -1 before the first game started
+     */
+    public long getSequence() {
+        return published;
+    }
+
+    @Override
+    public void gameStarted(GameState state) {
+        BoardUpdate snapshot = BoardUpdate.snapshot(published + 1, state.toFen(), state.getHash());
+        latestSnapshot = snapshot;
+        sinceSnapshot = 0;
+        publish(snapshot);
+    }
+
+    @Override
+    public void movePlayed(GameState state, Move move) {
+        long sequence = published + 1;
+        publish(BoardUpdate.delta(sequence, move.getOrigin().getIndex(), move.getDestination().getIndex(),
+                state.getHash(), state.getHalfmoveClock(), state.getFullmoveNumber()));
+
+        // Keep the snapshot recent enough that the updates after it are still in the ring
+        if (++sinceSnapshot >= snapshotInterval) {
+            latestSnapshot = BoardUpdate.snapshot(sequence, state.toFen(), state.getHash());
+            sinceSnapshot = 0;
+        }
+    }
+
+    private void publish(BoardUpdate update) {
+        ring.set((int) update.getSequence() & mask, update);
+        published = update.getSequence();
+    }
+
+    /**
+     * @return The update with the given sequence, or null if it has been overwritten
+     */
+    BoardUpdate get(long sequence) {
+        BoardUpdate update = ring.get((int) sequence & mask);
+        return update != null && update.getSequence() == sequence ? update : null;
+    }
+
+    BoardUpdate getLatestSnapshot() {
+        return latestSnapshot;
+    }
+}
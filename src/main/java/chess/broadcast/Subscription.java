@@ -0,0 +1,59 @@
+package chess.broadcast;
+
+/**
+ * One spectator's position in a broadcast.  A subscription is polled from a single thread; different subscriptions
+ * to the same broadcaster can be polled from different threads without coordinating.
+ */
+public class Subscription {
+    private final Broadcaster broadcaster;
+    private long next = -1;
+    private long resyncs;
+    private long skipped;
+
+    Subscription(Broadcaster broadcaster) {
+        this.broadcaster = broadcaster;
+    }
+
+    /**
+     * @return The next update, a snapshot if the subscriber has just joined or fell too far behind, or null if there
+     * is nothing new
+     */
+    public BoardUpdate poll() {
+        if (next < 0)
+            return resync();
+        if (next > broadcaster.getSequence())
+            return null;
+
+        BoardUpdate update = broadcaster.get(next);
+        if (update == null) {
+            resyncs++;
+            return resync();
+        }
+        next++;
+        return update;
+    }
+
+    private BoardUpdate resync() {
+        BoardUpdate snapshot = broadcaster.getLatestSnapshot();
+        if (snapshot == null)
+            return null;
+        if (next >= 0 && snapshot.getSequence() > next)
+            skipped += snapshot.getSequence() - next;
+        next = snapshot.getSequence() + 1;
+        return snapshot;
+    }
+
+    /**
+     * @return How many times the subscriber fell behind and was sent a snapshot
+     */
+    public long getResyncs() {
+        return resyncs;
+    }
+
+    /**
+     * @return The updates that were replaced by snapshots
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+}
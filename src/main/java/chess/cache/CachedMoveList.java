@@ -0,0 +1,65 @@
+package chess.cache;
+
+/**
+ * The legal moves of a position and whether the game is over there, as stored in a {@link MoveListCache}.  Moves
+ * are encoded as origin * 64 + destination square index.  Each list keeps its position packed exactly, so a list
+ * found by a hash that collides with another position's is not taken for that position's.  Instances are shared
+ * between threads and never change.
+ */
+public final class CachedMoveList {
+    public static final byte ONGOING = 0;
+    public static final byte CHECKMATE = 1;
+    public static final byte STALEMATE = 2;
+
+    private final short[] moves;
+    private final byte status;
+    private final long[] board;
+
+    /**
+     * @param moves The encoded moves; the array is kept, so the caller must not change it afterwards
+     * @param status {@link #ONGOING}, {@link #CHECKMATE} or {@link #STALEMATE}
+     * @param board The position packed exactly, as by {@link chess.GameState}; the array is kept too
+     */
+    public CachedMoveList(short[] moves, byte status, long[] board) {
+        this.moves = moves;
+        this.status = status;
+        this.board = board;
+    }
+
+    /**
+     * @return true if the list belongs to the packed position
+     * @param length The number of longs of the packed position
+     */
+    public boolean matches(long[] board, int length) {
+        if (length != this.board.length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            if (board[i] != this.board[i])
+                return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        return moves.length;
+    }
+
+    /**
+     * @return The encoded move at the index, origin * 64 + destination
+     */
+    public int getMove(int index) {
+        return moves[index];
+    }
+
+    public byte getStatus() {
+        return status;
+    }
+
+    /**
+     * @return An estimate of the heap taken by this list and its cache entry, in bytes
+     */
+    long getFootprint() {
+        // Map entry, boxed key, this object and the arrays, with 8-byte alignment
+        return 48 + 16 + 24 + ((16 + 2L * moves.length + 7) & ~7) + 16 + 8L * board.length;
+    }
+}
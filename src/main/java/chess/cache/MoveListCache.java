@@ -0,0 +1,154 @@
+package chess.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache from position hash to legal move list, shared by all the games of a server.  Lists are found by
+ * hash but only returned for the exact position they were stored for.  The cache is split
+ * into independently locked segments chosen by the hash, so threads looking up different positions rarely contend.
+ * Each segment evicts its least recently used lists once it holds more than its share of the memory budget.
+ */
+public class MoveListCache {
+    private final Segment[] segments;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes The memory budget, as estimated from the sizes of the lists
+     * @param segmentCount The number of independently locked segments; a power of two
+     */
+    public MoveListCache(long maxBytes, int segmentCount) {
+        if (segmentCount < 1 || Integer.bitCount(segmentCount) != 1)
+            throw new IllegalArgumentException("Segment count must be a power of two: " + segmentCount);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maxBytes / segmentCount);
+        }
+        this.mask = segmentCount - 1;
+    }
+
+    /**
+     * Create a cache with 64 segments.
+     */
+    public MoveListCache(long maxBytes) {
+        this(maxBytes, 64);
+    }
+
+    /**
+     * @param board The position packed exactly, which a list found by the hash must match
+     * @param length The number of longs of the packed position
+     * @return The cached list, or null if the position is not cached
+     */
+    public CachedMoveList get(long hash, long[] board, int length) {
+        CachedMoveList list = segmentFor(hash).get(hash);
+        if (list != null && !list.matches(board, length))
+            list = null;
+        if (list == null)
+            misses.increment();
+        else
+            hits.increment();
+        return list;
+    }
+
+    public void put(long hash, CachedMoveList list) {
+        segmentFor(hash).put(hash, list);
+    }
+
+    private Segment segmentFor(long hash) {
+        // The low bits pick the bucket inside the segment's map, so use the high bits here
+        return segments[(int) (hash >>> 40) & mask];
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The share of lookups that found their position, between 0 and 1
+     */
+    public double getHitRate() {
+        long found = hits.sum();
+        long total = found + misses.sum();
+        return total == 0 ? 0 : (double) found / total;
+    }
+
+    /**
+     * @return The number of positions cached
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return The estimated heap taken by the cached lists, in bytes
+     */
+    public long getFootprint() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d positions, %d KB, hit rate %.1f%%, %d evictions",
+                size(), getFootprint() / 1024, getHitRate() * 100, getEvictions());
+    }
+
+    private class Segment {
+        private final long maxBytes;
+        private final LinkedHashMap<Long, CachedMoveList> map =
+                new LinkedHashMap<Long, CachedMoveList>(16, 0.75f, true);
+        private long bytes;
+
+        Segment(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized CachedMoveList get(long hash) {
+            return map.get(hash);
+        }
+
+        synchronized void put(long hash, CachedMoveList list) {
+            CachedMoveList previous = map.put(hash, list);
+            if (previous != null)
+                bytes -= previous.getFootprint();
+            bytes += list.getFootprint();
+
+            // Access order puts the least recently used entries first
+            Iterator<Map.Entry<Long, CachedMoveList>> eldest = map.entrySet().iterator();
+            while (bytes > maxBytes && eldest.hasNext()) {
+                CachedMoveList evicted = eldest.next().getValue();
+                eldest.remove();
+                bytes -= evicted.getFootprint();
+                evictions.increment();
+            }
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized long getBytes() {
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Player;
+import chess.Position;
+import chess.Zobrist;
+import chess.pieces.Piece;
+
+/**
+ * The hand-written evaluation: material plus a small bonus for pieces and pawns that control the centre.
+ */
+public class ClassicEvaluator implements Evaluator {
+    /**
+     * Piece values in centipawns, indexed by {@link Zobrist#type(Piece)}
+     */
+    static final int[] PIECE_VALUES = {100, 320, 330, 500, 900, 0};
+
+    /**
+     * Bonus per square for knights, bishops and queens, from a1 to h8
+     */
+    private static final int[] CENTRE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   5,  10,  15,  15,  10,   5, -10,
+            -10,   5,  10,  15,  15,  10,   5, -10,
+            -10,   0,   5,  10,  10,   5,   0, -10,
+            -10,   0,   0,   0,   0,   0,   0, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20,
+    };
+
+    /**
+     * Bonus per pawn directly in front of a king that is still on its first two ranks
+     */
+    static final int SHIELD = 10;
+
+    private final int centreWeight;
+    private PawnHashTable pawnHashTable;
+
+    public ClassicEvaluator() {
+        this(100);
+    }
+
+    /**
+     * @param centreWeight How much of the centre bonus to apply, in percent
+     */
+    public ClassicEvaluator(int centreWeight) {
+        this.centreWeight = centreWeight;
+    }
+
+    /**
+     * Add pawn structure and king shelter terms, with the structure cached in the table.
+     * @param pawnHashTable The table, which belongs to this evaluator, or null to leave the terms out
+     */
+    public void setPawnHashTable(PawnHashTable pawnHashTable) {
+        this.pawnHashTable = pawnHashTable;
+    }
+
+    @Override
+    public int evaluate(GameState state) {
+        int white = score(state, Player.White) - score(state, Player.Black);
+        if (pawnHashTable != null)
+            white += pawns(state);
+        return state.getCurrentPlayer() == Player.White ? white : -white;
+    }
+
+    /**
+     * The cached structure, plus the terms that also depend on the other pieces: passed pawns that are blocked lose
+     * half their bonus, and kings gain from pawns in front of them
+     */
+    private int pawns(GameState state) {
+        int entry = pawnHashTable.probe(state);
+        long occupied = state.getPieceMask(Player.White) | state.getPieceMask(Player.Black);
+        long white = PawnHashTable.getPawns(state, Player.White);
+        long black = PawnHashTable.getPawns(state, Player.Black);
+
+        int score = pawnHashTable.getScore(entry);
+        for (long passed = pawnHashTable.getPassedPawns(entry, Player.White); passed != 0; passed &= passed - 1) {
+            int square = Long.numberOfTrailingZeros(passed);
+            if ((occupied & 1L << square + 8) != 0)
+                score -= PawnHashTable.PASSED[square >> 3] / 2;
+        }
+        for (long passed = pawnHashTable.getPassedPawns(entry, Player.Black); passed != 0; passed &= passed - 1) {
+            int square = Long.numberOfTrailingZeros(passed);
+            if ((occupied & 1L << square - 8) != 0)
+                score += PawnHashTable.PASSED[7 - (square >> 3)] / 2;
+        }
+        return score + shield(state.getKingPosition(Player.White), white, false)
+                - shield(state.getKingPosition(Player.Black), black, true);
+    }
+
+    private static int shield(Position king, long pawns, boolean black) {
+        if (king == null)
+            return 0;
+        int square = king.getIndex();
+        int rank = square >> 3;
+        if (black ? rank < 6 : rank > 1)
+            return 0;
+        long front = (PawnHashTable.FILES[square & 7] | PawnHashTable.ADJACENT_FILES[square & 7])
+                & 0xffL << (black ? rank - 1 : rank + 1) * 8;
+        return Long.bitCount(pawns & front) * SHIELD;
+    }
+
+    private int score(GameState state, Player player) {
+        int total = 0;
+        for (int type = 0; type < PIECE_VALUES.length; type++) {
+            int count = state.getPieceCount(player, type);
+            total += PIECE_VALUES[type] * count;
+            if (type == 3 || type == 5)
+                continue;
+            for (int i = 0; i < count; i++) {
+                int square = state.getPieceSquare(player, type, i);
+                if (type == 0) {
+                    // Pawns gain as they advance and more so in the middle files
+                    int rank = player == Player.White ? square >> 3 : 7 - (square >> 3);
+                    int file = square & 7;
+                    total += (rank - 1) * (file >= 2 && file <= 5 ? 6 : 3) * centreWeight / 100;
+                } else {
+                    total += CENTRE[square] * centreWeight / 100;
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,79 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Move;
+import chess.book.OpeningBook;
+
+import java.util.Random;
+
+/**
+ * A configured player: an evaluator and a search depth, and optionally an opening book.  Engines are not
+ * thread-safe.
+ */
+public class Engine {
+    private final String name;
+    private final Search search;
+    private final int depth;
+    private OpeningBook openingBook;
+    private Random random = new Random();
+    private SearchResult lastResult;
+
+    /**
+     * @param name Shown in match reports
+     * @param evaluator How positions are scored
+     * @param depth How many plies to search
+     */
+    public Engine(String name, Evaluator evaluator, int depth) {
+        this.name = name;
+        this.search = new Search(evaluator);
+        this.depth = depth;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Play book moves while the position is in the book.
+     * @param openingBook The book, which may be shared between engines
+     */
+    public void setOpeningBook(OpeningBook openingBook) {
+        this.openingBook = openingBook;
+    }
+
+    /**
+     * Set the source of randomness for choosing between book moves.
+     */
+    public void setRandom(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Choose a move.  The state is returned to the same position afterwards.
+     * @return The move, or null if the side to move has no legal move
+     */
+    public Move findMove(GameState state) {
+        if (openingBook != null) {
+            Move move = openingBook.pickMove(state, random);
+            if (move != null) {
+                lastResult = null;
+                return move;
+            }
+        }
+
+        lastResult = search.search(state, depth);
+        return lastResult.getBestMove();
+    }
+
+    /**
+     * @return The result of the last search, or null if the last move came from the book
+     */
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
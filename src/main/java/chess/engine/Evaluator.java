@@ -0,0 +1,16 @@
+package chess.engine;
+
+import chess.GameState;
+
+/**
+ * Scores positions for the search
+ */
+public interface Evaluator {
+
+    /**
+     * Score the current position.
+     * @param state The position
+     * @return The score in centipawns from the point of view of the side to move
+     */
+    int evaluate(GameState state);
+}
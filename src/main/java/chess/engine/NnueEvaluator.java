@@ -0,0 +1,194 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Move;
+import chess.PieceListener;
+import chess.Player;
+import chess.Zobrist;
+import chess.pieces.Piece;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Evaluation by an efficiently updatable neural network.  The hidden layer is the expensive part, so the evaluator
+ * keeps it as two accumulators, one per perspective, and listens to the game's pieces: each piece placed or removed
+ * adds or subtracts one weight column per accumulator, and an evaluation only runs the small output layer.
+ *
+ * The evaluator follows one game at a time, becoming the game's {@link PieceListener} the first time it evaluates
+ * it and clearing the listener again when it moves on to another game.  A game can have only one piece listener, so
+ * a game that already has another one is refused.  Like the other evaluators it must not be shared between threads.
+ */
+public class NnueEvaluator implements Evaluator, PieceListener {
+    /**
+     * The output before scaling that gives half a mate score, so no network can produce a score a search would take
+     * for a mate
+     */
+    private static final long MAX_OUTPUT = (long) (Search.MATE / 2) * NnueNetwork.QA * NnueNetwork.QB
+            / NnueNetwork.SCALE;
+
+    private final NnueNetwork network;
+    private final int hidden;
+
+    /**
+     * The hidden values before clipping, from White's and from Black's point of view
+     */
+    private final short[] white;
+    private final short[] black;
+    private GameState attached;
+
+    public NnueEvaluator(NnueNetwork network) {
+        this.network = network;
+        this.hidden = network.hidden;
+        this.white = new short[hidden];
+        this.black = new short[hidden];
+    }
+
+    /**
+     * @throws IllegalStateException if the game has a piece listener other than this evaluator
+     */
+    @Override
+    public int evaluate(GameState state) {
+        if (state != attached)
+            attach(state);
+
+        short[] own = state.getCurrentPlayer() == Player.White ? white : black;
+        short[] their = own == white ? black : white;
+        short[] weights = network.outputWeights;
+        // Each product fits an int, but a wide network's sum of 2H of them does not
+        long output = network.outputBias;
+        for (int i = 0; i < hidden; i++) {
+            output += clip(own[i]) * weights[i];
+        }
+        for (int i = 0; i < hidden; i++) {
+            output += clip(their[i]) * weights[hidden + i];
+        }
+        output = Math.max(-MAX_OUTPUT, Math.min(MAX_OUTPUT, output));
+        return (int) (output * NnueNetwork.SCALE / (NnueNetwork.QA * NnueNetwork.QB));
+    }
+
+    private static int clip(int value) {
+        return value < 0 ? 0 : value > NnueNetwork.QA ? NnueNetwork.QA : value;
+    }
+
+    /**
+     * Follow a game, stopping following the previous one.
+     */
+    private void attach(GameState state) {
+        PieceListener listener = state.getPieceListener();
+        if (listener != null && listener != this)
+            throw new IllegalStateException("The game already has a piece listener: " + listener);
+        if (attached != null && attached.getPieceListener() == this)
+            attached.setPieceListener(null);
+        attached = state;
+        state.setPieceListener(this);
+        boardReset(state);
+    }
+
+    @Override
+    public void piecePlaced(int square, Piece piece) {
+        update(square, piece, 1);
+    }
+
+    @Override
+    public void pieceRemoved(int square, Piece piece) {
+        update(square, piece, -1);
+    }
+
+    @Override
+    public void boardReset(GameState state) {
+        System.arraycopy(network.hiddenBiases, 0, white, 0, hidden);
+        System.arraycopy(network.hiddenBiases, 0, black, 0, hidden);
+        for (Player player : Player.values()) {
+            for (int type = 0; type < 6; type++) {
+                for (int i = 0; i < state.getPieceCount(player, type); i++) {
+                    update(state.getPieceSquare(player, type, i), player, type, 1);
+                }
+            }
+        }
+    }
+
+    private void update(int square, Piece piece, int sign) {
+        update(square, piece.getOwner(), Zobrist.type(piece), sign);
+    }
+
+    private void update(int square, Player owner, int type, int sign) {
+        boolean whitePiece = owner == Player.White;
+        add(white, NnueNetwork.input(whitePiece, type, square), sign);
+        add(black, NnueNetwork.input(!whitePiece, type, square ^ 56), sign);
+    }
+
+    /**
+     * Add or subtract one weight column.  A plain loop over arrays, which the JIT compiler turns into vector
+     * instructions where the processor has them.
+     */
+    private void add(short[] accumulator, int input, int sign) {
+        short[] weights = network.inputWeights;
+        int offset = input * hidden;
+        if (sign > 0) {
+            for (int i = 0; i < hidden; i++) {
+                accumulator[i] += weights[offset + i];
+            }
+        } else {
+            for (int i = 0; i < hidden; i++) {
+                accumulator[i] -= weights[offset + i];
+            }
+        }
+    }
+
+    /**
+     * Compare evaluations per second with the classic evaluator along random games, with make and unmake between
+     * evaluations as in a search.
+     * @param args An optional network file; a random network with 256 hidden values is used without one
+     */
+    public static void main(String[] args) throws Exception {
+        NnueNetwork network = args.length > 0 ? NnueNetwork.load(new File(args[0])) : NnueNetwork.random(256, 1);
+        List<List<Move>> games = new ArrayList<List<Move>>();
+        Random random = new Random(1);
+        for (int game = 0; game < 200; game++) {
+            GameState state = new GameState();
+            state.reset();
+            List<Move> moves = new ArrayList<Move>();
+            for (int ply = 0; ply < 80; ply++) {
+                List<Move> legal = state.getLegalMoves();
+                if (legal.isEmpty())
+                    break;
+                Move move = legal.get(random.nextInt(legal.size()));
+                state.movePiece(move);
+                moves.add(move);
+            }
+            games.add(moves);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            report("classic", new ClassicEvaluator(), games);
+            report("nnue " + network.getHiddenSize(), new NnueEvaluator(network), games);
+        }
+    }
+
+    private static void report(String name, Evaluator evaluator, List<List<Move>> games) {
+        long evaluations = 0;
+        long sum = 0;
+        long start = System.nanoTime();
+        for (List<Move> moves : games) {
+            GameState state = new GameState();
+            state.reset();
+            for (Move move : moves) {
+                List<Move> replies = state.getPossibleMoves();
+                for (int i = 0; i < replies.size(); i += 4) {
+                    Move reply = replies.get(i);
+                    state.movePiece(reply);
+                    sum += evaluator.evaluate(state);
+                    state.undoMove(reply);
+                    evaluations++;
+                }
+                state.movePiece(move);
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format("%-10s %,12.0f evaluations/s (checksum %d)", name,
+                evaluations * 1e9 / nanos, sum));
+    }
+}
@@ -0,0 +1,160 @@
+package chess.engine;
+
+import chess.Zobrist;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+/**
+ * The weights of an efficiently updatable neural network: 768 inputs, one per piece type, colour and square, feed a
+ * hidden layer that is kept once from each side's point of view, and the two halves feed a single output.  Inputs
+ * are relative to a perspective: "own" pieces are the perspective's, and Black's squares are flipped so both sides
+ * see their pieces from the bottom.
+ *
+ * The file format is little-endian: the int magic {@code 0x314E4E43} ("CNN1"), the int hidden size H, the input
+ * weights as 768 columns of H shorts, H hidden biases, 2H output weights (side to move first) and an int output
+ * bias.  Networks are shared between threads and never change.
+ */
+public class NnueNetwork {
+    public static final int INPUTS = 768;
+    private static final int MAGIC = 0x314E4E43;
+
+    /**
+     * Hidden values are clipped to 0 to QA; output weights are scaled by QB
+     */
+    static final int QA = 255;
+    static final int QB = 64;
+    static final int SCALE = 400;
+
+    final int hidden;
+    final short[] inputWeights;
+    final short[] hiddenBiases;
+    final short[] outputWeights;
+    final int outputBias;
+
+    NnueNetwork(int hidden, short[] inputWeights, short[] hiddenBiases, short[] outputWeights, int outputBias) {
+        this.hidden = hidden;
+        this.inputWeights = inputWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    public int getHiddenSize() {
+        return hidden;
+    }
+
+    /**
+     * Read a network file through a memory mapping, so it goes straight from the page cache into the weights.
+     * @throws IOException If the file cannot be read or is not a network of the expected size
+     */
+    public static NnueNetwork load(File file) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            if (channel.size() < 8)
+                throw new IOException("Not a network file: " + file);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC)
+                throw new IOException("Not a network file: " + file);
+            int hidden = buffer.getInt();
+            if (hidden <= 0 || channel.size() != size(hidden))
+                throw new IOException("Network file " + file + " has the wrong size for " + hidden + " hidden values");
+
+            short[] inputWeights = new short[INPUTS * hidden];
+            short[] hiddenBiases = new short[hidden];
+            short[] outputWeights = new short[2 * hidden];
+            buffer.asShortBuffer().get(inputWeights).get(hiddenBiases).get(outputWeights);
+            buffer.position(buffer.position() + 2 * (inputWeights.length + hiddenBiases.length + outputWeights.length));
+            return new NnueNetwork(hidden, inputWeights, hiddenBiases, outputWeights, buffer.getInt());
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Write the network in the format {@link #load(File)} reads.
+     */
+    public void write(File file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) size(hidden)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(hidden);
+        buffer.asShortBuffer().put(inputWeights).put(hiddenBiases).put(outputWeights);
+        buffer.position(buffer.position() + 2 * (inputWeights.length + hiddenBiases.length + outputWeights.length));
+        buffer.putInt(outputBias);
+        buffer.flip();
+
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            output.setLength(0);
+            output.getChannel().write(buffer);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static long size(int hidden) {
+        return 8 + 2L * (INPUTS + 1 + 2) * hidden + 4;
+    }
+
+    /**
+     * @param own Whether the piece belongs to the perspective
+     * @param type The piece type as numbered by {@link Zobrist#type}
+     * @param square The square as the perspective sees it
+     * @return The input index
+     */
+    static int input(boolean own, int type, int square) {
+        return ((own ? 0 : 6) + type) * 64 + square;
+    }
+
+    /**
+     * A network that only counts material, to within a few centipawns of {@link ClassicEvaluator}'s piece values.
+     * It is a stand-in until a trained network is available, and a known answer for tests.
+     * @param hidden The hidden size; only the first hidden value is used
+     */
+    public static NnueNetwork material(int hidden) {
+        short[] inputWeights = new short[INPUTS * hidden];
+        for (int type = 0; type < 6; type++) {
+            // Material difference / 32 about a midpoint of QA / 2 stays inside the clipped range
+            short weight = (short) Math.round(ClassicEvaluator.PIECE_VALUES[type] / 32.0);
+            for (int square = 0; square < 64; square++) {
+                inputWeights[input(true, type, square) * hidden] = weight;
+                inputWeights[input(false, type, square) * hidden] = (short) -weight;
+            }
+        }
+        short[] hiddenBiases = new short[hidden];
+        hiddenBiases[0] = QA / 2;
+
+        // The two halves differ by twice the material over 32; scale that back to centipawns
+        short[] outputWeights = new short[2 * hidden];
+        outputWeights[0] = (short) Math.round(16.0 * QA * QB / SCALE);
+        outputWeights[hidden] = (short) -outputWeights[0];
+        return new NnueNetwork(hidden, inputWeights, hiddenBiases, outputWeights, 0);
+    }
+
+    /**
+     * A network with small random weights, for benchmarks.
+     */
+    public static NnueNetwork random(int hidden, long seed) {
+        Random random = new Random(seed);
+        short[] inputWeights = new short[INPUTS * hidden];
+        for (int i = 0; i < inputWeights.length; i++) {
+            inputWeights[i] = (short) (random.nextInt(33) - 16);
+        }
+        short[] hiddenBiases = new short[hidden];
+        for (int i = 0; i < hidden; i++) {
+            hiddenBiases[i] = (short) random.nextInt(QA);
+        }
+        short[] outputWeights = new short[2 * hidden];
+        for (int i = 0; i < outputWeights.length; i++) {
+            outputWeights[i] = (short) (random.nextInt(65) - 32);
+        }
+        return new NnueNetwork(hidden, inputWeights, hiddenBiases, outputWeights, 0);
+    }
+}
@@ -0,0 +1,170 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Player;
+
+/**
+ * A cache of pawn structure evaluations keyed by {@link GameState#getPawnHash()}.  Pawns move on only a few of the
+ * nodes of a search, so most lookups find the structure already scored.  The table is direct-mapped: each
+ * pawn hash has one slot, and a new structure simply replaces whatever was there.  Like the evaluators it belongs to
+ * one thread.
+ *
+ * An entry holds the structure's score from White's point of view and each side's passed pawns.  The terms are
+ * doubled pawns, isolated pawns and passed pawns by rank; they depend on nothing but the pawns.
+ */
+public class PawnHashTable {
+    static final int DOUBLED = -12;
+    static final int ISOLATED = -15;
+
+    /**
+     * Passed pawn bonus by rank, counted from the pawn's own side
+     */
+    static final int[] PASSED = {0, 5, 10, 20, 35, 60, 100, 0};
+
+    static final long[] FILES = new long[8];
+    static final long[] ADJACENT_FILES = new long[8];
+    private static final long[] WHITE_PASSED_SPAN = new long[64];
+    private static final long[] BLACK_PASSED_SPAN = new long[64];
+
+    static {
+        for (int file = 0; file < 8; file++) {
+            FILES[file] = 0x0101010101010101L << file;
+        }
+        for (int file = 0; file < 8; file++) {
+            ADJACENT_FILES[file] = (file > 0 ? FILES[file - 1] : 0) | (file < 7 ? FILES[file + 1] : 0);
+        }
+        for (int square = 0; square < 64; square++) {
+            int rank = square >> 3;
+            long files = FILES[square & 7] | ADJACENT_FILES[square & 7];
+            WHITE_PASSED_SPAN[square] = rank == 7 ? 0 : files & -1L << (rank + 1) * 8;
+            BLACK_PASSED_SPAN[square] = files & (1L << rank * 8) - 1;
+        }
+    }
+
+    private final long[] keys;
+    private final int[] scores;
+    private final long[] passed;
+    private final boolean[] used;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param entries The number of slots; a power of two
+     */
+    public PawnHashTable(int entries) {
+        if (entries < 1 || Integer.bitCount(entries) != 1)
+            throw new IllegalArgumentException("Entries must be a power of two: " + entries);
+        this.keys = new long[entries];
+        this.scores = new int[entries];
+        this.passed = new long[2 * entries];
+        this.used = new boolean[entries];
+        this.mask = entries - 1;
+    }
+
+    /**
+     * Find the position's pawn structure, scoring it if it is not in the table.
+     * @return The entry, to pass to {@link #getScore(int)} and {@link #getPassedPawns(int, Player)}
+     */
+    public int probe(GameState state) {
+        long key = state.getPawnHash();
+        int entry = (int) key & mask;
+        if (used[entry] && keys[entry] == key) {
+            hits++;
+            return entry;
+        }
+
+        misses++;
+        long white = getPawns(state, Player.White);
+        long black = getPawns(state, Player.Black);
+        keys[entry] = key;
+        used[entry] = true;
+        passed[2 * entry] = passedPawns(white, black, WHITE_PASSED_SPAN);
+        passed[2 * entry + 1] = passedPawns(black, white, BLACK_PASSED_SPAN);
+        scores[entry] = score(white, black, passed[2 * entry], passed[2 * entry + 1]);
+        return entry;
+    }
+
+    /**
+     * @return The score of the structure in centipawns, from White's point of view
+     */
+    public int getScore(int entry) {
+        return scores[entry];
+    }
+
+    /**
+     * @return The squares of the player's passed pawns as a bitmask, a1 = bit 0
+     */
+    public long getPassedPawns(int entry, Player player) {
+        return passed[2 * entry + (player == Player.White ? 0 : 1)];
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The share of probes that found their structure, between 0 and 1
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, hit rate %.1f%%", keys.length, getHitRate() * 100);
+    }
+
+    /**
+     * @return The squares of the player's pawns as a bitmask
+     */
+    static long getPawns(GameState state, Player player) {
+        long pawns = 0;
+        for (int i = 0; i < state.getPieceCount(player, 0); i++) {
+            pawns |= 1L << state.getPieceSquare(player, 0, i);
+        }
+        return pawns;
+    }
+
+    /**
+     * A pawn is passed if no enemy pawn is ahead of it on its own or a neighbouring file, and it is not behind one of
+     * its own pawns
+     */
+    private static long passedPawns(long own, long enemy, long[] spans) {
+        long passed = 0;
+        for (long pawns = own; pawns != 0; pawns &= pawns - 1) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            if ((enemy & spans[square]) == 0 && (own & spans[square] & FILES[square & 7]) == 0)
+                passed |= 1L << square;
+        }
+        return passed;
+    }
+
+    /**
+     * Score a pawn structure from White's point of view.
+     */
+    static int score(long white, long black, long whitePassed, long blackPassed) {
+        return side(white, whitePassed, false) - side(black, blackPassed, true);
+    }
+
+    private static int side(long pawns, long passedPawns, boolean black) {
+        int score = 0;
+        for (int file = 0; file < 8; file++) {
+            int count = Long.bitCount(pawns & FILES[file]);
+            if (count > 1)
+                score += (count - 1) * DOUBLED;
+            if (count > 0 && (pawns & ADJACENT_FILES[file]) == 0)
+                score += count * ISOLATED;
+        }
+        for (long passed = passedPawns; passed != 0; passed &= passed - 1) {
+            int rank = Long.numberOfTrailingZeros(passed) >> 3;
+            score += PASSED[black ? 7 - rank : rank];
+        }
+        return score;
+    }
+}
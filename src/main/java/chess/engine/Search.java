@@ -0,0 +1,314 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import chess.Position;
+import chess.Zobrist;
+import chess.metrics.LatencyHistogram;
+import chess.metrics.Metrics;
+import chess.metrics.SearchIterationEvent;
+import chess.pieces.King;
+import chess.pieces.Piece;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Alpha-beta search with iterative deepening.  The move generator allows moves into check, so the search treats
+ * taking the king as the end of the game: a side that can take the opponent's king has won, and a side whose every
+ * move loses its king is mated, or stalemated if it is not in check.  Only the root filters out illegal moves.
+ * With a {@link TranspositionTable} positions reached again are not searched again, and the table's moves are
+ * tried first.  A search is not thread-safe; give every thread its own.
+ */
+public class Search {
+    public static final int MATE = 100000;
+    private static final int INFINITY = MATE + 1;
+    private static final LatencyHistogram ITERATIONS = Metrics.histogram("search.iteration");
+    private static final LongAdder NODES = Metrics.counter("search.nodes");
+
+    private final Evaluator evaluator;
+    private long nodes;
+    private long deadline;
+    private boolean stopped;
+    private TranspositionTable table;
+
+    public Search(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Search the current position to a fixed depth.  The state is returned to the same position afterwards.
+     * @param state The position
+     * @param depth The depth in plies
+     * @return The result of the deepest iteration
+     */
+    public SearchResult search(GameState state, int depth) {
+        return search(state, depth, 0);
+    }
+
+    /**
+     * Search the current position until a depth is reached or time runs out, whichever comes first.  The first
+     * iteration always completes; an iteration that runs out of time is discarded.
+     * @param state The position
+     * @param depth The maximum depth in plies
+     * @param timeLimitMillis The time allowed, or 0 for no limit
+     * @return The result of the deepest completed iteration
+     */
+    public SearchResult search(GameState state, int depth, long timeLimitMillis) {
+        return search(state, depth, timeLimitMillis, 1, null).get(0);
+    }
+
+    /**
+     * Search for the best few moves.  Every iteration searches the root once per line: the first line over all the
+     * moves, and each further line over the moves the earlier lines did not choose, so each line's score is exact.
+     * The lines share the transposition table, if there is one, so the later lines mostly find their positions
+     * already searched.
+     * @param state The position
+     * @param depth The maximum depth in plies
+     * @param timeLimitMillis The time allowed, or 0 for no limit
+     * @param lines How many moves to find
+     * @param listener Told about every line as soon as it is searched to a new depth, or null
+     * @return The lines of the deepest completed iteration, best first; fewer if there are fewer legal moves
+     */
+    public List<SearchResult> search(GameState state, int depth, long timeLimitMillis, int lines,
+                                     SearchListener listener) {
+        if (lines < 1)
+            throw new IllegalArgumentException("At least one line is needed: " + lines);
+        nodes = 0;
+        stopped = false;
+        deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1000000 : 0;
+        Player player = state.getCurrentPlayer();
+        List<Move> moves = state.getLegalMoves();
+        if (moves.isEmpty()) {
+            int score = state.isInCheck(player) ? -MATE : 0;
+            return Collections.singletonList(new SearchResult(null, score, 0, 0));
+        }
+        orderMoves(state, moves);
+        lines = Math.min(lines, moves.size());
+
+        List<SearchResult> results = null;
+        for (int iteration = 1; iteration <= depth && !stopped; iteration++) {
+            long start = Metrics.ENABLED ? System.nanoTime() : 0;
+            long startNodes = nodes;
+            // Recordings are started independently of the metrics flag, so the event is always created
+            SearchIterationEvent event = new SearchIterationEvent();
+            event.begin();
+
+            List<SearchResult> found = new ArrayList<SearchResult>(lines);
+            List<Move> remaining = new ArrayList<Move>(moves);
+            for (int line = 1; line <= lines; line++) {
+                Move best = null;
+                int alpha = -INFINITY;
+                for (Move move : remaining) {
+                    state.movePiece(move);
+                    int score = -negamax(state, iteration - 1, -INFINITY, -alpha, 1);
+                    state.undoMove(move);
+                    if (score > alpha) {
+                        alpha = score;
+                        best = move;
+                    }
+                }
+                if (stopped && results != null)
+                    break;
+
+                remaining.remove(best);
+                SearchResult result = new SearchResult(best, alpha, iteration, nodes,
+                        getPrincipalVariation(state, best, iteration));
+                found.add(result);
+                if (listener != null)
+                    listener.lineUpdated(line, result);
+            }
+
+            if (Metrics.ENABLED) {
+                ITERATIONS.recordSince(start);
+                NODES.add(nodes - startNodes);
+            }
+            if (stopped && results != null)
+                break;
+            if (event.shouldCommit()) {
+                event.depth = iteration;
+                event.nodes = nodes;
+                event.score = found.get(0).getScore();
+                event.bestMove = String.valueOf(found.get(0).getBestMove());
+                event.commit();
+            }
+
+            // Try the lines' moves first, in order, in the next iteration
+            for (int i = found.size() - 1; i >= 0; i--) {
+                Move best = found.get(i).getBestMove();
+                moves.remove(best);
+                moves.add(0, best);
+            }
+            results = found;
+        }
+        return results;
+    }
+
+    /**
+     * Use a transposition table from now on.  The table can be kept between searches, but not shared with another
+     * thread's search.
+     * @param table The table, or null to search without one
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Follow the best moves stored in the transposition table from the position after the first move.
+     */
+    private List<Move> getPrincipalVariation(GameState state, Move first, int depth) {
+        List<Move> variation = new ArrayList<Move>();
+        variation.add(first);
+        if (table == null)
+            return variation;
+
+        state.movePiece(first);
+        while (variation.size() < depth) {
+            int entry = table.probe(state.getHash());
+            if (entry < 0 || table.getMove(entry) == TranspositionTable.NO_MOVE)
+                break;
+            int encoded = table.getMove(entry);
+            Move move = new Move(Position.fromIndex(encoded >> 6), Position.fromIndex(encoded & 63));
+            if (!state.getPossibleMoves().contains(move))
+                break;
+            state.movePiece(move);
+            variation.add(move);
+        }
+        for (int i = variation.size() - 1; i >= 0; i--) {
+            state.undoMove(variation.get(i));
+        }
+        return variation;
+    }
+
+    /**
+     * @return The nodes visited by the last search
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    private int negamax(GameState state, int depth, int alpha, int beta, int ply) {
+        nodes++;
+        if ((nodes & 1023) == 0 && deadline != 0 && System.nanoTime() > deadline)
+            stopped = true;
+        if (stopped)
+            return 0;
+        if (depth == 0)
+            return evaluator.evaluate(state);
+
+        int tableMove = TranspositionTable.NO_MOVE;
+        if (table != null) {
+            int entry = table.probe(state.getHash());
+            if (entry >= 0) {
+                tableMove = table.getMove(entry);
+                if (table.getDepth(entry) >= depth) {
+                    int score = fromTable(table.getScore(entry), ply);
+                    int bound = table.getBound(entry);
+                    if (bound == TranspositionTable.EXACT
+                            || bound == TranspositionTable.LOWER_BOUND && score >= beta
+                            || bound == TranspositionTable.UPPER_BOUND && score <= alpha)
+                        return score;
+                }
+            }
+        }
+
+        List<Move> moves = state.getPossibleMoves();
+        if (orderMoves(state, moves))
+            return MATE - ply;
+        if (tableMove != TranspositionTable.NO_MOVE)
+            moveToFront(moves, tableMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        Move bestMove = null;
+        for (Move move : moves) {
+            state.movePiece(move);
+            int score = -negamax(state, depth - 1, -beta, -alpha, ply + 1);
+            state.undoMove(move);
+
+            if (score > best) {
+                best = score;
+                bestMove = move;
+            }
+            if (score > alpha)
+                alpha = score;
+            if (alpha >= beta)
+                break;
+        }
+
+        if (best == -INFINITY)
+            return 0;
+        if (best == -(MATE - ply - 1) && !state.isInCheck(state.getCurrentPlayer()))
+            best = 0;
+        if (table != null && !stopped) {
+            int bound = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                    : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+            table.store(state.getHash(), depth, toTable(best, ply), bound,
+                    bestMove.getOrigin().getIndex() * 64 + bestMove.getDestination().getIndex());
+        }
+        return best;
+    }
+
+    /**
+     * Mate scores count plies from the root; the table keeps them counted from the stored position
+     */
+    private static int toTable(int score, int ply) {
+        if (score > MATE - 1000)
+            return score + ply;
+        if (score < -(MATE - 1000))
+            return score - ply;
+        return score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score > MATE - 1000)
+            return score - ply;
+        if (score < -(MATE - 1000))
+            return score + ply;
+        return score;
+    }
+
+    private static void moveToFront(List<Move> moves, int encoded) {
+        for (int i = 1; i < moves.size(); i++) {
+            Move move = moves.get(i);
+            if (move.getOrigin().getIndex() * 64 + move.getDestination().getIndex() == encoded) {
+                moves.remove(i);
+                moves.add(0, move);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sort captures to the front, most valuable victim first.
+     * @return true if one of the moves takes the opponent's king
+     */
+    private static boolean orderMoves(GameState state, List<Move> moves) {
+        int size = moves.size();
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            Piece victim = state.getPieceAt(moves.get(i).getDestination());
+            if (victim instanceof King)
+                return true;
+            keys[i] = victim == null ? 0 : ClassicEvaluator.PIECE_VALUES[Zobrist.type(victim)];
+        }
+
+        // Insertion sort, stable so equal moves keep the generator's order
+        for (int i = 1; i < size; i++) {
+            int key = keys[i];
+            Move move = moves.get(i);
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                keys[j + 1] = keys[j];
+                moves.set(j + 1, moves.get(j));
+                j--;
+            }
+            keys[j + 1] = key;
+            moves.set(j + 1, move);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,14 @@
+package chess.engine;
+
+/**
+ * Told about the lines of a multi-PV search as they are found, so analysis can be shown while the search runs.
+ */
+public interface SearchListener {
+
+    /**
+     * A line was searched to a new depth.
+     * @param line The line's rank, from 1 for the best move
+     * @param result The line's first move, score, depth and principal variation
+     */
+    void lineUpdated(int line, SearchResult result);
+}
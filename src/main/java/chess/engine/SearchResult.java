@@ -0,0 +1,70 @@
+package chess.engine;
+
+import chess.Move;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a search: the best move, its score and how much work it took
+ */
+public class SearchResult {
+    private final Move bestMove;
+    private final int score;
+    private final int depth;
+    private final long nodes;
+    private final List<Move> principalVariation;
+
+    public SearchResult(Move bestMove, int score, int depth, long nodes) {
+        this(bestMove, score, depth, nodes,
+                bestMove == null ? Collections.<Move>emptyList() : Collections.singletonList(bestMove));
+    }
+
+    /**
+     * @param principalVariation The expected moves from the position, starting with the best move
+     */
+    public SearchResult(Move bestMove, int score, int depth, long nodes, List<Move> principalVariation) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.principalVariation = principalVariation;
+    }
+
+    /**
+     * @return The best move, or null if the side to move has no legal move
+     */
+    public Move getBestMove() {
+        return bestMove;
+    }
+
+    /**
+     * @return The score in centipawns for the side to move; mates are scored near {@link Search#MATE}
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return The depth of the last completed iteration
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @return The best move followed by the expected replies, as far as the search can tell; at least the best move
+     */
+    public List<Move> getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    @Override
+    public String toString() {
+        return bestMove + " score " + score + " depth " + depth + " nodes " + nodes;
+    }
+}
@@ -0,0 +1,102 @@
+package chess.engine;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the results of searched positions by Zobrist hash, so a position reached again by another move order,
+ * or searched again by a later iteration or another line of a multi-PV search, is not searched from scratch.
+ * Each entry holds the score with whether it is exact or a bound, the depth it was searched to, and the best move.
+ * The table is direct-mapped and always replaces; like a {@link Search} it belongs to one thread.
+ */
+public class TranspositionTable {
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    /**
+     * Returned by {@link #getMove(int)} for an entry without a move
+     */
+    public static final int NO_MOVE = -1;
+
+    private final long[] keys;
+
+    /**
+     * The score in the low 32 bits, then 8 bits of depth, 2 of bound and 13 of move + 1
+     */
+    private final long[] data;
+    private final int mask;
+    private long probes;
+    private long hits;
+
+    /**
+     * @param entries The number of slots; a power of two
+     */
+    public TranspositionTable(int entries) {
+        if (entries < 1 || Integer.bitCount(entries) != 1)
+            throw new IllegalArgumentException("Entries must be a power of two: " + entries);
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.mask = entries - 1;
+    }
+
+    /**
+     * @return The entry holding the position, or -1 if the position is not in the table
+     */
+    public int probe(long hash) {
+        probes++;
+        int entry = (int) hash & mask;
+        if (keys[entry] != hash || data[entry] == 0)
+            return -1;
+        hits++;
+        return entry;
+    }
+
+    /**
+     * @param move The best move encoded as origin * 64 + destination square index, or {@link #NO_MOVE}
+     */
+    public void store(long hash, int depth, int score, int bound, int move) {
+        int entry = (int) hash & mask;
+        keys[entry] = hash;
+        data[entry] = (score & 0xffffffffL) | (long) Math.min(depth, 255) << 32 | (long) bound << 40
+                | (long) (move + 1) << 42;
+    }
+
+    public int getScore(int entry) {
+        return (int) data[entry];
+    }
+
+    public int getDepth(int entry) {
+        return (int) (data[entry] >>> 32) & 0xff;
+    }
+
+    /**
+     * @return {@link #EXACT}, {@link #LOWER_BOUND} or {@link #UPPER_BOUND}
+     */
+    public int getBound(int entry) {
+        return (int) (data[entry] >>> 40) & 3;
+    }
+
+    /**
+     * @return The best move as origin * 64 + destination, or {@link #NO_MOVE}
+     */
+    public int getMove(int entry) {
+        return (int) (data[entry] >>> 42) - 1;
+    }
+
+    /**
+     * @return The share of probes that found their position, between 0 and 1
+     */
+    public double getHitRate() {
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+
+    /**
+     * Forget every position.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+        probes = 0;
+        hits = 0;
+    }
+}
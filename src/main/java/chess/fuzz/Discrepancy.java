@@ -0,0 +1,77 @@
+package chess.fuzz;
+
+import java.util.List;
+
+/**
+ * A position where a generator disagreed with the reference generator, as found by a {@link GeneratorFuzzer}.
+ */
+public class Discrepancy {
+    private final String generator;
+    private final int game;
+    private final List<String> moves;
+    private final String fen;
+    private final String shrunkFen;
+    private final String description;
+
+    Discrepancy(String generator, int game, List<String> moves, String fen, String shrunkFen, String description) {
+        this.generator = generator;
+        this.game = game;
+        this.moves = moves;
+        this.fen = fen;
+        this.shrunkFen = shrunkFen;
+        this.description = description;
+    }
+
+    /**
+     * @return The name the generator was added under
+     */
+    public String getGenerator() {
+        return generator;
+    }
+
+    /**
+     * @return The number of the random game, which replays with the same seed
+     */
+    public int getGame() {
+        return game;
+    }
+
+    /**
+     * @return The moves from the start of the game to the position, as origin and destination
+     */
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    /**
+     * @return The position where the generators first disagreed
+     */
+    public String getFen() {
+        return fen;
+    }
+
+    /**
+     * @return The position with as many pieces removed as possible while the generators still disagree, or null if
+     * the generator only goes wrong after the moves of the game and not when set up from the position
+     */
+    public String getShrunkFen() {
+        return shrunkFen;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(generator).append(" differs in game ").append(game).append(" after ").append(moves.size())
+                .append(" plies: ").append(description).append(String.format("%n"));
+        builder.append("  position ").append(fen).append(String.format("%n"));
+        if (shrunkFen != null)
+            builder.append("  shrunk   ").append(shrunkFen).append(String.format("%n"));
+        else
+            builder.append("  moves    ").append(moves).append(String.format("%n"));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,312 @@
+package chess.fuzz;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Differential testing of move generators.  The fuzzer plays random legal games on a reference game state, which
+ * generates moves with the map-based {@link chess.pieces.Piece#getPossiblePositions} code, and plays the same moves
+ * on a game state for every generator under test.  After every move it compares the possible moves, the legal moves
+ * and whether each king is in check.  When a generator disagrees, the position is shrunk by taking off pieces for as
+ * long as the disagreement remains, and reported as FEN.  Games are independent and run in parallel.
+ */
+public class GeneratorFuzzer {
+    private final Map<String, Supplier<GameState>> generators = new LinkedHashMap<String, Supplier<GameState>>();
+    private final AtomicLong positions = new AtomicLong();
+
+    private int games = 1000;
+    private int maxPlies = 200;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 1;
+
+    /**
+     * Create a fuzzer for the incremental generator.
+     */
+    public GeneratorFuzzer() {
+        addGenerator("incremental", new Supplier<GameState>() {
+            @Override
+            public GameState get() {
+                GameState state = new GameState();
+                state.setIncrementalMoveGeneration(true);
+                return state;
+            }
+        });
+    }
+
+    /**
+     * Compare another generator with the reference.
+     * @param name The name to report discrepancies under
+     * @param factory Creates a game state that uses the generator; called from many threads.  The fuzzer sets up the
+     *                position with {@link GameState#loadFen(String)}
+     */
+    public void addGenerator(String name, Supplier<GameState> factory) {
+        generators.put(name, factory);
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    /**
+     * @param maxPlies Games that run longer are stopped
+     */
+    public void setMaxPlies(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return The positions compared by the last run
+     */
+    public long getPositions() {
+        return positions.get();
+    }
+
+    /**
+     * Play the games.
+     * @return The first discrepancy of each generator in each game, in game order
+     */
+    public List<Discrepancy> run() throws InterruptedException, ExecutionException {
+        positions.set(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Discrepancy>>> results = new ArrayList<Future<List<Discrepancy>>>();
+            for (int i = 0; i < games; i++) {
+                final int game = i;
+                results.add(executor.submit(new Callable<List<Discrepancy>>() {
+                    @Override
+                    public List<Discrepancy> call() {
+                        return playGame(game);
+                    }
+                }));
+            }
+
+            List<Discrepancy> discrepancies = new ArrayList<Discrepancy>();
+            for (Future<List<Discrepancy>> result : results) {
+                discrepancies.addAll(result.get());
+            }
+            return discrepancies;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private List<Discrepancy> playGame(int game) {
+        Random random = new Random(seed * 31 + game);
+        GameState reference = new GameState();
+        reference.reset();
+        String start = reference.toFen();
+
+        Map<String, GameState> candidates = new LinkedHashMap<String, GameState>();
+        for (Map.Entry<String, Supplier<GameState>> generator : generators.entrySet()) {
+            GameState state = generator.getValue().get();
+            state.loadFen(start);
+            candidates.put(generator.getKey(), state);
+        }
+
+        List<Discrepancy> discrepancies = new ArrayList<Discrepancy>();
+        List<String> moves = new ArrayList<String>();
+        for (int ply = 0; ply <= maxPlies && !candidates.isEmpty(); ply++) {
+            positions.incrementAndGet();
+            List<Move> legal = getLegalMoves(reference);
+            for (String name : new ArrayList<String>(candidates.keySet())) {
+                String description = compare(reference, legal, candidates.get(name));
+                if (description != null) {
+                    String fen = reference.toFen();
+                    discrepancies.add(new Discrepancy(name, game, new ArrayList<String>(moves), fen,
+                            shrink(generators.get(name), fen), description));
+                    candidates.remove(name);
+                }
+            }
+            if (legal.isEmpty())
+                break;
+
+            Move move = legal.get(random.nextInt(legal.size()));
+            reference.movePiece(move);
+            for (GameState candidate : candidates.values()) {
+                candidate.movePiece(new Move(move.getOrigin(), move.getDestination()));
+            }
+            moves.add(move.toString());
+        }
+        return discrepancies;
+    }
+
+    /**
+     * The legal moves worked out the slow way, by trying every possible move
+     */
+    private static List<Move> getLegalMoves(GameState state) {
+        Player player = state.getCurrentPlayer();
+        List<Move> legal = new ArrayList<Move>();
+        for (Move move : state.getPossibleMoves()) {
+            state.movePiece(move);
+            if (!state.isInCheck(player))
+                legal.add(move);
+            state.undoMove(move);
+        }
+        return legal;
+    }
+
+    /**
+     * @return What the candidate got wrong, or null if it agrees with the reference
+     */
+    static String compare(GameState reference, List<Move> legal, GameState candidate) {
+        String possible = compareMoves("possible moves", reference.getPossibleMoves(), candidate.getPossibleMoves());
+        if (possible != null)
+            return possible;
+        String legalMoves = compareMoves("legal moves", legal, candidate.getLegalMoves());
+        if (legalMoves != null)
+            return legalMoves;
+        for (Player player : Player.values()) {
+            if (reference.isInCheck(player) != candidate.isInCheck(player))
+                return player + " in check: expected " + reference.isInCheck(player);
+        }
+        return null;
+    }
+
+    private static String compareMoves(String what, List<Move> expected, List<Move> actual) {
+        if (expected.equals(actual))
+            return null;
+        List<Move> missing = new ArrayList<Move>(expected);
+        missing.removeAll(actual);
+        List<Move> extra = new ArrayList<Move>(actual);
+        extra.removeAll(expected);
+        if (missing.isEmpty() && extra.isEmpty())
+            return what + " in a different order: expected " + expected + " but was " + actual;
+        return what + " missing " + missing + ", extra " + extra;
+    }
+
+    /**
+     * Take pieces other than the kings off the board one at a time, keeping each removal that leaves the generator
+     * still disagreeing with the reference.
+     * @return The smallest position found, or null if the position set up from FEN does not disagree at all
+     */
+    static String shrink(Supplier<GameState> factory, String fen) {
+        if (!differs(factory, fen))
+            return null;
+
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (int square = 0; square < 64; square++) {
+                char piece = pieceAt(fen, square);
+                if (piece == ' ' || piece == 'k' || piece == 'K')
+                    continue;
+                String smaller = removePiece(fen, square);
+                if (differs(factory, smaller)) {
+                    fen = smaller;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return fen;
+    }
+
+    private static boolean differs(Supplier<GameState> factory, String fen) {
+        GameState reference = GameState.fromFen(fen);
+        GameState candidate = factory.get();
+        candidate.loadFen(fen);
+        return compare(reference, getLegalMoves(reference), candidate) != null;
+    }
+
+    /**
+     * @return The FEN character of the piece on the square, or a space if it is empty
+     */
+    static char pieceAt(String fen, int square) {
+        return expand(fen)[square];
+    }
+
+    /**
+     * @return The FEN with the square emptied
+     */
+    static String removePiece(String fen, int square) {
+        char[] board = expand(fen);
+        board[square] = ' ';
+
+        StringBuilder builder = new StringBuilder();
+        for (int row = 7; row >= 0; row--) {
+            int empty = 0;
+            for (int column = 0; column < 8; column++) {
+                char piece = board[row * 8 + column];
+                if (piece == ' ') {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0)
+                    builder.append(empty);
+                empty = 0;
+                builder.append(piece);
+            }
+            if (empty > 0)
+                builder.append(empty);
+            if (row > 0)
+                builder.append('/');
+        }
+        int fields = fen.indexOf(' ');
+        return fields < 0 ? builder.toString() : builder.append(fen.substring(fields)).toString();
+    }
+
+    /**
+     * @return The piece placement field as one character per square, a1 first
+     */
+    private static char[] expand(String fen) {
+        char[] board = new char[64];
+        int row = 7;
+        int column = 0;
+        for (int i = 0; i < fen.length() && fen.charAt(i) != ' '; i++) {
+            char c = fen.charAt(i);
+            if (c == '/') {
+                row--;
+                column = 0;
+            } else if (c >= '1' && c <= '8') {
+                for (int n = 0; n < c - '0'; n++) {
+                    board[row * 8 + column++] = ' ';
+                }
+            } else {
+                board[row * 8 + column++] = c;
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Fuzz the incremental generator.
+     */
+    public static void main(String[] args) throws Exception {
+        GeneratorFuzzer fuzzer = new GeneratorFuzzer();
+        if (args.length > 0)
+            fuzzer.setGames(Integer.parseInt(args[0]));
+        if (args.length > 1)
+            fuzzer.setSeed(Long.parseLong(args[1]));
+
+        long start = System.nanoTime();
+        List<Discrepancy> discrepancies = fuzzer.run();
+        long millis = (System.nanoTime() - start) / 1000000;
+        for (Discrepancy discrepancy : discrepancies) {
+            System.out.print(discrepancy);
+        }
+        System.out.println(String.format("%d positions in %d ms, %d discrepancies", fuzzer.getPositions(), millis,
+                discrepancies.size()));
+    }
+}
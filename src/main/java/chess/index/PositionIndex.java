@@ -0,0 +1,181 @@
+package chess.index;
+
+import chess.GameState;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Answers "which games reached this position?" from the segment files written by {@link PositionIndexBuilder}.
+ * Each segment is memory mapped and searched in place, so the index lives outside the Java heap and opening it
+ * costs nothing beyond mapping the files.
+ */
+public class PositionIndex implements Closeable {
+    private final RandomAccessFile[] files;
+    private final ByteBuffer[] segments;
+    private final long[] counts;
+
+    private PositionIndex(RandomAccessFile[] files, ByteBuffer[] segments, long[] counts) {
+        this.files = files;
+        this.segments = segments;
+        this.counts = counts;
+    }
+
+    /**
+     * Map every segment of the index in a directory.
+     * @param directory The directory the builder wrote to
+     * @throws IOException if a segment cannot be mapped or is not an index segment
+     */
+    public static PositionIndex open(File directory) throws IOException {
+        File[] segmentFiles = listSegments(directory);
+        RandomAccessFile[] files = new RandomAccessFile[segmentFiles.length];
+        ByteBuffer[] segments = new ByteBuffer[segmentFiles.length];
+        long[] counts = new long[segmentFiles.length];
+
+        try {
+            for (int i = 0; i < segmentFiles.length; i++) {
+                files[i] = new RandomAccessFile(segmentFiles[i], "r");
+                FileChannel channel = files[i].getChannel();
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+                if (channel.size() < PositionIndexBuilder.HEADER_SIZE
+                        || segments[i].getInt(0) != PositionIndexBuilder.MAGIC)
+                    throw new IOException(segmentFiles[i] + " is not an index segment");
+                counts[i] = segments[i].getLong(4);
+                if (PositionIndexBuilder.HEADER_SIZE + counts[i] * PositionIndexBuilder.ENTRY_SIZE > channel.size())
+                    throw new IOException(segmentFiles[i] + " is truncated");
+            }
+        } catch (IOException e) {
+            closeAll(files);
+            throw e;
+        }
+
+        return new PositionIndex(files, segments, counts);
+    }
+
+    /**
+     * Find the games that reached a position.
+     * @param hash The {@link GameState#getHash() hash} of the position
+     * @return The ids of the games, in ascending order, each once however often the game reached the position
+     */
+    public int[] lookup(long hash) {
+        int[] result = new int[8];
+        int size = 0;
+
+        for (int s = 0; s < segments.length; s++) {
+            ByteBuffer segment = segments[s];
+            long count = counts[s];
+            for (long i = lowerBound(segment, count, hash); i < count && hashAt(segment, i) == hash; i++) {
+                if (size == result.length)
+                    result = Arrays.copyOf(result, size * 2);
+                result[size++] = gameIdAt(segment, i);
+            }
+        }
+
+        // A game that reaches the position again, in the same segment or the next, has an entry each time
+        if (segments.length > 1)
+            Arrays.sort(result, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || result[i] != result[unique - 1])
+                result[unique++] = result[i];
+        }
+        return Arrays.copyOf(result, unique);
+    }
+
+    /**
+     * Find the games that reached the current position of a game state.
+     */
+    public int[] lookup(GameState state) {
+        return lookup(state.getHash());
+    }
+
+    /**
+     * @return The number of entries over all segments
+     */
+    public long size() {
+        long size = 0;
+        for (long count : counts) {
+            size += count;
+        }
+        return size;
+    }
+
+    /**
+     * Close the segment files.  The mappings themselves are released when they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        closeAll(files);
+    }
+
+    /**
+     * Find the first entry whose hash is not less than the key.  Zobrist hashes are uniformly distributed, so an
+     * interpolation guess lands close to the answer; each guess is followed by a bisection step so that skewed
+     * segments still take no more than logarithmic time.
+     */
+    private static long lowerBound(ByteBuffer segment, long count, long hash) {
+        long lo = 0;
+        long hi = count;
+        while (hi - lo > 8) {
+            double loHash = hashAt(segment, lo);
+            double hiHash = hashAt(segment, hi - 1);
+            if (hiHash > loHash) {
+                double fraction = (hash - loHash) / (hiHash - loHash);
+                long guess = lo + (long) (fraction * (hi - lo - 1));
+                guess = Math.max(lo, Math.min(hi - 1, guess));
+                if (hashAt(segment, guess) < hash)
+                    lo = guess + 1;
+                else
+                    hi = guess;
+            }
+
+            long mid = (lo + hi) >>> 1;
+            if (lo < hi) {
+                if (hashAt(segment, mid) < hash)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+        }
+
+        while (lo < hi && hashAt(segment, lo) < hash)
+            lo++;
+        return lo;
+    }
+
+    private static long hashAt(ByteBuffer segment, long index) {
+        return segment.getLong((int) (PositionIndexBuilder.HEADER_SIZE + index * PositionIndexBuilder.ENTRY_SIZE));
+    }
+
+    private static int gameIdAt(ByteBuffer segment, long index) {
+        return segment.getInt((int) (PositionIndexBuilder.HEADER_SIZE + index * PositionIndexBuilder.ENTRY_SIZE + 8));
+    }
+
+    static File[] listSegments(File directory) {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(PositionIndexBuilder.SEGMENT_PREFIX)
+                        && name.endsWith(PositionIndexBuilder.SEGMENT_SUFFIX);
+            }
+        });
+        if (files == null)
+            return new File[0];
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static void closeAll(RandomAccessFile[] files) throws IOException {
+        for (RandomAccessFile file : files) {
+            if (file != null)
+                file.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package chess.index;
+
+import chess.GameState;
+import chess.Move;
+import chess.pgn.PgnGame;
+import chess.record.GameRecordReader;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Builds a {@link PositionIndex} by replaying games and recording the hash of every position each game reaches.
+ * Entries are collected in a fixed size run; when the run is full it is sorted and written out as one segment
+ * file, so the heap never holds more than one run no matter how many games are indexed.
+ */
+public class PositionIndexBuilder implements Closeable {
+    static final int MAGIC = 0x43504931;
+    static final int HEADER_SIZE = 12;
+    static final int ENTRY_SIZE = 12;
+    static final String SEGMENT_PREFIX = "positions-";
+    static final String SEGMENT_SUFFIX = ".idx";
+
+    /**
+     * The largest run that still fits in a single mapped buffer
+     */
+    public static final int MAX_ENTRIES_PER_SEGMENT = (Integer.MAX_VALUE - HEADER_SIZE) / ENTRY_SIZE;
+
+    private final File directory;
+    private final long[] hashes;
+    private final int[] gameIds;
+    private int size = 0;
+    private int segmentCount = 0;
+    private long entriesWritten = 0;
+
+    /**
+     * @param directory Where the segment files are written; it must not contain an index already
+     * @param entriesPerSegment How many positions to collect in memory before writing a segment
+     */
+    public PositionIndexBuilder(File directory, int entriesPerSegment) throws IOException {
+        if (entriesPerSegment < 1 || entriesPerSegment > MAX_ENTRIES_PER_SEGMENT)
+            throw new IllegalArgumentException("Invalid segment size " + entriesPerSegment);
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        if (PositionIndex.listSegments(directory).length > 0)
+            throw new IOException(directory + " already contains an index");
+
+        this.directory = directory;
+        this.hashes = new long[entriesPerSegment];
+        this.gameIds = new int[entriesPerSegment];
+    }
+
+    /**
+     * Replay a game and record every position in it, including the initial one.
+     * @param gameId The id returned by lookups for this game
+     * @param game The game
+     */
+    public void addGame(int gameId, PgnGame game) throws IOException {
+        GameState state = game.createInitialState();
+        add(state.getHash(), gameId);
+        for (Move move : game.getMoves()) {
+            state.movePiece(move);
+            add(state.getHash(), gameId);
+        }
+    }
+
+    /**
+     * Index every game of a record file, using each game's ordinal in the file as its id.
+     * @return The number of games indexed
+     */
+    public int addGames(GameRecordReader reader) throws IOException {
+        int count = 0;
+        PgnGame game;
+        while ((game = reader.readGame()) != null) {
+            addGame(count++, game);
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of entries written to segment files so far
+     */
+    public long getEntriesWritten() {
+        return entriesWritten;
+    }
+
+    /**
+     * Write the last, partially filled, segment.
+     */
+    @Override
+    public void close() throws IOException {
+        writeSegment();
+    }
+
+    private void add(long hash, int gameId) throws IOException {
+        // A game that repeats its latest position adds nothing new
+        if (size > 0 && hashes[size - 1] == hash && gameIds[size - 1] == gameId)
+            return;
+        hashes[size] = hash;
+        gameIds[size] = gameId;
+        if (++size == hashes.length)
+            writeSegment();
+    }
+
+    private void writeSegment() throws IOException {
+        if (size == 0)
+            return;
+
+        sort(0, size - 1);
+
+        File file = new File(directory, String.format("%s%05d%s", SEGMENT_PREFIX, segmentCount, SEGMENT_SUFFIX));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (i > 0 && hashes[i] == hashes[i - 1] && gameIds[i] == gameIds[i - 1]) continue;
+                hashes[unique] = hashes[i];
+                gameIds[unique] = gameIds[i];
+                unique++;
+            }
+
+            out.writeInt(MAGIC);
+            out.writeLong(unique);
+            for (int i = 0; i < unique; i++) {
+                out.writeLong(hashes[i]);
+                out.writeInt(gameIds[i]);
+            }
+            entriesWritten += unique;
+        } finally {
+            out.close();
+        }
+
+        segmentCount++;
+        size = 0;
+    }
+
+    /**
+     * Quicksort the run by hash, then game id, keeping the two arrays in step
+     */
+    private void sort(int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pivotHash = hashes[mid];
+            int pivotId = gameIds[mid];
+
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compare(i, pivotHash, pivotId) < 0) i++;
+                while (compare(j, pivotHash, pivotId) > 0) j--;
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+
+            // Recurse into the smaller half to bound the stack depth
+            if (j - lo < hi - i) {
+                sort(lo, j);
+                lo = i;
+            } else {
+                sort(i, hi);
+                hi = j;
+            }
+        }
+
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(j - 1, hashes[j], gameIds[j]) > 0; j--) {
+                swap(j - 1, j);
+            }
+        }
+    }
+
+    private int compare(int index, long hash, int gameId) {
+        if (hashes[index] != hash)
+            return hashes[index] < hash ? -1 : 1;
+        return gameIds[index] < gameId ? -1 : (gameIds[index] == gameId ? 0 : 1);
+    }
+
+    private void swap(int i, int j) {
+        long hash = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = hash;
+        int gameId = gameIds[i];
+        gameIds[i] = gameIds[j];
+        gameIds[j] = gameId;
+    }
+
+    /**
+     * Index a game record file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: PositionIndexBuilder <games.rec> <index directory>");
+            return;
+        }
+
+        long start = System.nanoTime();
+        GameRecordReader reader = new GameRecordReader(new FileInputStream(args[0]));
+        PositionIndexBuilder builder = new PositionIndexBuilder(new File(args[1]), 1 << 22);
+        try {
+            int games = builder.addGames(reader);
+            builder.close();
+            System.out.println(games + " games, " + builder.getEntriesWritten() + " positions indexed in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package chess.journal;
+
+import chess.GameListener;
+import chess.GameState;
+import chess.Move;
+
+/**
+ * Journals the games of one session.  Register it as the session's {@link GameListener} and call {@link #end()} when
+ * the session closes, so that recovery leaves the session out.
+ */
+public class JournalSession implements GameListener {
+    private final MoveJournal journal;
+    private final int session;
+    private final int snapshotInterval;
+    private int sinceSnapshot;
+
+    JournalSession(MoveJournal journal, int session, int snapshotInterval) {
+        this.journal = journal;
+        this.session = session;
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    public int getSession() {
+        return session;
+    }
+
+    @Override
+    public void gameStarted(GameState state) {
+        journal.appendPosition(session, state);
+        sinceSnapshot = 0;
+    }
+
+    @Override
+    public void movePlayed(GameState state, Move move) {
+        // Write the whole position now and then instead of the move, which bounds how much recovery replays
+        if (++sinceSnapshot >= snapshotInterval) {
+            journal.appendPosition(session, state);
+            sinceSnapshot = 0;
+        } else {
+            journal.appendMove(session, move);
+        }
+    }
+
+    /**
+     * The session is over; its game will not be recovered.
+     */
+    public void end() {
+        journal.appendEnd(session);
+    }
+}
@@ -0,0 +1,499 @@
+package chess.journal;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the games of many sessions, so that they survive the process.  Appending a record only
+ * copies it into memory; a background thread writes everything appended since its last round as one batch and then
+ * forces it to disk, so one fsync covers the moves of all sessions and no move waits for the disk.  A crash loses at
+ * most the records of the last commit interval.
+ *
+ * Every batch is framed by its length and a CRC, and a torn batch at the end of the file is cut off when the journal
+ * is opened again.  Sessions write their position as FEN when a game starts and again every few plies, so recovering
+ * a game never replays more than that many moves.
+ *
+ * The journal keeps the last position and the moves since of every open game in memory.  Whenever the file has grown
+ * by a set amount since the last checkpoint, the committer writes just those open games to a new file and renames it
+ * over the journal, so the file and the time to open it stay in proportion to the open games, not to every game
+ * ever played.
+ */
+public class MoveJournal {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int BATCH_HEADER = 8;
+
+    static final byte MOVE = 'M';
+    static final byte POSITION = 'P';
+    static final byte END = 'E';
+
+    private final File file;
+    private final File checkpointFile;
+    private final long commitIntervalMillis;
+    private final int snapshotInterval;
+    private final long checkpointBytes;
+    private final Map<Integer, GameState> recovered;
+    private final Thread committer;
+
+    /**
+     * Only used by the committer once the journal is open
+     */
+    private FileChannel channel;
+    private long checkpointSize;
+
+    private final Object lock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer writing = ByteBuffer.allocate(64 * 1024);
+    private final Map<Integer, OpenGame> openGames = new HashMap<Integer, OpenGame>();
+    private long appended;
+    private long durable;
+    private long batches;
+    private long checkpoints;
+    private boolean checkpointRequested;
+    private int lastSession;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Open a journal with a 5 ms commit interval, a snapshot every 64 plies and a checkpoint every 4 MB.
+     */
+    public MoveJournal(File file) throws IOException {
+        this(file, 5, 64);
+    }
+
+    /**
+     * Open a journal with a checkpoint every 4 MB.
+     */
+    public MoveJournal(File file, long commitIntervalMillis, int snapshotInterval) throws IOException {
+        this(file, commitIntervalMillis, snapshotInterval, 4 * 1024 * 1024);
+    }
+
+    /**
+     * Open a journal, creating it if needed, and recover the games in it.
+     * @param commitIntervalMillis How long records may wait to be written, which is also how much a crash can lose
+     * @param snapshotInterval How many plies a session writes as moves before writing its position again
+     * @param checkpointBytes How much the file may grow before it is rewritten with only the open games
+     */
+    public MoveJournal(File file, long commitIntervalMillis, int snapshotInterval, long checkpointBytes)
+            throws IOException {
+        this.file = file;
+        this.checkpointFile = new File(file.getPath() + ".checkpoint");
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.snapshotInterval = snapshotInterval;
+        this.checkpointBytes = checkpointBytes;
+
+        // A checkpoint that was not renamed over the journal is incomplete, and the journal is still whole
+        checkpointFile.delete();
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+        Map<Integer, GameState> games = new TreeMap<Integer, GameState>();
+        long end = replay(games);
+        channel.truncate(end);
+        channel.position(end);
+        this.checkpointSize = end;
+        this.recovered = Collections.unmodifiableMap(games);
+        for (Map.Entry<Integer, GameState> game : games.entrySet()) {
+            openGames.put(game.getKey(), new OpenGame(game.getValue().toFen().getBytes(ASCII)));
+        }
+
+        committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "chess-journal-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * @return The games that were still open when the journal was last used, by session number
+     */
+    public Map<Integer, GameState> getRecoveredGames() {
+        return recovered;
+    }
+
+    /**
+     * Start journaling a new session, numbered after every session already in the journal.
+     */
+    public JournalSession openSession() {
+        synchronized (lock) {
+            return new JournalSession(this, ++lastSession, snapshotInterval);
+        }
+    }
+
+    /**
+     * Continue journaling a recovered session.
+     */
+    public JournalSession resumeSession(int session) {
+        return new JournalSession(this, session, snapshotInterval);
+    }
+
+    /**
+     * End a session without a {@link JournalSession}, such as a recovered game nobody will resume.
+     */
+    public void endSession(int session) {
+        appendEnd(session);
+    }
+
+    void appendMove(int session, Move move) {
+        byte origin = (byte) move.getOrigin().getIndex();
+        byte destination = (byte) move.getDestination().getIndex();
+        synchronized (lock) {
+            ensureCapacity(7);
+            pending.put(MOVE).putInt(session).put(origin).put(destination);
+            appended++;
+            OpenGame game = openGames.get(session);
+            if (game != null)
+                game.addMove(origin, destination);
+        }
+    }
+
+    void appendPosition(int session, GameState state) {
+        byte[] fen = state.toFen().getBytes(ASCII);
+        synchronized (lock) {
+            ensureCapacity(7 + fen.length);
+            pending.put(POSITION).putInt(session).putShort((short) fen.length).put(fen);
+            appended++;
+            openGames.put(session, new OpenGame(fen));
+        }
+    }
+
+    void appendEnd(int session) {
+        synchronized (lock) {
+            ensureCapacity(5);
+            pending.put(END).putInt(session);
+            appended++;
+            openGames.remove(session);
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (closed)
+            throw new IllegalStateException("Journal is closed");
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    /**
+     * Wait until everything appended so far is on disk.
+     * @throws IOException if writing the journal failed
+     */
+    public void sync() throws IOException, InterruptedException {
+        synchronized (lock) {
+            long target = appended;
+            lock.notifyAll();
+            while (durable < target && failure == null) {
+                lock.wait();
+            }
+            if (failure != null)
+                throw failure;
+        }
+    }
+
+    /**
+     * @return The records appended since the journal was opened
+     */
+    public long getRecords() {
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    /**
+     * @return The batches forced to disk, each covering any number of records
+     */
+    public long getBatches() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    /**
+     * @return The times the journal was rewritten with only its open games
+     */
+    public long getCheckpoints() {
+        synchronized (lock) {
+            return checkpoints;
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the open games now, and wait until the new file has replaced the old one.
+     * @throws IOException if writing the checkpoint failed
+     */
+    public void checkpoint() throws IOException, InterruptedException {
+        synchronized (lock) {
+            if (closed)
+                throw new IllegalStateException("The journal is closed");
+            long target = checkpoints + 1;
+            checkpointRequested = true;
+            lock.notifyAll();
+            while (checkpoints < target && failure == null) {
+                lock.wait();
+            }
+            if (failure != null)
+                throw failure;
+        }
+    }
+
+    /**
+     * Write what is left and close the file.
+     */
+    public void close() throws IOException, InterruptedException {
+        sync();
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        committer.join();
+        channel.close();
+    }
+
+    private void commitLoop() {
+        CRC32 crc = new CRC32();
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER);
+        while (true) {
+            long records;
+            ByteBuffer checkpoint = null;
+            synchronized (lock) {
+                try {
+                    if (pending.position() == 0 && !closed && !checkpointRequested)
+                        lock.wait(commitIntervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                boolean grown = pending.position() > 0 && channelSize() >= checkpointSize + checkpointBytes;
+                if (checkpointRequested || grown) {
+                    // The open games include everything still pending, which the new file replaces
+                    checkpoint = writeOpenGames();
+                    pending.clear();
+                    checkpointRequested = false;
+                } else if (pending.position() == 0) {
+                    if (closed)
+                        return;
+                    continue;
+                } else {
+                    // Swap buffers so sessions keep appending while the batch is written
+                    ByteBuffer batch = pending;
+                    pending = writing;
+                    writing = batch;
+                }
+                records = appended;
+            }
+
+            try {
+                if (checkpoint != null) {
+                    replaceWith(checkpoint, crc, header);
+                } else {
+                    writing.flip();
+                    writeBatch(channel, writing, crc, header);
+                    channel.force(false);
+                    writing.clear();
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+
+            synchronized (lock) {
+                durable = records;
+                if (checkpoint != null)
+                    checkpoints++;
+                else
+                    batches++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private long channelSize() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void writeBatch(FileChannel out, ByteBuffer batch, CRC32 crc, ByteBuffer header)
+            throws IOException {
+        crc.reset();
+        crc.update(batch.array(), 0, batch.limit());
+        header.clear();
+        header.putInt(batch.limit()).putInt((int) crc.getValue()).flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+        while (batch.hasRemaining()) {
+            out.write(batch);
+        }
+    }
+
+    /**
+     * One batch that sets up every open game: its last position and the moves since.  The last session number is
+     * kept with an end record, so sessions opened later are still numbered after every earlier one.
+     */
+    private ByteBuffer writeOpenGames() {
+        int size = 5;
+        for (OpenGame game : openGames.values()) {
+            size += 7 + game.fen.length + 7 * game.moveCount;
+        }
+        ByteBuffer batch = ByteBuffer.allocate(size);
+        for (Map.Entry<Integer, OpenGame> entry : new TreeMap<Integer, OpenGame>(openGames).entrySet()) {
+            int session = entry.getKey();
+            OpenGame game = entry.getValue();
+            batch.put(POSITION).putInt(session).putShort((short) game.fen.length).put(game.fen);
+            for (int i = 0; i < game.moveCount; i++) {
+                batch.put(MOVE).putInt(session).put(game.moves[2 * i]).put(game.moves[2 * i + 1]);
+            }
+        }
+        if (!openGames.containsKey(lastSession))
+            batch.put(END).putInt(lastSession);
+        batch.flip();
+        return batch;
+    }
+
+    /**
+     * Write a checkpoint to its own file, force it and rename it over the journal, so a crash leaves either the old
+     * journal or the new one.  Appending continues on the new file.
+     */
+    private void replaceWith(ByteBuffer checkpoint, CRC32 crc, ByteBuffer header) throws IOException {
+        FileChannel out = new RandomAccessFile(checkpointFile, "rw").getChannel();
+        try {
+            out.truncate(0);
+            if (checkpoint.hasRemaining())
+                writeBatch(out, checkpoint, crc, header);
+            out.force(true);
+        } finally {
+            out.close();
+        }
+        Files.move(checkpointFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+
+        FileChannel old = channel;
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        channel.position(channel.size());
+        checkpointSize = channel.size();
+        old.close();
+    }
+
+    /**
+     * Rebuild the open games from the journal.
+     * @return The length of the valid part of the journal
+     */
+    private long replay(Map<Integer, GameState> games) throws IOException {
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(BATCH_HEADER);
+        CRC32 crc = new CRC32();
+        long position = 0;
+        while (position + BATCH_HEADER <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || position + BATCH_HEADER + length > size)
+                break;
+
+            ByteBuffer batch = ByteBuffer.allocate(length);
+            while (batch.hasRemaining()) {
+                if (channel.read(batch, position + BATCH_HEADER + batch.position()) < 0)
+                    break;
+            }
+            crc.reset();
+            crc.update(batch.array(), 0, length);
+            if ((int) crc.getValue() != checksum)
+                break;
+
+            batch.flip();
+            replayBatch(batch, games);
+            position += BATCH_HEADER + length;
+        }
+        return position;
+    }
+
+    /**
+     * The last position of an open game as FEN and the moves played since, two square indexes each
+     */
+    private static class OpenGame {
+        final byte[] fen;
+        byte[] moves = new byte[16];
+        int moveCount;
+
+        OpenGame(byte[] fen) {
+            this.fen = fen;
+        }
+
+        void addMove(byte origin, byte destination) {
+            if (2 * moveCount + 2 > moves.length)
+                moves = Arrays.copyOf(moves, moves.length * 2);
+            moves[2 * moveCount] = origin;
+            moves[2 * moveCount + 1] = destination;
+            moveCount++;
+        }
+    }
+
+    private void replayBatch(ByteBuffer batch, Map<Integer, GameState> games) {
+        while (batch.hasRemaining()) {
+            byte type = batch.get();
+            int session = batch.getInt();
+            lastSession = Math.max(lastSession, session);
+            if (type == MOVE) {
+                Position origin = Position.fromIndex(batch.get());
+                Position destination = Position.fromIndex(batch.get());
+                GameState state = games.get(session);
+                if (state != null)
+                    state.movePiece(new Move(origin, destination));
+            } else if (type == POSITION) {
+                byte[] fen = new byte[batch.getShort() & 0xffff];
+                batch.get(fen);
+                games.put(session, GameState.fromFen(new String(fen, ASCII)));
+            } else if (type == END) {
+                games.remove(session);
+            } else {
+                throw new IllegalStateException("Corrupt journal record: " + type);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: MoveJournal <journal file>");
+            return;
+        }
+
+        MoveJournal journal = new MoveJournal(new File(args[0]));
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<Integer, GameState> entry : journal.getRecoveredGames().entrySet()) {
+            lines.add(entry.getKey() + "\t" + entry.getValue().toFen());
+        }
+        journal.close();
+        System.out.println(lines.size() + " open games");
+        for (String line : lines) {
+            System.out.println(line);
+        }
+    }
+}
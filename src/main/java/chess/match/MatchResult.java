@@ -0,0 +1,150 @@
+package chess.match;
+
+/**
+ * The tally of a match from the point of view of the first engine, with the statistics derived from it.
+ */
+public class MatchResult {
+    private final String engineA;
+    private final String engineB;
+    private int wins;
+    private int draws;
+    private int losses;
+    private long wallNanos;
+    private long cpuNanos;
+    private int threads;
+
+    public MatchResult(String engineA, String engineB) {
+        this.engineA = engineA;
+        this.engineB = engineB;
+    }
+
+    /**
+     * Count a finished game.
+     * @param score 1 for a win of the first engine, 0.5 for a draw, 0 for a loss
+     * @param gameCpuNanos The CPU time the game took
+     */
+    synchronized void addGame(double score, long gameCpuNanos) {
+        if (score > 0.5)
+            wins++;
+        else if (score < 0.5)
+            losses++;
+        else
+            draws++;
+        cpuNanos += gameCpuNanos;
+    }
+
+    synchronized void setElapsed(long wallNanos, int threads) {
+        this.wallNanos = wallNanos;
+        this.threads = threads;
+    }
+
+    public synchronized int getWins() {
+        return wins;
+    }
+
+    public synchronized int getDraws() {
+        return draws;
+    }
+
+    public synchronized int getLosses() {
+        return losses;
+    }
+
+    public synchronized int getGames() {
+        return wins + draws + losses;
+    }
+
+    /**
+     * @return The first engine's average score, between 0 and 1
+     */
+    public synchronized double getScore() {
+        int games = getGames();
+        return games == 0 ? 0.5 : (wins + draws / 2.0) / games;
+    }
+
+    /**
+     * @return The Elo difference of the first engine over the second implied by the score
+     */
+    public synchronized double getEloDifference() {
+        return scoreToElo(getScore());
+    }
+
+    /**
+     * @return Half the width of the 95% confidence interval of the Elo difference
+     */
+    public synchronized double getEloError() {
+        int games = getGames();
+        if (games == 0)
+            return Double.POSITIVE_INFINITY;
+        double score = getScore();
+        double deviation = Math.sqrt(variance() / games);
+        return (scoreToElo(score + 1.96 * deviation) - scoreToElo(score - 1.96 * deviation)) / 2;
+    }
+
+    /**
+     * The log-likelihood ratio of the hypothesis that the Elo difference is elo1 against the hypothesis that it is
+     * elo0, using the normal approximation of the game outcomes.
+     */
+    public synchronized double getLogLikelihoodRatio(double elo0, double elo1) {
+        int games = getGames();
+        double variance = variance();
+        if (games == 0 || variance == 0)
+            return 0;
+        double s0 = eloToScore(elo0);
+        double s1 = eloToScore(elo1);
+        return games * (s1 - s0) * (2 * getScore() - s0 - s1) / (2 * variance);
+    }
+
+    /**
+     * Decide the sequential probability ratio test.
+     * @param alpha The chance of accepting elo1 when elo0 is true
+     * @param beta The chance of accepting elo0 when elo1 is true
+     * @return 1 if elo1 is accepted, -1 if elo0 is accepted, 0 if more games are needed
+     */
+    public synchronized int getSprtDecision(double elo0, double elo1, double alpha, double beta) {
+        double llr = getLogLikelihoodRatio(elo0, elo1);
+        if (llr >= Math.log((1 - beta) / alpha))
+            return 1;
+        if (llr <= Math.log(beta / (1 - alpha)))
+            return -1;
+        return 0;
+    }
+
+    public synchronized double getGamesPerHour() {
+        return wallNanos == 0 ? 0 : getGames() * 3600e9 / wallNanos;
+    }
+
+    /**
+     * @return The CPU time spent in games as a fraction of what the machine's cores could have delivered
+     */
+    public synchronized double getCpuUtilisation() {
+        if (wallNanos == 0)
+            return 0;
+        return (double) cpuNanos / (wallNanos * (double) Runtime.getRuntime().availableProcessors());
+    }
+
+    private double variance() {
+        int games = getGames();
+        if (games == 0)
+            return 0;
+        double score = getScore();
+        return (wins * (1 - score) * (1 - score) + draws * (0.5 - score) * (0.5 - score)
+                + losses * score * score) / games;
+    }
+
+    private static double scoreToElo(double score) {
+        score = Math.max(1e-6, Math.min(1 - 1e-6, score));
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    private static double eloToScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s vs %s: +%d =%d -%d, Elo %.1f +/- %.1f, %.0f games/hour, CPU %.0f%% on %d threads",
+                engineA, engineB, wins, draws, losses, getEloDifference(), getEloError(), getGamesPerHour(),
+                getCpuUtilisation() * 100, threads);
+    }
+}
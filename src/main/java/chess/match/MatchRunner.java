@@ -0,0 +1,240 @@
+package chess.match;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import chess.engine.ClassicEvaluator;
+import chess.engine.Engine;
+import chess.tablebase.Tablebase;
+import chess.tablebase.TablebaseResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Plays two engines against each other without a CLI, one game per worker thread.  Games are played in pairs from
+ * the same randomised opening with the colours swapped, so neither engine profits from a lucky opening.  When an
+ * SPRT is configured the match stops as soon as it is decided.
+ */
+public class MatchRunner {
+    private final Supplier<Engine> engineA;
+    private final Supplier<Engine> engineB;
+
+    private int games = 100;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int openingPlies = 4;
+    private int maxPlies = 400;
+    private long seed = 1;
+    private Tablebase tablebase;
+    private boolean sprt = false;
+    private double elo0;
+    private double elo1;
+    private double alpha;
+    private double beta;
+
+    /**
+     * @param engineA Creates the first engine; called once per game, so engines are never shared between threads
+     * @param engineB Creates the second engine
+     */
+    public MatchRunner(Supplier<Engine> engineA, Supplier<Engine> engineB) {
+        this.engineA = engineA;
+        this.engineB = engineB;
+    }
+
+    public void setGames(int games) {
+        this.games = games;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param openingPlies How many random legal moves start every pair of games
+     */
+    public void setOpeningPlies(int openingPlies) {
+        this.openingPlies = openingPlies;
+    }
+
+    /**
+     * @param maxPlies Games that run longer are scored as draws
+     */
+    public void setMaxPlies(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Adjudicate games as soon as they reach a position in the tablebase.
+     */
+    public void setTablebase(Tablebase tablebase) {
+        this.tablebase = tablebase;
+    }
+
+    /**
+     * Stop the match once a sequential probability ratio test decides between two Elo differences.
+     */
+    public void setSprt(double elo0, double elo1, double alpha, double beta) {
+        this.sprt = true;
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        this.alpha = alpha;
+        this.beta = beta;
+    }
+
+    /**
+     * Play the match.
+     * @return The result from the first engine's point of view
+     */
+    public MatchResult run() throws InterruptedException, ExecutionException {
+        String nameA = engineA.get().getName();
+        String nameB = engineB.get().getName();
+        MatchResult result = new MatchResult(nameA, nameB);
+
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CompletionService<double[]> completion = new ExecutorCompletionService<double[]>(executor);
+            for (int i = 0; i < games; i++) {
+                final int game = i;
+                completion.submit(new Callable<double[]>() {
+                    @Override
+                    public double[] call() throws IOException {
+                        return playGame(game);
+                    }
+                });
+            }
+
+            for (int i = 0; i < games; i++) {
+                double[] outcome = completion.take().get();
+                result.addGame(outcome[0], (long) outcome[1]);
+                if (sprt && result.getSprtDecision(elo0, elo1, alpha, beta) != 0)
+                    break;
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        result.setElapsed(System.nanoTime() - start, threads);
+        return result;
+    }
+
+    /**
+     * Play one game.  Even games give the first engine White.
+     * @return The first engine's score and the CPU time the game took
+     */
+    private double[] playGame(int game) throws IOException {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long cpuStart = threadBean.getCurrentThreadCpuTime();
+
+        Engine white = game % 2 == 0 ? engineA.get() : engineB.get();
+        Engine black = game % 2 == 0 ? engineB.get() : engineA.get();
+        Random random = new Random(seed * 31 + game / 2);
+        white.setRandom(random);
+        black.setRandom(random);
+
+        GameState state = new GameState();
+        state.reset();
+        double whiteScore = play(state, white, black, random);
+
+        double score = game % 2 == 0 ? whiteScore : 1 - whiteScore;
+        return new double[] {score, threadBean.getCurrentThreadCpuTime() - cpuStart};
+    }
+
+    /**
+     * @return White's score
+     */
+    private double play(GameState state, Engine white, Engine black, Random random) throws IOException {
+        Map<Long, Integer> repetitions = new HashMap<Long, Integer>();
+        for (int ply = 0; ; ply++) {
+            List<Move> legal = state.getLegalMoves();
+            Player player = state.getCurrentPlayer();
+            double playerWins = player == Player.White ? 1 : 0;
+            if (legal.isEmpty())
+                return state.isInCheck(player) ? 1 - playerWins : 0.5;
+
+            Integer seen = repetitions.get(state.getHash());
+            repetitions.put(state.getHash(), seen == null ? 1 : seen + 1);
+            if (ply >= maxPlies || state.getHalfmoveClock() >= 100 || (seen != null && seen >= 2)
+                    || isInsufficientMaterial(state))
+                return 0.5;
+
+            if (tablebase != null) {
+                TablebaseResult result = tablebase.probe(state);
+                if (result != null)
+                    return result.isWin() ? playerWins : result.isLoss() ? 1 - playerWins : 0.5;
+            }
+
+            Move move;
+            if (ply < openingPlies)
+                move = legal.get(random.nextInt(legal.size()));
+            else
+                move = (player == Player.White ? white : black).findMove(state);
+            state.movePiece(move);
+        }
+    }
+
+    /**
+     * Bare kings, or a single bishop or knight against a bare king
+     */
+    private static boolean isInsufficientMaterial(GameState state) {
+        int minor = 0;
+        for (Player player : Player.values()) {
+            for (int type = 0; type <= 4; type++) {
+                int count = state.getPieceCount(player, type);
+                if (count > 0 && type != 1 && type != 2)
+                    return false;
+                minor += count;
+            }
+        }
+        return minor <= 1;
+    }
+
+    /**
+     * Play a match between two search depths.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: MatchRunner <games> <depth A> <depth B> [tablebase directory]");
+            return;
+        }
+
+        final int depthA = Integer.parseInt(args[1]);
+        final int depthB = Integer.parseInt(args[2]);
+        MatchRunner runner = new MatchRunner(new Supplier<Engine>() {
+            @Override
+            public Engine get() {
+                return new Engine("depth" + depthA, new ClassicEvaluator(), depthA);
+            }
+        }, new Supplier<Engine>() {
+            @Override
+            public Engine get() {
+                return new Engine("depth" + depthB, new ClassicEvaluator(), depthB);
+            }
+        });
+        runner.setGames(Integer.parseInt(args[0]));
+        runner.setSprt(0, 10, 0.05, 0.05);
+        if (args.length > 3)
+            runner.setTablebase(new Tablebase(new File(args[3])));
+
+        MatchResult result = runner.run();
+        System.out.println(result);
+        System.out.println(String.format("LLR %.2f for [0, 10]", result.getLogLikelihoodRatio(0, 10)));
+    }
+}
@@ -0,0 +1,150 @@
+package chess.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The process-wide registry of counters and latency histograms.  Instrumented code keeps its counters and histograms
+ * in static final fields and guards every use with {@link #ENABLED}:
+ *
+ * <pre>
+ *     long start = Metrics.ENABLED ? System.nanoTime() : 0;
+ *     ...
+ *     if (Metrics.ENABLED)
+ *         GENERATION.recordSince(start);
+ * </pre>
+ *
+ * {@link #ENABLED} is a constant read once from the {@code chess.metrics} system property, so when metrics are off
+ * the JIT compiler drops the guarded code entirely.  Setting {@code chess.metrics.dump} to a file name as well
+ * appends a report to that file every {@code chess.metrics.dumpSeconds} seconds, 60 by default.
+ */
+public final class Metrics {
+    public static final boolean ENABLED = Boolean.getBoolean("chess.metrics");
+
+    private static final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<String, LongAdder>();
+    private static final ConcurrentMap<String, LatencyHistogram> histograms =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    private static ScheduledExecutorService dumper;
+
+    static {
+        String dump = System.getProperty("chess.metrics.dump");
+        if (ENABLED && dump != null)
+            startDump(new File(dump), Long.getLong("chess.metrics.dumpSeconds", 60) * 1000);
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The counter with the name, created on first use
+     */
+    public static LongAdder counter(String name) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) {
+            LongAdder created = new LongAdder();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null)
+                counter = created;
+        }
+        return counter;
+    }
+
+    /**
+     * @return The histogram with the name, created on first use
+     */
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(name);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null)
+                histogram = created;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return Every counter and histogram that has recorded something, one per line, sorted by name
+     */
+    public static String report() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<String, LongAdder>(counters).entrySet()) {
+            long value = entry.getValue().sum();
+            if (value != 0)
+                builder.append(String.format("%-18s %d%n", entry.getKey(), value));
+        }
+        for (LatencyHistogram histogram : new TreeMap<String, LatencyHistogram>(histograms).values()) {
+            if (histogram.getCount() != 0)
+                builder.append(histogram).append(String.format("%n"));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Zero every counter and histogram.
+     */
+    public static void reset() {
+        for (LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Append a timestamped report to a file periodically, from a daemon thread, replacing any earlier dump.
+     */
+    public static synchronized void startDump(final File file, long periodMillis) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        dumper.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    dump(file);
+                } catch (IOException e) {
+                    System.err.println("Failed to write metrics to " + file + ": " + e.getMessage());
+                }
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Append a timestamped report to a file.
+     */
+    public static void dump(File file) throws IOException {
+        Writer writer = new FileWriter(file, true);
+        try {
+            writer.write("# " + new Date() + String.format("%n") + report());
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for each completed iteration of a search, so iterations line up with GC pauses and
+ * allocation in a recording.  The search creates one for every iteration whether or not {@link Metrics#ENABLED} is
+ * set, since a recording can be started at any time; unless a recording enables {@code chess.SearchIteration},
+ * {@link #shouldCommit()} is false and the fields are never filled in.
+ */
+@Name("chess.SearchIteration")
+@Label("Search Iteration")
+@Category("Chess")
+@Description("One iteration of iterative deepening")
+public class SearchIterationEvent extends Event {
+    @Label("Depth")
+    public int depth;
+
+    @Label("Nodes")
+    public long nodes;
+
+    @Label("Score")
+    public int score;
+
+    @Label("Best Move")
+    public String bestMove;
+}
@@ -0,0 +1,86 @@
+package chess.pgn;
+
+import chess.GameState;
+import chess.Move;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single game from a PGN archive: its tag pairs, the moves played and the result.
+ */
+public class PgnGame {
+    private final Map<String, String> tags = new LinkedHashMap<String, String>();
+    private final List<Move> moves = new ArrayList<Move>();
+    private String result = "*";
+    private GameState finalState;
+    private String error;
+
+    public Map<String, String> getTags() {
+        return tags;
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    public List<Move> getMoves() {
+        return moves;
+    }
+
+    public void addMove(Move move) {
+        moves.add(move);
+    }
+
+    /**
+     * @return The game termination marker: "1-0", "0-1", "1/2-1/2" or "*"
+     */
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    /**
+     * Create the position the game starts from, which is either the standard position or the one in the FEN tag.
+     */
+    public GameState createInitialState() {
+        String fen = tags.get("FEN");
+        if (fen != null)
+            return GameState.fromFen(fen);
+
+        GameState state = new GameState();
+        state.reset();
+        return state;
+    }
+
+    /**
+     * @return The position after the last move that was read, or null if the game was not replayed
+     */
+    public GameState getFinalState() {
+        return finalState;
+    }
+
+    public void setFinalState(GameState finalState) {
+        this.finalState = finalState;
+    }
+
+    /**
+     * @return Why the movetext could not be replayed, or null if every move was resolved
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
@@ -0,0 +1,302 @@
+package chess.pgn;
+
+import chess.GameState;
+import chess.Move;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.function.Consumer;
+
+/**
+ * Streams games out of a PGN archive.  The channel is read through one fixed buffer and each game is replayed
+ * through a {@link GameState} as its movetext is parsed, so memory use is bounded by the longest game rather than
+ * the size of the archive.  Bytes are read as ISO-8859-1.
+ */
+public class PgnReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_TOKEN_LENGTH = 255;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder token = new StringBuilder(16);
+    private final StringBuilder value = new StringBuilder(64);
+
+    private int pushback = -1;
+    private int last = '\n';
+    private boolean lineStart = true;
+    private boolean endOfInput = false;
+
+    private long gamesRead = 0;
+    private long gamesFailed = 0;
+    private long startNanos = 0;
+    private long elapsedNanos = 0;
+
+    public PgnReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * Read every remaining game, handing each one to the consumer as soon as its movetext ends.
+     * @param consumer Receives the games, including those that failed to replay
+     */
+    public void readAll(Consumer<PgnGame> consumer) throws IOException {
+        PgnGame game;
+        while ((game = readGame()) != null) {
+            consumer.accept(game);
+        }
+    }
+
+    /**
+     * Read the next game.
+     * @return The game, or null if there are no more games
+     */
+    public PgnGame readGame() throws IOException {
+        if (startNanos == 0)
+            startNanos = System.nanoTime();
+
+        PgnGame game = null;
+        GameState state = null;
+
+        int c;
+        while ((c = read()) != -1) {
+            if (c <= ' ') {
+                continue;
+            } else if (c == '%' && lineStart) {
+                skipLine();
+            } else if (c == '[') {
+                if (state != null) {
+                    // A tag section without a result marker before it; the previous game has ended
+                    pushback = c;
+                    return finish(game, state);
+                }
+                if (game == null)
+                    game = new PgnGame();
+                readTag(game);
+            } else if (c == '{') {
+                skipUntil('}');
+            } else if (c == ';') {
+                skipLine();
+            } else if (c == '(') {
+                skipVariation();
+            } else if (c == '$') {
+                readToken(c);
+            } else {
+                readToken(c);
+                if (game == null)
+                    game = new PgnGame();
+                if (isResult(token)) {
+                    game.setResult(token.toString());
+                    if (state == null)
+                        state = startGame(game);
+                    return finish(game, state);
+                }
+                if (state == null)
+                    state = startGame(game);
+                if (game.getError() == null)
+                    playToken(game, state);
+            }
+        }
+
+        if (game == null)
+            return null;
+        return finish(game, state == null ? startGame(game) : state);
+    }
+
+    public long getGamesRead() {
+        return gamesRead;
+    }
+
+    /**
+     * @return The number of games whose movetext could not be replayed
+     */
+    public long getGamesFailed() {
+        return gamesFailed;
+    }
+
+    /**
+     * @return The games read per second of reading so far
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : gamesRead * 1e9 / elapsedNanos;
+    }
+
+    private GameState startGame(PgnGame game) {
+        try {
+            return game.createInitialState();
+        } catch (IllegalArgumentException e) {
+            game.setError(e.getMessage());
+            return new GameState();
+        }
+    }
+
+    private PgnGame finish(PgnGame game, GameState state) {
+        game.setFinalState(state);
+        gamesRead++;
+        if (game.getError() != null)
+            gamesFailed++;
+        elapsedNanos = System.nanoTime() - startNanos;
+        return game;
+    }
+
+    private void playToken(PgnGame game, GameState state) {
+        // Strip a move number prefix such as "12." or "12...", which may be glued to the move
+        int start = 0;
+        while (start < token.length() && Character.isDigit(token.charAt(start)))
+            start++;
+        if (start < token.length() && token.charAt(start) == '.') {
+            while (start < token.length() && token.charAt(start) == '.')
+                start++;
+        } else {
+            start = 0;
+        }
+        if (start == token.length())
+            return;
+
+        try {
+            Move move = San.parse(state, start == 0 ? token : token.subSequence(start, token.length()));
+            state.movePiece(move);
+            game.addMove(move);
+        } catch (IllegalArgumentException e) {
+            game.setError(e.getMessage());
+        }
+    }
+
+    private static boolean isResult(CharSequence str) {
+        return equals(str, "1-0") || equals(str, "0-1") || equals(str, "1/2-1/2") || equals(str, "*");
+    }
+
+    private static boolean equals(CharSequence str, String other) {
+        if (str.length() != other.length())
+            return false;
+        for (int i = 0; i < other.length(); i++) {
+            if (str.charAt(i) != other.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
+    private void readToken(int first) throws IOException {
+        token.setLength(0);
+        token.append((char) first);
+
+        int c;
+        while ((c = read()) != -1) {
+            if (c <= ' ' || c == '{' || c == '}' || c == '(' || c == ')' || c == '[' || c == ';') {
+                pushback = c;
+                break;
+            }
+            if (token.length() < MAX_TOKEN_LENGTH)
+                token.append((char) c);
+        }
+    }
+
+    private void readTag(PgnGame game) throws IOException {
+        token.setLength(0);
+        value.setLength(0);
+
+        int c = read();
+        while (c != -1 && c <= ' ')
+            c = read();
+        while (c != -1 && c > ' ' && c != '"' && c != ']') {
+            if (token.length() < MAX_TOKEN_LENGTH)
+                token.append((char) c);
+            c = read();
+        }
+        while (c != -1 && c != '"' && c != ']')
+            c = read();
+
+        if (c == '"') {
+            while ((c = read()) != -1 && c != '"') {
+                if (c == '\\')
+                    c = read();
+                if (c == -1)
+                    break;
+                if (value.length() < MAX_TOKEN_LENGTH)
+                    value.append((char) c);
+            }
+            skipUntil(']');
+        }
+
+        if (token.length() > 0)
+            game.setTag(token.toString(), value.toString());
+    }
+
+    private void skipVariation() throws IOException {
+        int depth = 1;
+        int c;
+        while (depth > 0 && (c = read()) != -1) {
+            if (c == '(')
+                depth++;
+            else if (c == ')')
+                depth--;
+            else if (c == '{')
+                skipUntil('}');
+            else if (c == ';')
+                skipLine();
+        }
+    }
+
+    private void skipLine() throws IOException {
+        skipUntil('\n');
+    }
+
+    private void skipUntil(char end) throws IOException {
+        int c;
+        while ((c = read()) != -1 && c != end) {
+            // Skip
+        }
+    }
+
+    private int read() throws IOException {
+        int c;
+        if (pushback != -1) {
+            c = pushback;
+            pushback = -1;
+            return c;
+        }
+        if (!buffer.hasRemaining()) {
+            if (endOfInput)
+                return -1;
+            buffer.clear();
+            int count;
+            do {
+                count = channel.read(buffer);
+            } while (count == 0);
+            buffer.flip();
+            if (count < 0) {
+                endOfInput = true;
+                return -1;
+            }
+        }
+        c = buffer.get() & 0xff;
+        lineStart = last == '\n';
+        last = c;
+        return c;
+    }
+
+    /**
+     * Replay every game of a PGN file and report the throughput.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: PgnReader <file.pgn>");
+            return;
+        }
+
+        FileChannel channel = new FileInputStream(args[0]).getChannel();
+        try {
+            PgnReader reader = new PgnReader(channel);
+            while (reader.readGame() != null) {
+                // Replaying is all the work
+            }
+            System.out.println(reader.getGamesRead() + " games (" + reader.getGamesFailed() + " failed), "
+                    + String.format("%.0f", reader.getGamesPerSecond()) + " games/s");
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package chess.pgn;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Writes games in PGN export format: the seven tag roster first, then any other tags, then the movetext in SAN
+ * wrapped at 80 characters.
+ */
+public class PgnWriter implements Flushable {
+    private static final String NEWLINE = "\n";
+    private static final int LINE_LENGTH = 79;
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final String[] ROSTER_DEFAULTS = {"?", "?", "????.??.??", "?", "?", "?", "*"};
+
+    private final Writer writer;
+    private final StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+
+    /**
+     * @param writer The destination; wrap it in a BufferedWriter when writing many games
+     */
+    public PgnWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Write a game.  Its moves are replayed from the initial position to produce SAN.
+     * @param game The game to write
+     * @throws IllegalArgumentException if a move is not possible in the position it is played from
+     */
+    public void write(PgnGame game) throws IOException {
+        Map<String, String> tags = game.getTags();
+        for (int i = 0; i < SEVEN_TAG_ROSTER.length; i++) {
+            String value = i == SEVEN_TAG_ROSTER.length - 1 ? game.getResult() : tags.get(SEVEN_TAG_ROSTER[i]);
+            writeTag(SEVEN_TAG_ROSTER[i], value == null ? ROSTER_DEFAULTS[i] : value);
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (!isRosterTag(tag.getKey()))
+                writeTag(tag.getKey(), tag.getValue());
+        }
+        writer.write(NEWLINE);
+
+        GameState state = game.createInitialState();
+        line.setLength(0);
+        boolean first = true;
+        for (Move move : game.getMoves()) {
+            if (state.getCurrentPlayer() == Player.White)
+                appendWord(state.getFullmoveNumber() + ".");
+            else if (first)
+                appendWord(state.getFullmoveNumber() + "...");
+            first = false;
+
+            appendWord(San.format(state, move));
+            state.movePiece(move);
+        }
+        appendWord(game.getResult());
+        writer.write(line.toString());
+        writer.write(NEWLINE);
+        writer.write(NEWLINE);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void appendWord(String word) throws IOException {
+        if (line.length() > 0 && line.length() + 1 + word.length() > LINE_LENGTH) {
+            writer.write(line.toString());
+            writer.write(NEWLINE);
+            line.setLength(0);
+        }
+        if (line.length() > 0)
+            line.append(' ');
+        line.append(word);
+    }
+
+    private void writeTag(String name, String value) throws IOException {
+        writer.write('[');
+        writer.write(name);
+        writer.write(" \"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                writer.write('\\');
+            writer.write(c);
+        }
+        writer.write("\"]");
+        writer.write(NEWLINE);
+    }
+
+    private static boolean isRosterTag(String name) {
+        for (String roster : SEVEN_TAG_ROSTER) {
+            if (roster.equals(name))
+                return true;
+        }
+        return false;
+    }
+}
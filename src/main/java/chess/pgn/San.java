@@ -0,0 +1,163 @@
+package chess.pgn;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+import chess.pieces.Piece;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts between moves and Standard Algebraic Notation, i.e. "e4", "Nbd7", "exd5".  Castling and promotion are
+ * not supported by the game, so SAN for them is rejected.
+ */
+public final class San {
+
+    private San() {
+    }
+
+    /**
+     * Resolve a SAN move against the moves that are possible in the given state.
+     * @param state The position the move is played from
+     * @param san The move text; check and annotation suffixes ('+', '#', '!', '?') are ignored
+     * @return The matching move
+     * @throws IllegalArgumentException if the text is not SAN, or does not match exactly one possible move
+     */
+    public static Move parse(GameState state, CharSequence san) {
+        int end = san.length();
+        while (end > 0 && isSuffix(san.charAt(end - 1)))
+            end--;
+
+        if (end > 0 && (san.charAt(0) == 'O' || san.charAt(0) == '0'))
+            throw new IllegalArgumentException("Castling is not supported: " + san);
+        if (end < 2)
+            throw new IllegalArgumentException("Invalid SAN move: " + san);
+        for (int i = 0; i < end; i++) {
+            if (san.charAt(i) == '=')
+                throw new IllegalArgumentException("Promotion is not supported: " + san);
+        }
+
+        char toColumn = san.charAt(end - 2);
+        char toRow = san.charAt(end - 1);
+        if (!isColumn(toColumn) || !isRow(toRow))
+            throw new IllegalArgumentException("Invalid SAN move: " + san);
+        int destination = (toRow - '1') * 8 + (toColumn - Position.MIN_COLUMN);
+
+        int start = 0;
+        char type = 'p';
+        char first = san.charAt(0);
+        if (first == 'N' || first == 'B' || first == 'R' || first == 'Q' || first == 'K') {
+            type = Character.toLowerCase(first);
+            start = 1;
+        }
+
+        // Whatever is left between the piece letter and the destination is disambiguation and the capture mark
+        char fromColumn = 0;
+        char fromRow = 0;
+        for (int i = start; i < end - 2; i++) {
+            char c = san.charAt(i);
+            if (isColumn(c))
+                fromColumn = c;
+            else if (isRow(c))
+                fromRow = c;
+            else if (c != 'x' && c != ':')
+                throw new IllegalArgumentException("Invalid SAN move: " + san);
+        }
+
+        List<Move> candidates = new ArrayList<Move>(2);
+        for (Move move : state.getPossibleMoves()) {
+            Position origin = move.getOrigin();
+            if (move.getDestination().getIndex() != destination) continue;
+            if (fromColumn != 0 && origin.getColumn() != fromColumn) continue;
+            if (fromRow != 0 && origin.getRow() != fromRow - '0') continue;
+
+            Piece piece = state.getPieceAt(origin);
+            if (Character.toLowerCase(piece.getIdentifier()) == type)
+                candidates.add(move);
+        }
+
+        if (candidates.size() > 1)
+            candidates = removeIllegal(state, candidates);
+        if (candidates.size() != 1)
+            throw new IllegalArgumentException((candidates.isEmpty() ? "Illegal" : "Ambiguous") + " SAN move: " + san);
+        return candidates.get(0);
+    }
+
+    /**
+     * Describe a move in SAN.  Check marks are not written.
+     * @param state The position the move is played from
+     * @param move The move, which must be possible in that position
+     * @return The move text
+     */
+    public static String format(GameState state, Move move) {
+        Position origin = move.getOrigin();
+        Position destination = move.getDestination();
+        Piece piece = state.getPieceAt(origin);
+        if (piece == null)
+            throw new IllegalArgumentException("No piece to move: " + move);
+
+        char type = Character.toLowerCase(piece.getIdentifier());
+        boolean capture = state.getPieceAt(destination) != null;
+
+        StringBuilder builder = new StringBuilder(6);
+        if (type == 'p') {
+            if (capture)
+                builder.append(origin.getColumn());
+        } else {
+            builder.append(Character.toUpperCase(type));
+
+            boolean ambiguous = false;
+            boolean sameColumn = false;
+            boolean sameRow = false;
+            for (Move other : state.getPossibleMoves()) {
+                Position otherOrigin = other.getOrigin();
+                if (otherOrigin.equals(origin) || !other.getDestination().equals(destination)) continue;
+                if (Character.toLowerCase(state.getPieceAt(otherOrigin).getIdentifier()) != type) continue;
+
+                ambiguous = true;
+                sameColumn |= otherOrigin.getColumn() == origin.getColumn();
+                sameRow |= otherOrigin.getRow() == origin.getRow();
+            }
+            if (ambiguous) {
+                if (!sameColumn) {
+                    builder.append(origin.getColumn());
+                } else if (!sameRow) {
+                    builder.append(origin.getRow());
+                } else {
+                    builder.append(origin.getColumn()).append(origin.getRow());
+                }
+            }
+        }
+
+        if (capture)
+            builder.append('x');
+        builder.append(destination.getColumn()).append(destination.getRow());
+        return builder.toString();
+    }
+
+    /**
+     * The move generator does not look for check, so SAN leaves out moves that a pinned piece could otherwise make.
+     * Drop the candidates that leave the mover's king open to capture, using the position's cached legal moves.
+     */
+    private static List<Move> removeIllegal(GameState state, List<Move> candidates) {
+        List<Move> legal = new ArrayList<Move>(candidates.size());
+        for (Move move : candidates) {
+            if (state.isLegalMove(move))
+                legal.add(move);
+        }
+        return legal;
+    }
+
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+
+    private static boolean isColumn(char c) {
+        return c >= Position.MIN_COLUMN && c <= Position.MAX_COLUMN;
+    }
+
+    private static boolean isRow(char c) {
+        return c >= '1' && c <= '8';
+    }
+}
@@ -89,6 +89,7 @@ public class Bishop extends Piece {
             if(!isWithinBounds(c,r)) {
                 prevC = c;
                 prevR = r;
+                pieceAlong = false;
                 continue;
             }
 
@@ -0,0 +1,144 @@
+package chess.record;
+
+import chess.GameState;
+import chess.Move;
+import chess.pgn.PgnGame;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads games written by {@link GameRecordWriter}, replaying each one through a {@link GameState}.  Whole blocks
+ * are read into memory at once and decoded from the array.
+ */
+public class GameRecordReader implements Closeable {
+    private final DataInputStream in;
+    private byte[] block = new byte[GameRecordWriter.BLOCK_SIZE];
+    private int blockLength = 0;
+    private int offset = 0;
+    private int gamesLeftInBlock = 0;
+    private long gamesRead = 0;
+
+    /**
+     * Create the reader and check the file header.
+     * @param in The source
+     * @throws IOException if the stream is not a game record file
+     */
+    public GameRecordReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in);
+        int magic = this.in.readInt();
+        int version = this.in.read();
+        if (magic != GameRecordWriter.MAGIC)
+            throw new IOException("Not a game record file");
+        if (version != GameRecordWriter.VERSION)
+            throw new IOException("Unsupported game record version " + version);
+    }
+
+    /**
+     * Read the next game.  The returned game carries its final position.
+     * @return The game, or null if there are no more games
+     * @throws IOException if the file is truncated or a move index is out of range
+     */
+    public PgnGame readGame() throws IOException {
+        if (gamesLeftInBlock == 0 && !readBlock())
+            return null;
+
+        if (offset >= blockLength)
+            throw new IOException("Truncated game record");
+        PgnGame game = new PgnGame();
+        int result = block[offset++];
+        if (result < 0 || result >= GameRecordWriter.RESULTS.length)
+            throw new IOException("Invalid result code " + result);
+        game.setResult(GameRecordWriter.RESULTS[result]);
+
+        int tagCount = readVarint();
+        for (int i = 0; i < tagCount; i++) {
+            String name = readString();
+            game.setTag(name, readString());
+        }
+
+        int moveCount = readVarint();
+        GameState state = game.createInitialState();
+        for (int i = 0; i < moveCount; i++) {
+            int index = readVarint();
+            Move move = state.getLegalMove(index);
+            if (move == null)
+                throw new IOException("Move index " + index + " out of range in " + state.toFen());
+            state.movePiece(move);
+            game.addMove(move);
+        }
+        game.setFinalState(state);
+
+        gamesLeftInBlock--;
+        gamesRead++;
+        return game;
+    }
+
+    public long getGamesRead() {
+        return gamesRead;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private boolean readBlock() throws IOException {
+        int length;
+        try {
+            length = readStreamVarint(true);
+        } catch (EOFException e) {
+            return false;
+        }
+        int games = readStreamVarint(false);
+
+        if (length > block.length)
+            block = new byte[length];
+        in.readFully(block, 0, length);
+        blockLength = length;
+        offset = 0;
+        gamesLeftInBlock = games;
+        return games > 0 || readBlock();
+    }
+
+    private int readStreamVarint(boolean atBoundary) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (atBoundary && shift == 0)
+                    throw new EOFException();
+                throw new IOException("Truncated game record block header");
+            }
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (offset >= blockLength)
+                throw new IOException("Truncated game record");
+            int b = block[offset++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Invalid varint");
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint();
+        if (offset + length > blockLength)
+            throw new IOException("Truncated game record");
+        String str = new String(block, offset, length, GameRecordWriter.UTF8);
+        offset += length;
+        return str;
+    }
+}
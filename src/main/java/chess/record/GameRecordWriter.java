@@ -0,0 +1,165 @@
+package chess.record;
+
+import chess.GameState;
+import chess.Move;
+import chess.pgn.PgnGame;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes games in the compact binary record format.
+ *
+ * A file starts with a 4 byte magic number and a version byte, followed by blocks.  Each block is a varint byte
+ * length, a varint game count and then the games, so a block can be compressed or skipped on its own.  A game is
+ * a result byte, its tag pairs and its moves, where each move is stored as a varint index into
+ * {@link GameState#getLegalMoves()} for the position it is played from.  Legal moves are listed in square order,
+ * so the indices do not depend on how the move generators happen to order their moves.  Almost every index fits in
+ * one byte.  Indices are counted from the position's cached legal destinations, so no move list is built.
+ */
+public class GameRecordWriter implements Closeable, Flushable {
+    static final int MAGIC = 0x43475231;
+    static final int VERSION = 1;
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final OutputStream out;
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength = 0;
+    private int blockGames = 0;
+    private long gamesWritten = 0;
+
+    /**
+     * Create the writer and write the file header.
+     * @param out The destination
+     */
+    public GameRecordWriter(OutputStream out) throws IOException {
+        this.out = out;
+        out.write(MAGIC >>> 24);
+        out.write(MAGIC >>> 16);
+        out.write(MAGIC >>> 8);
+        out.write(MAGIC);
+        out.write(VERSION);
+    }
+
+    /**
+     * Append a game.  Its moves are replayed from the initial position to find their indices.
+     * @param game The game to write
+     * @throws IllegalArgumentException if a move is not legal in the position it is played from
+     */
+    public void write(PgnGame game) throws IOException {
+        int start = blockLength;
+
+        writeByte(resultCode(game.getResult()));
+        Map<String, String> tags = game.getTags();
+        writeVarint(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            writeString(tag.getKey());
+            writeString(tag.getValue());
+        }
+
+        List<Move> moves = game.getMoves();
+        writeVarint(moves.size());
+        GameState state = game.createInitialState();
+        for (Move move : moves) {
+            int index = state.getLegalMoveIndex(move);
+            if (index < 0) {
+                blockLength = start;
+                throw new IllegalArgumentException("Move " + move + " is not legal in " + state.toFen());
+            }
+            writeVarint(index);
+            state.movePiece(move);
+        }
+
+        blockGames++;
+        gamesWritten++;
+        if (blockLength >= BLOCK_SIZE)
+            writeBlock();
+    }
+
+    public long getGamesWritten() {
+        return gamesWritten;
+    }
+
+    /**
+     * Write out the current block, even if it is not full.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockGames == 0)
+            return;
+
+        byte[] header = new byte[10];
+        int length = putVarint(header, 0, blockLength);
+        length = putVarint(header, length, blockGames);
+        out.write(header, 0, length);
+        out.write(block, 0, blockLength);
+
+        blockLength = 0;
+        blockGames = 0;
+    }
+
+    private static int resultCode(String result) {
+        for (int i = 0; i < RESULTS.length; i++) {
+            if (RESULTS[i].equals(result))
+                return i;
+        }
+        return 0;
+    }
+
+    private void writeString(String str) {
+        byte[] bytes = str.getBytes(UTF8);
+        writeVarint(bytes.length);
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, block, blockLength, bytes.length);
+        blockLength += bytes.length;
+    }
+
+    private void writeByte(int value) {
+        ensureCapacity(1);
+        block[blockLength++] = (byte) value;
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+        blockLength = putVarint(block, blockLength, value);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (blockLength + extra > block.length) {
+            byte[] larger = new byte[Math.max(block.length * 2, blockLength + extra)];
+            System.arraycopy(block, 0, larger, 0, blockLength);
+            block = larger;
+        }
+    }
+
+    /**
+     * Store an unsigned LEB128 varint: seven bits per byte, low bits first, high bit set on all but the last byte.
+     * @return The offset after the varint
+     */
+    static int putVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+}
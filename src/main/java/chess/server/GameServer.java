@@ -0,0 +1,319 @@
+package chess.server;
+
+import chess.CLI;
+import chess.CliCommand;
+import chess.GameState;
+import chess.broadcast.Broadcaster;
+import chess.broadcast.Subscription;
+import chess.cache.MoveListCache;
+import chess.journal.JournalSession;
+import chess.journal.MoveJournal;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many games in one JVM.  Every connection to the local TCP port gets its own game and speaks the same line
+ * protocol as the console: the server runs a {@link CLI} per connection, so all of its commands work unchanged and
+ * 'quit' closes the connection.  Connections are served on virtual threads when the JVM has them, and on a cached
+ * pool of platform threads otherwise.  Per-session buffers are kept small, since a session only reads one command
+ * line and writes one board at a time.  Besides its buffers a session holds its board and the moves of its game; a
+ * session that runs 'analyze' also holds a transposition table, whose size is a server setting and 16 KB by
+ * default.  Every session's moves are broadcast, so spectators can {@link #watch(int)} them.
+ *
+ * With a journal, every connection is told its journal session, and after a crash and restart a client continues
+ * its game with 'resume &lt;session&gt;'.
+ */
+public class GameServer {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int READ_BUFFER = 256;
+    private static final int WRITE_BUFFER = 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions = newSessionExecutor();
+    private final Set<Socket> openSockets = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final Map<Integer, Broadcaster> broadcasts = new ConcurrentHashMap<Integer, Broadcaster>();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicInteger totalSessions = new AtomicInteger();
+    private volatile MoveJournal journal;
+    private volatile int analysisTableEntries = 1 << 10;
+    private final Map<Integer, GameState> unclaimed = new ConcurrentHashMap<Integer, GameState>();
+    private ScheduledExecutorService expiry;
+    private Thread acceptor;
+
+    /**
+     * Bind to a port on the loopback interface.
+     * @param port The port, or 0 for any free port
+     */
+    public GameServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return The connections currently open
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * @return The connections accepted since the server started
+     */
+    public int getTotalSessions() {
+        return totalSessions.get();
+    }
+
+    /**
+     * Size the transposition table each session allocates the first time it runs 'analyze'.  Sessions opened from
+     * now on use the new size.
+     * @param entries A power of two of 16 bytes each, or 0 to analyse without a table; 1024 by default
+     */
+    public void setAnalysisTableEntries(int entries) {
+        if (entries < 0 || entries > 0 && Integer.bitCount(entries) != 1)
+            throw new IllegalArgumentException("Entries must be 0 or a power of two: " + entries);
+        this.analysisTableEntries = entries;
+    }
+
+    /**
+     * Journal the games of every session opened from now on, giving recovered games ten minutes to be resumed.
+     */
+    public void setJournal(MoveJournal journal) {
+        setJournal(journal, 10 * 60 * 1000);
+    }
+
+    /**
+     * Journal the games of every session opened from now on.  Close the journal after the server.  The games
+     * recovered from the journal wait to be resumed; those nobody resumes in time are abandoned and ended, so they
+     * do not pile up across restarts.
+     * @param resumeWindowMillis How long recovered games wait to be resumed
+     */
+    public synchronized void setJournal(final MoveJournal journal, long resumeWindowMillis) {
+        if (this.journal != null)
+            throw new IllegalStateException("Journal already set");
+        this.journal = journal;
+        unclaimed.putAll(journal.getRecoveredGames());
+        if (unclaimed.isEmpty())
+            return;
+
+        expiry = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable task) {
+                Thread thread = new Thread(task, "chess-server-resume-expiry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        expiry.schedule(new Runnable() {
+            @Override
+            public void run() {
+                for (Integer session : unclaimed.keySet()) {
+                    if (unclaimed.remove(session) != null)
+                        journal.endSession(session);
+                }
+            }
+        }, resumeWindowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return The sessions recovered from the journal that can still be resumed
+     */
+    public Set<Integer> getResumableSessions() {
+        return Collections.unmodifiableSet(unclaimed.keySet());
+    }
+
+    /**
+     * Follow the games of a session.
+     * @param session The session number; sessions are numbered from 1 in the order they connect
+     * @return The subscription, or null if the session is not open
+     */
+    public Subscription watch(int session) {
+        Broadcaster broadcaster = broadcasts.get(session);
+        return broadcaster == null ? null : broadcaster.subscribe();
+    }
+
+    /**
+     * Start accepting connections on a background thread.
+     */
+    public synchronized void start() {
+        if (acceptor != null)
+            throw new IllegalStateException("Server already started");
+
+        acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "chess-server-acceptor");
+        acceptor.start();
+    }
+
+    /**
+     * Stop accepting connections and close the open ones.
+     */
+    public void close() throws IOException, InterruptedException {
+        serverSocket.close();
+        for (Socket socket : openSockets) {
+            socket.close();
+        }
+        sessions.shutdownNow();
+        sessions.awaitTermination(10, TimeUnit.SECONDS);
+        synchronized (this) {
+            if (expiry != null)
+                expiry.shutdownNow();
+        }
+        if (acceptor != null)
+            acceptor.join();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (serverSocket.isClosed())
+                    return;
+                System.err.println("Failed to accept a connection: " + e.getMessage());
+                continue;
+            }
+
+            openSockets.add(socket);
+            final int session = totalSessions.incrementAndGet();
+            activeSessions.incrementAndGet();
+            sessions.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(socket, session);
+                    } finally {
+                        activeSessions.decrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    private void serve(Socket socket, int session) {
+        Broadcaster broadcaster = new Broadcaster();
+        broadcasts.put(session, broadcaster);
+        Journaled journaled = null;
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ASCII), READ_BUFFER);
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream(), WRITE_BUFFER));
+            CLI cli = new CLI(in, out);
+            cli.setAnalysisTableEntries(analysisTableEntries);
+            cli.addGameListener(broadcaster);
+            if (journal != null) {
+                journaled = new Journaled(cli, journal.openSession());
+                cli.addCommand("resume <session>", "Continue a game that was open when the server went down",
+                        journaled);
+                out.println("Journal session " + journaled.journalSession.getSession());
+            }
+            cli.startEventLoop();
+            out.flush();
+        } catch (SocketException e) {
+            // The client went away
+        } catch (IOException e) {
+            System.err.println("Session failed: " + e.getMessage());
+        } catch (RuntimeException e) {
+            // The CLI wraps read errors, which are usually a closed connection
+            if (!(e.getCause() instanceof IOException))
+                System.err.println("Session failed: " + e);
+        } finally {
+            if (journaled != null)
+                journaled.journalSession.end();
+            broadcasts.remove(session);
+            openSockets.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to do with it
+            }
+        }
+    }
+
+    /**
+     * The journal session of a connection, and its 'resume' command, which swaps in a recovered session
+     */
+    private class Journaled implements CliCommand {
+        private final CLI cli;
+        private JournalSession journalSession;
+
+        Journaled(CLI cli, JournalSession journalSession) {
+            this.cli = cli;
+            this.journalSession = journalSession;
+            cli.addGameListener(journalSession);
+        }
+
+        @Override
+        public String run(String argument) {
+            int session;
+            try {
+                session = Integer.parseInt(argument);
+            } catch (NumberFormatException e) {
+                return "Invalid session for resume command";
+            }
+            GameState game = unclaimed.remove(session);
+            if (game == null)
+                return "No recovered game for session " + session;
+
+            // The game this connection was playing is replaced, so its own session is over
+            cli.removeGameListener(journalSession);
+            journalSession.end();
+            journalSession = journal.resumeSession(session);
+            cli.addGameListener(journalSession);
+            cli.loadPosition(game);
+            return "Resumed journal session " + session;
+        }
+    }
+
+    /**
+     * @return An executor that starts a virtual thread per task on Java 21 or later, or a cached thread pool
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7878;
+        GameServer server = new GameServer(port);
+        GameState.setSharedMoveCache(new MoveListCache(64L * 1024 * 1024));
+        if (args.length > 1) {
+            MoveJournal journal = new MoveJournal(new File(args[1]));
+            for (Map.Entry<Integer, GameState> game : journal.getRecoveredGames().entrySet()) {
+                System.out.println("Recovered game " + game.getKey() + ": " + game.getValue().toFen());
+            }
+            server.setJournal(journal);
+        }
+        server.start();
+        System.out.println("Chess server listening on localhost:" + server.getPort());
+    }
+}
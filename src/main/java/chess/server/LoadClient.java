@@ -0,0 +1,228 @@
+package chess.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulates players against a {@link GameServer} to load test it.  Every simulated player holds a connection open
+ * and repeatedly lists the possible moves and plays one at random, timing every command from sending it to seeing
+ * the next prompt.  A player whose game ends and whose connection is closed reconnects.
+ */
+public class LoadClient {
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private final String host;
+    private final int port;
+
+    private int clients = 100;
+    private int movesPerClient = 20;
+    private long seed = 1;
+
+    private final AtomicLong commands = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong latencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private long elapsedNanos;
+
+    public LoadClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * @param clients How many players are connected at the same time
+     */
+    public void setClients(int clients) {
+        this.clients = clients;
+    }
+
+    public void setMovesPerClient(int movesPerClient) {
+        this.movesPerClient = movesPerClient;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Connect all players and wait until every one has made its moves.
+     */
+    public void run() throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        ExecutorService executor = GameServer.newSessionExecutor();
+        try {
+            List<Future<Void>> players = new ArrayList<Future<Void>>();
+            for (int i = 0; i < clients; i++) {
+                final Random random = new Random(seed + i);
+                players.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        play(random);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> player : players) {
+                player.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void play(Random random) throws IOException {
+        Connection connection = null;
+        try {
+            int moves = 0;
+            while (moves < movesPerClient) {
+                if (connection == null)
+                    connection = new Connection();
+
+                List<String> output = connection.send("list");
+                List<String> possible = new ArrayList<String>();
+                if (output != null) {
+                    for (String line : output) {
+                        if (isMove(line))
+                            possible.add(line);
+                    }
+                }
+
+                String command = possible.isEmpty() ? "new" : "move " + possible.get(random.nextInt(possible.size()));
+                if (output == null || connection.send(command) == null) {
+                    connection.close();
+                    connection = null;
+                }
+                moves++;
+            }
+            if (connection != null)
+                connection.send("quit");
+        } finally {
+            if (connection != null)
+                connection.close();
+        }
+    }
+
+    private static boolean isMove(String line) {
+        return line.length() == 5 && line.charAt(2) == ' '
+                && line.charAt(0) >= 'a' && line.charAt(0) <= 'h' && line.charAt(1) >= '1' && line.charAt(1) <= '8'
+                && line.charAt(3) >= 'a' && line.charAt(3) <= 'h' && line.charAt(4) >= '1' && line.charAt(4) <= '8';
+    }
+
+    public long getCommands() {
+        return commands.get();
+    }
+
+    /**
+     * @return The connections opened, including reconnections after finished games
+     */
+    public long getConnections() {
+        return connections.get();
+    }
+
+    public double getCommandsPerSecond() {
+        return elapsedNanos == 0 ? 0 : commands.get() * 1e9 / elapsedNanos;
+    }
+
+    public double getAverageLatencyMillis() {
+        long count = commands.get();
+        return count == 0 ? 0 : latencyNanos.get() / 1e6 / count;
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d clients, %d connections, %d commands, %.0f commands/s, latency avg %.2f ms, max %.2f ms",
+                clients, getConnections(), getCommands(), getCommandsPerSecond(), getAverageLatencyMillis(),
+                getMaxLatencyMillis());
+    }
+
+    /**
+     * One player's connection.  Output is read up to the next prompt, which is the only text not ended by a newline.
+     */
+    private class Connection {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final OutputStream out;
+
+        Connection() throws IOException {
+            socket = new Socket(host, port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ASCII));
+            out = socket.getOutputStream();
+            connections.incrementAndGet();
+            if (readToPrompt() == null)
+                throw new IOException("Server closed the connection");
+        }
+
+        /**
+         * @return The output of the command, or null if the server closed the connection
+         */
+        List<String> send(String command) throws IOException {
+            long start = System.nanoTime();
+            out.write((command + "\n").getBytes(ASCII));
+            out.flush();
+            List<String> output = readToPrompt();
+
+            long nanos = System.nanoTime() - start;
+            commands.incrementAndGet();
+            latencyNanos.addAndGet(nanos);
+            long max = maxLatencyNanos.get();
+            while (nanos > max && !maxLatencyNanos.compareAndSet(max, nanos)) {
+                max = maxLatencyNanos.get();
+            }
+            return output;
+        }
+
+        private List<String> readToPrompt() throws IOException {
+            List<String> lines = new ArrayList<String>();
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '\n') {
+                    lines.add(line.toString().trim());
+                    line.setLength(0);
+                } else {
+                    line.append((char) c);
+                    if (line.length() == 2 && line.charAt(0) == '>' && line.charAt(1) == ' ')
+                        return lines;
+                }
+            }
+            return null;
+        }
+
+        void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: LoadClient <port> [clients] [moves per client]");
+            return;
+        }
+
+        LoadClient client = new LoadClient("localhost", Integer.parseInt(args[0]));
+        if (args.length > 1)
+            client.setClients(Integer.parseInt(args[1]));
+        if (args.length > 2)
+            client.setMovesPerClient(Integer.parseInt(args[2]));
+        client.run();
+        System.out.println(client);
+    }
+}
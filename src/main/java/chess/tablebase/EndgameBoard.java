@@ -0,0 +1,314 @@
+package chess.tablebase;
+
+import java.util.Arrays;
+
+/**
+ * A small scratch board for tablebase work: up to {@link Material#MAX_MEN} men with the rules of this game,
+ * including check, so it does not share the game's move generator.  Men 0 and 1 are always the white and black
+ * kings.  As in {@link chess.pieces.Pawn}, a pawn advances one or two squares from any rank onto an empty square,
+ * captures one square diagonally forward, and never promotes, so a pawn on the last rank stays there.  The game has
+ * no castling or en passant.
+ */
+final class EndgameBoard {
+    private static final int[] KNIGHT_FILE = {1, 2, 2, 1, -1, -2, -2, -1};
+    private static final int[] KNIGHT_RANK = {2, 1, -1, -2, -2, -1, 1, 2};
+    private static final int[] DIRECTION_FILE = {0, 0, 1, -1, 1, 1, -1, -1};
+    private static final int[] DIRECTION_RANK = {1, -1, 0, 0, 1, -1, 1, -1};
+
+    final int[] squares = new int[Material.MAX_MEN];
+    final int[] types = new int[Material.MAX_MEN];
+    final int[] colors = new int[Material.MAX_MEN];
+    int men;
+    private final int[] occupant = new int[64];
+
+    /**
+     * After {@link #canonicalize(int)}: the side to move and index into the table
+     */
+    int lookupSide;
+    int lookupIndex;
+
+    /**
+     * Set up the position of a table index.
+     * @return false if the squares overlap
+     */
+    boolean load(Material material, int index) {
+        men = material.men;
+        material.decode(index, squares);
+        for (int i = 0; i < men; i++) {
+            types[i] = material.types[i];
+            colors[i] = material.colors[i];
+        }
+        return refresh();
+    }
+
+    void copyFrom(EndgameBoard other) {
+        men = other.men;
+        System.arraycopy(other.squares, 0, squares, 0, men);
+        System.arraycopy(other.types, 0, types, 0, men);
+        System.arraycopy(other.colors, 0, colors, 0, men);
+        System.arraycopy(other.occupant, 0, occupant, 0, 64);
+    }
+
+    /**
+     * Rebuild the occupancy after the men were changed directly.
+     * @return false if the squares overlap
+     */
+    boolean refresh() {
+        Arrays.fill(occupant, -1);
+        for (int i = 0; i < men; i++) {
+            int sq = squares[i];
+            if (occupant[sq] != -1)
+                return false;
+            occupant[sq] = i;
+        }
+        return true;
+    }
+
+    int occupant(int sq) {
+        return occupant[sq];
+    }
+
+    boolean inCheck(int color) {
+        return isAttacked(squares[color], 1 - color);
+    }
+
+    /**
+     * Whether any man of the given colour attacks a square
+     */
+    boolean isAttacked(int target, int byColor) {
+        int targetFile = target & 7;
+        int targetRank = target >> 3;
+        for (int i = 0; i < men; i++) {
+            if (colors[i] != byColor) continue;
+
+            int sq = squares[i];
+            int df = targetFile - (sq & 7);
+            int dr = targetRank - (sq >> 3);
+            switch (types[i]) {
+                case Material.KING:
+                    if (sq != target && Math.abs(df) <= 1 && Math.abs(dr) <= 1)
+                        return true;
+                    break;
+                case Material.KNIGHT:
+                    if (Math.abs(df) * Math.abs(dr) == 2)
+                        return true;
+                    break;
+                case Material.PAWN:
+                    if (Math.abs(df) == 1 && dr == (byColor == Material.WHITE ? 1 : -1))
+                        return true;
+                    break;
+                case Material.ROOK:
+                    if ((df == 0 || dr == 0) && isPathClear(sq, df, dr))
+                        return true;
+                    break;
+                case Material.BISHOP:
+                    if (Math.abs(df) == Math.abs(dr) && isPathClear(sq, df, dr))
+                        return true;
+                    break;
+                case Material.QUEEN:
+                    if ((df == 0 || dr == 0 || Math.abs(df) == Math.abs(dr)) && isPathClear(sq, df, dr))
+                        return true;
+                    break;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPathClear(int from, int df, int dr) {
+        int steps = Math.max(Math.abs(df), Math.abs(dr));
+        if (steps == 0)
+            return false;
+        int step = Integer.signum(dr) * 8 + Integer.signum(df);
+        for (int i = 1, sq = from + step; i < steps; i++, sq += step) {
+            if (occupant[sq] != -1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Generate the pseudo-legal moves of one side as (man, target square) pairs.
+     * @param moves Receives two ints per move; it must hold at least 2 * 64 * MAX_MEN entries
+     * @return The number of ints written
+     */
+    int generateMoves(int color, int[] moves) {
+        int count = 0;
+        for (int i = 0; i < men; i++) {
+            if (colors[i] != color) continue;
+
+            int sq = squares[i];
+            int file = sq & 7;
+            int rank = sq >> 3;
+            switch (types[i]) {
+                case Material.KING:
+                    for (int d = 0; d < 8; d++) {
+                        count = addTarget(moves, count, i, file + DIRECTION_FILE[d], rank + DIRECTION_RANK[d]);
+                    }
+                    break;
+                case Material.KNIGHT:
+                    for (int d = 0; d < 8; d++) {
+                        count = addTarget(moves, count, i, file + KNIGHT_FILE[d], rank + KNIGHT_RANK[d]);
+                    }
+                    break;
+                case Material.PAWN:
+                    count = addPawnMoves(moves, count, i, file, rank);
+                    break;
+                default:
+                    int first = types[i] == Material.BISHOP ? 4 : 0;
+                    int last = types[i] == Material.ROOK ? 4 : 8;
+                    for (int d = first; d < last; d++) {
+                        int f = file + DIRECTION_FILE[d];
+                        int r = rank + DIRECTION_RANK[d];
+                        while (f >= 0 && f < 8 && r >= 0 && r < 8) {
+                            count = addTarget(moves, count, i, f, r);
+                            if (occupant[r * 8 + f] != -1)
+                                break;
+                            f += DIRECTION_FILE[d];
+                            r += DIRECTION_RANK[d];
+                        }
+                    }
+                    break;
+            }
+        }
+        return count;
+    }
+
+    private int addTarget(int[] moves, int count, int man, int f, int r) {
+        if (f < 0 || f > 7 || r < 0 || r > 7)
+            return count;
+        int target = r * 8 + f;
+        int other = occupant[target];
+        if (other != -1 && (colors[other] == colors[man] || types[other] == Material.KING))
+            return count;
+        moves[count] = man;
+        moves[count + 1] = target;
+        return count + 2;
+    }
+
+    /**
+     * The pawn moves of the game: each forward step only needs its target square empty, so the double step can be
+     * made from any rank and passes over a man in between
+     */
+    private int addPawnMoves(int[] moves, int count, int man, int file, int rank) {
+        int color = colors[man];
+        int forward = color == Material.WHITE ? 1 : -1;
+        for (int step = 1; step <= 2; step++) {
+            int r = rank + forward * step;
+            if (r >= 0 && r < 8 && occupant[r * 8 + file] == -1) {
+                moves[count] = man;
+                moves[count + 1] = r * 8 + file;
+                count += 2;
+            }
+        }
+
+        int r = rank + forward;
+        if (r < 0 || r > 7)
+            return count;
+        for (int df = -1; df <= 1; df += 2) {
+            int f = file + df;
+            if (f < 0 || f > 7) continue;
+            int other = occupant[r * 8 + f];
+            if (other != -1 && colors[other] != color && types[other] != Material.KING) {
+                moves[count] = man;
+                moves[count + 1] = r * 8 + f;
+                count += 2;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Play a move generated by {@link #generateMoves}.
+     * @return true if the move captured a man, so the material changed
+     */
+    boolean makeMove(int man, int target) {
+        int captured = occupant[target];
+        occupant[squares[man]] = -1;
+        squares[man] = target;
+        occupant[target] = man;
+
+        boolean materialChanged = false;
+        if (captured != -1) {
+            materialChanged = true;
+            men--;
+            squares[captured] = squares[men];
+            types[captured] = types[men];
+            colors[captured] = colors[men];
+            if (captured != men)
+                occupant[squares[captured]] = captured;
+        }
+        return materialChanged;
+    }
+
+    /**
+     * Bring an arbitrary position into table form: colours swapped if Black holds the stronger material, men in
+     * table order.  Sets {@link #lookupSide} and {@link #lookupIndex}.
+     * @param side The side to move
+     * @return The material of the table to look in, or null if the position is a dead draw
+     */
+    Material canonicalize(int side) {
+        int whiteCount = 0;
+        int blackCount = 0;
+        for (int i = 2; i < men; i++) {
+            if (colors[i] == Material.WHITE)
+                whiteCount++;
+            else
+                blackCount++;
+        }
+        int[] white = new int[whiteCount];
+        int[] black = new int[blackCount];
+        int[] whiteSquares = new int[whiteCount];
+        int[] blackSquares = new int[blackCount];
+        int w = 0;
+        int b = 0;
+        for (int i = 2; i < men; i++) {
+            if (colors[i] == Material.WHITE) {
+                white[w] = types[i];
+                whiteSquares[w++] = squares[i];
+            } else {
+                black[b] = types[i];
+                blackSquares[b++] = squares[i];
+            }
+        }
+        if (Material.isDead(white, black))
+            return null;
+
+        int[] table = new int[men];
+        if (Material.isCanonical(white, black)) {
+            lookupSide = side;
+            table[0] = squares[0];
+            table[1] = squares[1];
+            fillSorted(table, 2, white, whiteSquares, 0);
+            fillSorted(table, 2 + whiteCount, black, blackSquares, 0);
+        } else {
+            // Swap the colours and mirror the ranks
+            lookupSide = 1 - side;
+            table[0] = squares[1] ^ 56;
+            table[1] = squares[0] ^ 56;
+            fillSorted(table, 2, black, blackSquares, 56);
+            fillSorted(table, 2 + blackCount, white, whiteSquares, 56);
+            int[] swap = white;
+            white = black;
+            black = swap;
+        }
+
+        Material material = Material.of(white, black);
+        lookupIndex = material.index(table);
+        return material;
+    }
+
+    private static void fillSorted(int[] table, int offset, int[] types, int[] squares, int mirror) {
+        int[] order = new int[types.length];
+        for (int i = 0; i < order.length; i++) {
+            int j = i;
+            while (j > 0 && types[order[j - 1]] > types[i]) {
+                order[j] = order[j - 1];
+                j--;
+            }
+            order[j] = i;
+        }
+        for (int i = 0; i < order.length; i++) {
+            table[offset + i] = squares[order[i]] ^ mirror;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package chess.tablebase;
+
+import java.util.Arrays;
+
+/**
+ * A material signature such as "KQK" or "KBNK", and the indexing scheme of its table.
+ *
+ * The men of a table are ordered white king, black king, the other white pieces and then the other black pieces,
+ * each side's pieces sorted queen, rook, bishop, knight, pawn.  A position is indexed by the square of every man
+ * after mapping the white king into a canonical region: the a1-d1-d4 triangle (10 squares) for tables without
+ * pawns, using all eight board symmetries, or the a-d files (32 squares) for tables with pawns, which only allow
+ * the left-right mirror.
+ */
+final class Material {
+    static final int KING = 0;
+    static final int QUEEN = 1;
+    static final int ROOK = 2;
+    static final int BISHOP = 3;
+    static final int KNIGHT = 4;
+    static final int PAWN = 5;
+    static final String LETTERS = "KQRBNP";
+
+    static final int WHITE = 0;
+    static final int BLACK = 1;
+
+    /**
+     * The largest table supported, in men including both kings
+     */
+    static final int MAX_MEN = 4;
+
+    private static final int FLIP_FILE = 1;
+    private static final int FLIP_RANK = 2;
+    private static final int FLIP_DIAGONAL = 4;
+
+    private static final int[] TRIANGLE_SLOT = new int[64];
+    private static final int[] TRIANGLE_SQUARE = new int[10];
+    private static final int[] HALF_SLOT = new int[64];
+    private static final int[] HALF_SQUARE = new int[32];
+
+    static {
+        Arrays.fill(TRIANGLE_SLOT, -1);
+        Arrays.fill(HALF_SLOT, -1);
+        int triangle = 0;
+        int half = 0;
+        for (int sq = 0; sq < 64; sq++) {
+            int file = sq & 7;
+            int rank = sq >> 3;
+            if (file < 4 && rank < 4 && rank <= file) {
+                TRIANGLE_SLOT[sq] = triangle;
+                TRIANGLE_SQUARE[triangle++] = sq;
+            }
+            if (file < 4) {
+                HALF_SLOT[sq] = half;
+                HALF_SQUARE[half++] = sq;
+            }
+        }
+    }
+
+    final String name;
+    final int[] types;
+    final int[] colors;
+    final int men;
+    final boolean pawns;
+    final int size;
+
+    private Material(String name, int[] types, int[] colors) {
+        this.name = name;
+        this.types = types;
+        this.colors = colors;
+        this.men = types.length;
+
+        boolean hasPawns = false;
+        for (int type : types) {
+            hasPawns |= type == PAWN;
+        }
+        this.pawns = hasPawns;
+
+        int tableSize = pawns ? 32 : 10;
+        for (int i = 1; i < men; i++) {
+            tableSize *= 64;
+        }
+        this.size = tableSize;
+    }
+
+    /**
+     * Parse a signature such as "KRK" or "KQKR": a king, the white pieces, a king and the black pieces.
+     * @throws IllegalArgumentException if the signature is malformed or has too many men
+     */
+    static Material parse(String signature) {
+        int split = signature.indexOf('K', 1);
+        if (signature.length() < 2 || signature.charAt(0) != 'K' || split < 0)
+            throw new IllegalArgumentException("Invalid material signature: " + signature);
+
+        int[] white = pieceTypes(signature, 1, split);
+        int[] black = pieceTypes(signature, split + 1, signature.length());
+        if (white == null || black == null || 2 + white.length + black.length > MAX_MEN)
+            throw new IllegalArgumentException("Unsupported material signature: " + signature);
+        return of(white, black);
+    }
+
+    /**
+     * Create the material for two sets of non-king pieces, which are sorted into table order.
+     */
+    static Material of(int[] whitePieces, int[] blackPieces) {
+        int[] white = whitePieces.clone();
+        int[] black = blackPieces.clone();
+        Arrays.sort(white);
+        Arrays.sort(black);
+
+        int men = 2 + white.length + black.length;
+        int[] types = new int[men];
+        int[] colors = new int[men];
+        types[0] = KING;
+        colors[0] = WHITE;
+        types[1] = KING;
+        colors[1] = BLACK;
+        for (int i = 0; i < white.length; i++) {
+            types[2 + i] = white[i];
+            colors[2 + i] = WHITE;
+        }
+        for (int i = 0; i < black.length; i++) {
+            types[2 + white.length + i] = black[i];
+            colors[2 + white.length + i] = BLACK;
+        }
+
+        StringBuilder name = new StringBuilder("K");
+        for (int type : white) {
+            name.append(LETTERS.charAt(type));
+        }
+        name.append('K');
+        for (int type : black) {
+            name.append(LETTERS.charAt(type));
+        }
+        return new Material(name.toString(), types, colors);
+    }
+
+    /**
+     * Whether White holds the stronger half of the material.  Tables are only generated in that orientation; the
+     * colour-swapped positions are probed by mirroring the board.
+     */
+    static boolean isCanonical(int[] white, int[] black) {
+        if (white.length != black.length)
+            return white.length > black.length;
+
+        int[] w = white.clone();
+        int[] b = black.clone();
+        Arrays.sort(w);
+        Arrays.sort(b);
+        for (int i = 0; i < w.length; i++) {
+            if (w[i] != b[i])
+                return w[i] < b[i];
+        }
+        return true;
+    }
+
+    /**
+     * Whether neither side can ever be mated: bare kings, or a lone minor piece against a bare king
+     */
+    static boolean isDead(int[] white, int[] black) {
+        int pieces = white.length + black.length;
+        if (pieces == 0)
+            return true;
+        if (pieces > 1)
+            return false;
+        int type = white.length == 1 ? white[0] : black[0];
+        return type == BISHOP || type == KNIGHT;
+    }
+
+    /**
+     * Compute the index of a position.
+     * @param squares The square of each man, in table order; the array is not modified
+     */
+    int index(int[] squares) {
+        int transform = transformFor(squares[0]);
+        int king = transform(transform, squares[0]);
+        int index = pawns ? HALF_SLOT[king] : TRIANGLE_SLOT[king];
+        for (int i = 1; i < men; i++) {
+            index = index * 64 + transform(transform, squares[i]);
+        }
+        return index;
+    }
+
+    /**
+     * Fill in the square of each man for an index.
+     */
+    void decode(int index, int[] squares) {
+        for (int i = men - 1; i > 0; i--) {
+            squares[i] = index & 63;
+            index >>>= 6;
+        }
+        squares[0] = pawns ? HALF_SQUARE[index] : TRIANGLE_SQUARE[index];
+    }
+
+    private int transformFor(int whiteKing) {
+        int transform = 0;
+        if ((whiteKing & 7) > 3)
+            transform |= FLIP_FILE;
+        if (pawns)
+            return transform;
+        if ((whiteKing >> 3) > 3)
+            transform |= FLIP_RANK;
+
+        int sq = transform(transform, whiteKing);
+        if ((sq >> 3) > (sq & 7))
+            transform |= FLIP_DIAGONAL;
+        return transform;
+    }
+
+    private static int transform(int transform, int sq) {
+        int file = sq & 7;
+        int rank = sq >> 3;
+        if ((transform & FLIP_FILE) != 0)
+            file = 7 - file;
+        if ((transform & FLIP_RANK) != 0)
+            rank = 7 - rank;
+        if ((transform & FLIP_DIAGONAL) != 0) {
+            int tmp = file;
+            file = rank;
+            rank = tmp;
+        }
+        return rank * 8 + file;
+    }
+
+    private static int[] pieceTypes(String signature, int start, int end) {
+        int[] types = new int[end - start];
+        for (int i = start; i < end; i++) {
+            int type = LETTERS.indexOf(signature.charAt(i));
+            if (type <= KING)
+                return null;
+            types[i - start] = type;
+        }
+        return types;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,193 @@
+package chess.tablebase;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import chess.Position;
+import chess.Zobrist;
+import chess.pieces.Piece;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Probes the endgame tables written by {@link TablebaseGenerator}.  Each table file is memory mapped the first time
+ * a position with its material is probed, and entries are read straight out of the mapping.
+ */
+public class Tablebase {
+    static final String SUFFIX = ".tb";
+
+    /**
+     * Material types indexed by {@link Zobrist#type(Piece)}
+     */
+    private static final int[] TYPES = {Material.PAWN, Material.KNIGHT, Material.BISHOP, Material.ROOK,
+            Material.QUEEN, Material.KING};
+
+    private final File directory;
+    private final Map<String, Table> tables = new ConcurrentHashMap<String, Table>();
+
+    /**
+     * @param directory The directory holding the table files
+     */
+    public Tablebase(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Look up the current position.
+     * @return The value for the side to move, or null if the position has more than four men, its table is not
+     * available, or the side that just moved is in check
+     */
+    public TablebaseResult probe(GameState state) throws IOException {
+        EndgameBoard board = new EndgameBoard();
+        if (!load(state, board))
+            return null;
+
+        int side = state.getCurrentPlayer() == Player.White ? Material.WHITE : Material.BLACK;
+        if (board.inCheck(1 - side))
+            return null;
+
+        Material material = board.canonicalize(side);
+        if (material == null)
+            return TablebaseResult.DRAW;
+
+        Table table = getTable(material.name);
+        if (table == null)
+            return null;
+        return TablebaseResult.fromCode(table.code(board.lookupSide, board.lookupIndex));
+    }
+
+    /**
+     * Find the move that wins fastest, or failing that draws, or failing that loses slowest.
+     * @return The move, or null if the position or its successors are not in the tablebase
+     */
+    public Move bestMove(GameState state) throws IOException {
+        Move best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for (Move move : state.getPossibleMoves()) {
+            GameState next = GameState.fromFen(state.toFen());
+            next.movePiece(move);
+            TablebaseResult result = probe(next);
+            if (result == null) continue;
+
+            int score;
+            if (result.isLoss())
+                score = 10000 - result.getPlies();
+            else if (result.isWin())
+                score = -10000 + result.getPlies();
+            else
+                score = 0;
+            if (score > bestScore) {
+                bestScore = score;
+                best = move;
+            }
+        }
+        return best;
+    }
+
+    private static boolean load(GameState state, EndgameBoard board) {
+        Map<Position, Piece> pieces = state.getGameState();
+        if (pieces.size() > Material.MAX_MEN)
+            return false;
+
+        int men = 2;
+        boolean whiteKing = false;
+        boolean blackKing = false;
+        for (Map.Entry<Position, Piece> entry : pieces.entrySet()) {
+            Piece piece = entry.getValue();
+            int type = TYPES[Zobrist.type(piece)];
+            int color = piece.getOwner() == Player.White ? Material.WHITE : Material.BLACK;
+
+            int man;
+            if (type == Material.KING) {
+                if (color == Material.WHITE ? whiteKing : blackKing)
+                    return false;
+                if (color == Material.WHITE)
+                    whiteKing = true;
+                else
+                    blackKing = true;
+                man = color;
+            } else {
+                man = men++;
+            }
+            board.squares[man] = entry.getKey().getIndex();
+            board.types[man] = type;
+            board.colors[man] = color;
+        }
+        board.men = men;
+        return whiteKing && blackKing && board.refresh();
+    }
+
+    private Table getTable(String name) throws IOException {
+        Table table = tables.get(name);
+        if (table != null)
+            return table;
+
+        File file = new File(directory, name + SUFFIX);
+        if (!file.isFile())
+            return null;
+        table = Table.open(file);
+        tables.put(name, table);
+        return table;
+    }
+
+    /**
+     * A mapped table file
+     */
+    private static class Table {
+        private final ByteBuffer data;
+        private final long dataOffset;
+        private final int bits;
+        private final int size;
+
+        private Table(ByteBuffer data, long dataOffset, int bits, int size) {
+            this.data = data;
+            this.dataOffset = dataOffset;
+            this.bits = bits;
+            this.size = size;
+        }
+
+        static Table open(File file) throws IOException {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            int bits;
+            int size;
+            long offset;
+            try {
+                if (in.readInt() != TablebaseGenerator.MAGIC)
+                    throw new IOException(file + " is not a tablebase file");
+                String name = in.readUTF();
+                bits = in.readUnsignedByte();
+                size = in.readInt();
+                offset = 4 + 2 + name.getBytes("UTF-8").length + 1 + 4;
+            } finally {
+                in.close();
+            }
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                return new Table(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), offset, bits, size);
+            } finally {
+                // The mapping stays valid after the file is closed
+                raf.close();
+            }
+        }
+
+        int code(int side, int index) {
+            long bit = ((long) side * size + index) * bits;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long value = data.getLong((int) (dataOffset + word * 8L)) >>> shift;
+            if (shift + bits > 64)
+                value |= data.getLong((int) (dataOffset + (word + 1) * 8L)) << (64 - shift);
+            return (int) (value & ((1L << bits) - 1));
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package chess.tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Generates endgame tables by retrograde analysis.  Every position of a material signature is first classified as
+ * illegal, checkmate or stalemate; then, ply by ply, a position becomes a win in n when one of its moves reaches a
+ * loss in n - 1, and a loss in n when every move reaches a win of at most n - 1.  Whatever is still open when no
+ * more positions resolve is a draw.  The positions of each pass are split across all cores.
+ *
+ * Tables reached by a capture are generated first and kept in memory, and every table generated is written to the
+ * output directory as "&lt;signature&gt;.tb".
+ */
+public class TablebaseGenerator {
+    static final int MAGIC = 0x43544231;
+
+    private static final short UNKNOWN = 0;
+    private static final short ILLEGAL = -1;
+    private static final short DRAW = -2;
+    private static final int CHUNK_SIZE = 4096;
+    private static final int MAX_MOVES = 2 * 64 * Material.MAX_MEN;
+
+    private final File directory;
+    private final Map<String, short[][]> tables = new HashMap<String, short[][]>();
+    private final Map<String, Integer> longestMates = new HashMap<String, Integer>();
+
+    /**
+     * @param directory Where the table files are written
+     */
+    public TablebaseGenerator(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Generate the table for a material signature, along with every table it depends on, and write them out.
+     * @param signature White's king and pieces, then Black's, i.e. "KQK", "KPK" or "KBNK"
+     * @return The longest mate in the table, in plies
+     * @throws IllegalArgumentException if the signature is malformed or has more than four men
+     */
+    public int generate(String signature) throws IOException {
+        Material material = Material.parse(signature);
+        int[] white = pieces(material, Material.WHITE);
+        int[] black = pieces(material, Material.BLACK);
+        if (!Material.isCanonical(white, black))
+            material = Material.of(black, white);
+        if (Material.isDead(white, black))
+            throw new IllegalArgumentException(signature + " is always a draw");
+
+        generate(material);
+        return longestMates.get(material.name);
+    }
+
+    private void generate(Material material) throws IOException {
+        if (tables.containsKey(material.name))
+            return;
+        int longestSubMate = generateDependencies(material);
+
+        final Material m = material;
+        final short[][] values = new short[2][material.size];
+        final int chunks = (material.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+
+        forEachChunk(chunks, new IntConsumer() {
+            @Override
+            public void accept(int chunk) {
+                classify(m, values, chunk);
+            }
+        });
+
+        final AtomicBoolean changed = new AtomicBoolean();
+        boolean changedBefore = true;
+        for (int plies = 1; ; plies++) {
+            changed.set(false);
+            final int n = plies;
+            forEachChunk(chunks, new IntConsumer() {
+                @Override
+                public void accept(int chunk) {
+                    if (resolve(m, values, chunk, n))
+                        changed.set(true);
+                }
+            });
+
+            boolean changedNow = changed.get();
+            if (!changedNow && !changedBefore && plies > longestSubMate + 1)
+                break;
+            changedBefore = changedNow;
+        }
+
+        int longest = 0;
+        for (short[] side : values) {
+            for (int i = 0; i < side.length; i++) {
+                if (side[i] == UNKNOWN)
+                    side[i] = DRAW;
+                else if (side[i] > 0)
+                    longest = Math.max(longest, side[i] - 1);
+            }
+        }
+
+        tables.put(material.name, values);
+        longestMates.put(material.name, longest);
+        write(material, values);
+    }
+
+    /**
+     * Generate the tables reachable by one capture.  Pawns never promote in this game, so captures are the only
+     * way out of a table.
+     * @return The longest mate among them, in plies
+     */
+    private int generateDependencies(Material material) throws IOException {
+        int longest = 0;
+        for (int i = 2; i < material.men; i++) {
+            longest = Math.max(longest, generateCapture(material, i));
+        }
+        return longest;
+    }
+
+    private int generateCapture(Material material, int man) throws IOException {
+        int[] white = new int[0];
+        int[] black = new int[0];
+        for (int i = 2; i < material.men; i++) {
+            if (i == man) continue;
+            if (material.colors[i] == Material.WHITE)
+                white = append(white, material.types[i]);
+            else
+                black = append(black, material.types[i]);
+        }
+        if (Material.isDead(white, black))
+            return 0;
+
+        Material variant = Material.isCanonical(white, black) ? Material.of(white, black) : Material.of(black, white);
+        generate(variant);
+        return longestMates.get(variant.name);
+    }
+
+    /**
+     * Mark the illegal positions, checkmates and stalemates of a chunk.
+     */
+    private void classify(Material material, short[][] values, int chunk) {
+        EndgameBoard board = new EndgameBoard();
+        EndgameBoard child = new EndgameBoard();
+        int[] moves = new int[MAX_MOVES];
+
+        int end = Math.min(material.size, (chunk + 1) * CHUNK_SIZE);
+        for (int index = chunk * CHUNK_SIZE; index < end; index++) {
+            if (!board.load(material, index)) {
+                values[0][index] = ILLEGAL;
+                values[1][index] = ILLEGAL;
+                continue;
+            }
+
+            for (int side = 0; side < 2; side++) {
+                if (board.inCheck(1 - side)) {
+                    values[side][index] = ILLEGAL;
+                } else if (!hasLegalMove(board, child, side, moves)) {
+                    values[side][index] = board.inCheck(side) ? (short) 1 : DRAW;
+                }
+            }
+        }
+    }
+
+    /**
+     * Run one pass over a chunk.  On odd passes open positions with a move to a loss in plies - 1 become wins; on
+     * even passes open positions whose every move reaches a win of at most plies - 1 become losses.
+     * @return true if any position was resolved
+     */
+    private boolean resolve(Material material, short[][] values, int chunk, int plies) {
+        EndgameBoard board = new EndgameBoard();
+        EndgameBoard child = new EndgameBoard();
+        int[] moves = new int[MAX_MOVES];
+        boolean winPass = plies % 2 == 1;
+        boolean changed = false;
+
+        int end = Math.min(material.size, (chunk + 1) * CHUNK_SIZE);
+        for (int index = chunk * CHUNK_SIZE; index < end; index++) {
+            if (values[0][index] != UNKNOWN && values[1][index] != UNKNOWN) continue;
+            board.load(material, index);
+
+            for (int side = 0; side < 2; side++) {
+                if (values[side][index] != UNKNOWN) continue;
+
+                boolean resolved = !winPass;
+                int count = board.generateMoves(side, moves);
+                for (int i = 0; i < count; i += 2) {
+                    child.copyFrom(board);
+                    boolean materialChanged = child.makeMove(moves[i], moves[i + 1]);
+                    if (child.inCheck(side)) continue;
+
+                    int code = successorCode(material, values, child, materialChanged, 1 - side);
+                    boolean successorWins = code > 0 && (code - 1) % 2 == 1;
+                    if (winPass) {
+                        if (code > 0 && !successorWins && code - 1 == plies - 1) {
+                            resolved = true;
+                            break;
+                        }
+                    } else if (!successorWins || code - 1 > plies - 1) {
+                        resolved = false;
+                        break;
+                    }
+                }
+
+                if (resolved) {
+                    values[side][index] = (short) (plies + 1);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private int successorCode(Material material, short[][] values, EndgameBoard child, boolean materialChanged,
+                              int side) {
+        if (!materialChanged)
+            return values[side][material.index(child.squares)];
+
+        Material sub = child.canonicalize(side);
+        if (sub == null)
+            return DRAW;
+        return tables.get(sub.name)[child.lookupSide][child.lookupIndex];
+    }
+
+    private static boolean hasLegalMove(EndgameBoard board, EndgameBoard child, int side, int[] moves) {
+        int count = board.generateMoves(side, moves);
+        for (int i = 0; i < count; i += 2) {
+            child.copyFrom(board);
+            child.makeMove(moves[i], moves[i + 1]);
+            if (!child.inCheck(side))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Write a table.  After the header each position is stored in the fewest bits that hold the longest mate:
+     * zero for a draw or an illegal position, otherwise one more than the plies to mate, whose parity tells
+     * whether the side to move wins (odd) or loses (even).  White-to-move entries come first.
+     */
+    private void write(Material material, short[][] values) throws IOException {
+        int longest = longestMates.get(material.name);
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(longest + 1));
+        long totalBits = 2L * material.size * bits;
+        long[] words = new long[(int) ((totalBits + 63) / 64)];
+
+        long bit = 0;
+        for (short[] side : values) {
+            for (short value : side) {
+                long code = value > 0 ? value : 0;
+                int word = (int) (bit >>> 6);
+                int offset = (int) (bit & 63);
+                words[word] |= code << offset;
+                if (offset + bits > 64)
+                    words[word + 1] |= code >>> (64 - offset);
+                bit += bits;
+            }
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Cannot create " + directory);
+        File file = new File(directory, material.name + Tablebase.SUFFIX);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeUTF(material.name);
+            out.writeByte(bits);
+            out.writeInt(material.size);
+            for (long word : words) {
+                out.writeLong(word);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void forEachChunk(int chunks, IntConsumer task) {
+        IntStream.range(0, chunks).parallel().forEach(task);
+    }
+
+    private static int[] pieces(Material material, int color) {
+        int[] pieces = new int[0];
+        for (int i = 2; i < material.men; i++) {
+            if (material.colors[i] == color)
+                pieces = append(pieces, material.types[i]);
+        }
+        return pieces;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] result = new int[array.length + 1];
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = value;
+        return result;
+    }
+
+    /**
+     * Generate the tables named on the command line.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TablebaseGenerator <directory> <signature>...");
+            return;
+        }
+
+        TablebaseGenerator generator = new TablebaseGenerator(new File(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            long start = System.nanoTime();
+            int longest = generator.generate(args[i]);
+            System.out.println(args[i] + ": longest mate " + longest + " plies, generated in "
+                    + (System.nanoTime() - start) / 1000000 + " ms");
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package chess.tablebase;
+
+/**
+ * The value of a position from the point of view of the side to move
+ */
+public class TablebaseResult {
+    static final TablebaseResult DRAW = new TablebaseResult(0, 0);
+
+    private final int outcome;
+    private final int plies;
+
+    private TablebaseResult(int outcome, int plies) {
+        this.outcome = outcome;
+        this.plies = plies;
+    }
+
+    /**
+     * Decode a stored table entry: zero for a draw, otherwise one more than the plies to mate.
+     */
+    static TablebaseResult fromCode(int code) {
+        if (code == 0)
+            return DRAW;
+        int plies = code - 1;
+        return new TablebaseResult(plies % 2 == 1 ? 1 : -1, plies);
+    }
+
+    public boolean isWin() {
+        return outcome > 0;
+    }
+
+    public boolean isLoss() {
+        return outcome < 0;
+    }
+
+    public boolean isDraw() {
+        return outcome == 0;
+    }
+
+    /**
+     * @return The number of plies until mate with best play, or 0 for a draw
+     */
+    public int getPlies() {
+        return plies;
+    }
+
+    @Override
+    public String toString() {
+        if (isDraw())
+            return "draw";
+        return (isWin() ? "win" : "loss") + " in " + plies + (plies == 1 ? " ply" : " plies");
+    }
+}
@@ -0,0 +1,169 @@
+package chess;
+
+import chess.pieces.Piece;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Allocation budgets for the hot paths.  Each test runs a path on a fixed position until it is compiled, then
+ * measures the bytes the thread allocates per call and fails if the path has grown past its budget.  A failure here
+ * means a change added garbage to code that runs for every node of a search or every command of every user.
+ */
+public class AllocationBudgetTest {
+    private static final String MIDDLEGAME = "r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w - - 0 5";
+    private static final int WARMUP = 20000;
+    private static final int CALLS = 20000;
+
+    private com.sun.management.ThreadMXBean threads;
+    private GameState state;
+
+    @Before
+    public void setUp() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        state = new GameState();
+        state.setIncrementalMoveGeneration(true);
+        state.reset();
+        state.loadFen(MIDDLEGAME);
+    }
+
+    @Test
+    public void testIncrementalGenerationAllocatesNothing() {
+        final MoveGenerator generator = state.getMoveGenerator();
+        final int from = new Position("f3").getIndex();
+        final int to = new Position("g5").getIndex();
+        assertBudget("generation", 0, new Runnable() {
+            @Override
+            public void run() {
+                Piece knight = generator.getPiece(from);
+                generator.setPiece(from, null);
+                generator.setPiece(to, knight);
+                consume(generator.getDestinations(to));
+                generator.setPiece(to, null);
+                generator.setPiece(from, knight);
+                long pieces = generator.getPieces(Player.White);
+                while (pieces != 0) {
+                    consume(generator.getDestinations(Long.numberOfTrailingZeros(pieces)));
+                    pieces &= pieces - 1;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testReferenceGeneration() {
+        final GameState reference = GameState.fromFen(MIDDLEGAME);
+        final Map<Position, Piece> pieces = reference.getGameState();
+        // The map-based generators in chess.pieces build a list per piece
+        assertBudget("reference generation", 20480, new Runnable() {
+            @Override
+            public void run() {
+                for (Map.Entry<Position, Piece> entry : pieces.entrySet()) {
+                    Piece piece = entry.getValue();
+                    consume(piece.getPossiblePositions(entry.getKey(), pieces, piece.getOwner()).size());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testValidationAllocatesNothing() {
+        final Move move = new Move(new Position("f3"), new Position("e5"));
+        final Move illegal = new Move(new Position("e1"), new Position("e2"));
+        assertBudget("validation", 0, new Runnable() {
+            @Override
+            public void run() {
+                consume(move.VerifyOrigin(state) && move.VerifyDestination(state) ? 1 : 0);
+                consume(illegal.VerifyDestination(state) ? 1 : 0);
+            }
+        });
+    }
+
+    @Test
+    public void testMakeUnmake() {
+        final Move quiet = new Move(new Position("f3"), new Position("g5"));
+        final Move capture = new Move(new Position("f3"), new Position("e5"));
+        // A move to an empty square adds an entry to the position map
+        assertBudget("make/unmake", 160, new Runnable() {
+            @Override
+            public void run() {
+                state.movePiece(quiet);
+                state.undoMove(quiet);
+                state.movePiece(capture);
+                state.undoMove(capture);
+            }
+        });
+    }
+
+    @Test
+    public void testRenderingAllocatesNothing() {
+        final BoardRenderer renderer = new BoardRenderer("\n");
+        final GameState moved = GameState.fromFen(MIDDLEGAME);
+        moved.movePiece(new Move(new Position("f3"), new Position("g5")));
+        // Alternating between the boards rewrites the cells that differ every time
+        assertBudget("rendering", 0, new Runnable() {
+            @Override
+            public void run() {
+                consume(renderer.render(moved).length);
+                consume(renderer.render(state).length);
+            }
+        });
+    }
+
+    @Test
+    public void testShowBoard() {
+        OutputStream discard = new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                consume(len);
+            }
+        };
+        final CLI cli = new CLI(new BufferedReader(new StringReader("")), new PrintStream(discard));
+        cli.startEventLoop();
+        // The board is never copied into a string; only the stream's encoder wraps the characters in a CharBuffer
+        assertBudget("show board", 64, new Runnable() {
+            @Override
+            public void run() {
+                cli.showBoard();
+            }
+        });
+    }
+
+    private long sink;
+
+    private void consume(long value) {
+        sink += value;
+    }
+
+    private void assertBudget(String path, long budget, Runnable call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < CALLS; i++) {
+            call.run();
+        }
+        long perCall = (threads.getThreadAllocatedBytes(thread) - before) / CALLS;
+        assertTrue(path + " allocated " + perCall + " bytes per call, over its budget of " + budget,
+                perCall <= budget);
+    }
+}
@@ -0,0 +1,43 @@
+package chess;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the template board renderer
+ */
+public class BoardRendererTest {
+
+    @Test
+    public void testStartingPosition() {
+        GameState state = new GameState();
+        state.reset();
+        String board = new String(new BoardRenderer("\n").render(state));
+
+        assertEquals(701, board.length());
+        assertTrue(board.contains("\n1 | r | n | b | q | k | b | n | r | 1\n"));
+        assertTrue(board.contains("\n5 |   |   |   |   |   |   |   |   | 5\n"));
+        assertTrue(board.contains("\n8 | R | N | B | Q | K | B | N | R | 8\n"));
+    }
+
+    @Test
+    public void testOnlyChangedCellsNeedUpdating() {
+        Random random = new Random(3);
+        GameState state = new GameState();
+        state.reset();
+        BoardRenderer renderer = new BoardRenderer("\n");
+        for (int ply = 0; ply < 40; ply++) {
+            String expected = new String(new BoardRenderer("\n").render(state));
+            assertEquals(expected, new String(renderer.render(state)));
+
+            List<Move> moves = state.getLegalMoves();
+            if (moves.isEmpty())
+                break;
+            state.movePiece(moves.get(random.nextInt(moves.size())));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for publishing board snapshots
+ */
+public class BoardSnapshotTest {
+    private GameState state;
+
+    @Before
+    public void setUp() {
+        state = new GameState();
+        state.reset();
+    }
+
+    @Test
+    public void testSnapshotMatchesState() {
+        assertNull("Nothing is published until asked", state.getSnapshot());
+        BoardSnapshot snapshot = state.publishSnapshot();
+        assertSame(snapshot, state.getSnapshot());
+        assertEquals(state.toFen(), snapshot.toFen());
+        assertEquals(state.getHash(), snapshot.getHash());
+        assertEquals('K', snapshot.getPieceAt(new Position("e1")));
+        assertEquals('q', snapshot.getPieceAt(new Position("d8")));
+        assertEquals(0, snapshot.getPieceAt(new Position("e4")));
+    }
+
+    @Test
+    public void testUnchangedRanksAreShared() {
+        BoardSnapshot before = state.publishSnapshot();
+        state.movePiece(new Move(new Position("e2"), new Position("e4")));
+        BoardSnapshot after = state.publishSnapshot();
+
+        for (int rank = 0; rank < 8; rank++) {
+            boolean changed = rank == 1 || rank == 3;
+            assertEquals("Rank " + (rank + 1), !changed, before.getRank(rank) == after.getRank(rank));
+        }
+        assertEquals("The old snapshot should not change", 'P', before.getPieceAt(new Position("e2")));
+        assertEquals(Player.Black, after.getCurrentPlayer());
+        assertEquals(state.toFen(), after.toFen());
+    }
+
+    @Test
+    public void testLoadFenRepublishesEverything() {
+        state.publishSnapshot();
+        state.loadFen("4k3/8/8/8/8/8/8/4K2R w - - 0 1");
+        assertEquals("4k3/8/8/8/8/8/8/4K2R w - - 0 1", state.publishSnapshot().toFen());
+    }
+
+    @Test
+    public void testReadersSeeConsistentPositions() throws Exception {
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final GameState game = state;
+        game.publishSnapshot();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20000; i++) {
+                    BoardSnapshot snapshot = game.getSnapshot();
+                    // The hash was taken with the board, so they must agree
+                    GameState copy = GameState.fromFen(snapshot.toFen());
+                    if (copy.getHash() != snapshot.getHash()) {
+                        failure.set(snapshot.toFen());
+                        return;
+                    }
+                }
+            }
+        });
+        reader.start();
+
+        Random random = new Random(3);
+        while (reader.isAlive()) {
+            List<Move> moves = game.getLegalMoves();
+            if (moves.isEmpty())
+                game.loadFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1");
+            else
+                game.movePiece(moves.get(random.nextInt(moves.size())));
+            game.publishSnapshot();
+        }
+        reader.join();
+        assertNull(failure.get());
+    }
+}
@@ -4,11 +4,15 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.List;
 
 import static junit.framework.Assert.*;
@@ -26,6 +30,8 @@ public class CLITest {
     @Mock
     private InputStream testIn;
 
+    private final List<String> printed = new ArrayList<String>();
+
     /**
      * Make sure the CLI initially prints a welcome message
      */
@@ -48,7 +54,7 @@ public class CLITest {
         runCliWithInput("help");
 
         List<String> output = captureOutput();
-        assertEquals("Should have 13 output calls", 13, output.size());
+        assertEquals("Should have 20 output calls", 20, output.size());
     }
 
     @Test
@@ -70,13 +76,123 @@ public class CLITest {
         assertEquals("It should have printed the board three times", output.get(2), output.get(4));
     }
 
-    private List<String> captureOutput() {
-        ArgumentCaptor<String> captor = ArgumentCaptor.forClass(String.class);
+    @Test
+    public void testFenCommand() throws Exception {
+        runCliWithInput("fen 4k3/8/8/8/8/8/8/4K2R b - - 3 40", "fen");
+        List<String> output = captureOutput();
+
+        assertEquals("It should have printed the loaded position", "4k3/8/8/8/8/8/8/4K2R b - - 3 40", output.get(6));
+    }
+
+    @Test
+    public void testUndoRedoAndGoto() throws Exception {
+        runCliWithInput("move e2 e4", "move e7 e5", "undo", "fen", "redo", "fen", "goto 0", "fen", "undo", "goto 3");
+        List<String> output = captureOutput();
+
+        assertTrue(output.contains("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1"));
+        assertTrue(output.contains("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w - - 0 2"));
+        assertTrue(output.contains("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1"));
+        assertTrue(output.contains("Nothing to undo"));
+        assertTrue(output.contains("Invalid ply for goto command, the game has 2 plies"));
+    }
 
-        // 9 times means we printed Welcome, the input prompt twice, and the 'help' screen
-        verify(testOut, atLeastOnce()).println(captor.capture());
+    @Test
+    public void testCheckmate() throws Exception {
+        runCliWithInput("move f2 f3", "move e7 e5", "move g2 g4", "move d8 h4");
+        List<String> output = captureOutput();
+
+        assertTrue(output.contains("Checkmate - Black WINS!"));
+    }
+
+    @Test
+    public void testMultiPvAnalysis() throws Exception {
+        runCliWithInput("fen 4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1", "multipv 2", "analyze 2", "multipv 0");
+        List<String> output = captureOutput();
 
-        return captor.getAllValues();
+        assertTrue(output.contains("depth 1 line 1 score 500 pv d1 d5"));
+        int lines = 0;
+        for (String line : output) {
+            if (line.startsWith("depth 2 line "))
+                lines++;
+        }
+        assertEquals("Two lines at depth 2", 2, lines);
+        assertTrue(output.contains("Invalid number of lines for multipv command"));
+    }
+
+    @Test
+    public void testAnalysisIsLimited() throws Exception {
+        runCliWithInput("multipv 1000", "analyze 1000");
+        List<String> output = captureOutput();
+
+        int deepest = 0;
+        int mostLines = 0;
+        for (String line : output) {
+            if (!line.startsWith("depth "))
+                continue;
+            String[] fields = line.split(" ");
+            deepest = Math.max(deepest, Integer.parseInt(fields[1]));
+            mostLines = Math.max(mostLines, Integer.parseInt(fields[3]));
+        }
+        assertTrue("The depth should be capped", deepest > 0 && deepest <= 8);
+        assertEquals("The lines should be capped", 8, mostLines);
+    }
+
+    @Test
+    public void testAnalysisWithoutTable() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream("fen 4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1\nanalyze 1\n".getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CLI cli = new CLI(in, new PrintStream(out, true));
+        cli.setAnalysisTableEntries(0);
+        cli.startEventLoop();
+
+        assertTrue(out.toString().contains("depth 1 line 1 score 500 pv d1 d5"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAnalysisTableMustBePowerOfTwo() {
+        new CLI(new ByteArrayInputStream(new byte[0]), new PrintStream(new ByteArrayOutputStream()))
+                .setAnalysisTableEntries(1000);
+    }
+
+    @Test
+    public void testBatchMode() throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream("move e2 e4\nfen\nboard\nquit\n".getBytes());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CLI cli = new CLI(in, new PrintStream(out, true));
+        cli.setBatchMode(0);
+        cli.startEventLoop();
+
+        String[] lines = out.toString().split("\\r?\\n");
+        assertEquals("Welcome to Chess!", lines[0]);
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1", lines[1]);
+        assertFalse("No prompts in batch mode", out.toString().contains("> "));
+        int boards = 0;
+        for (String line : lines) {
+            if (line.startsWith("8 |"))
+                boards++;
+        }
+        assertEquals("Only the board command shows the board", 1, boards);
+        assertEquals("Goodbye!", lines[lines.length - 1]);
+    }
+
+    @Test
+    public void testMainRejectsUnknownArguments() throws Exception {
+        PrintStream err = System.err;
+        ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(captured, true));
+        try {
+            // Would throw FileNotFoundException if it were opened as a script
+            CLI.main(new String[] {"no-such-script.txt"});
+        } finally {
+            System.setErr(err);
+        }
+        assertTrue(captured.toString().contains("Unknown argument: no-such-script.txt"));
+        assertTrue(captured.toString().contains("Usage: CLI"));
+    }
+
+    private List<String> captureOutput() {
+        assertFalse("The CLI should have printed something", printed.isEmpty());
+        return printed;
     }
 
     private CLI runCliWithInput(String... inputLines) {
@@ -85,6 +201,18 @@ public class CLITest {
             builder.append(line).append(System.getProperty("line.separator"));
         }
 
+        // Lines are printed as strings, and the board straight from its character buffer
+        Answer<Void> record = new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                Object line = invocation.getArguments()[0];
+                printed.add(line instanceof char[] ? new String((char[]) line) : (String) line);
+                return null;
+            }
+        };
+        doAnswer(record).when(testOut).println(anyString());
+        doAnswer(record).when(testOut).println(any(char[].class));
+
         ByteArrayInputStream in = new ByteArrayInputStream(builder.toString().getBytes());
         CLI cli = new CLI(in, testOut);
         cli.startEventLoop();
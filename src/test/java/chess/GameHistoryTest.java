@@ -0,0 +1,122 @@
+package chess;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the game history
+ */
+public class GameHistoryTest {
+    private GameState state;
+    private GameHistory history;
+    private List<String> positions;
+
+    @Before
+    public void setUp() {
+        state = new GameState();
+        state.reset();
+        history = new GameHistory(4);
+        history.start(state);
+        positions = new ArrayList<String>();
+        positions.add(state.toFen());
+
+        // A long random game, so that the jumps cross many snapshots
+        Random random = new Random(7);
+        for (int i = 0; i < 100; i++) {
+            List<Move> moves = state.getLegalMoves();
+            if (moves.isEmpty())
+                break;
+            Move move = moves.get(random.nextInt(moves.size()));
+            state.movePiece(move);
+            history.record(state, move);
+            positions.add(state.toFen());
+        }
+    }
+
+    @Test
+    public void testGotoAnyPly() {
+        int[] targets = {0, 57, 3, 4, 5, history.getLength(), 12, 13, 1};
+        for (int target : targets) {
+            history.goTo(state, target);
+            assertEquals(target, history.getPly());
+            assertEquals(positions.get(target), state.toFen());
+        }
+    }
+
+    @Test
+    public void testUndoRedo() {
+        int length = history.getLength();
+        for (int i = 0; i < 10; i++) {
+            history.undo(state);
+        }
+        assertEquals(positions.get(length - 10), state.toFen());
+        assertTrue(history.canRedo());
+
+        history.redo(state);
+        assertEquals(positions.get(length - 9), state.toFen());
+        assertEquals("Undone moves are kept", length, history.getLength());
+    }
+
+    @Test
+    public void testSameMoveKeepsRedo() {
+        int length = history.getLength();
+        history.goTo(state, 6);
+        history.goTo(state, 7);
+        String fen = state.toFen();
+        history.goTo(state, 6);
+
+        // Play the taken back move by hand rather than with redo
+        List<Move> moves = state.getLegalMoves();
+        for (Move move : moves) {
+            GameState copy = GameState.fromFen(state.toFen());
+            copy.movePiece(move);
+            if (copy.toFen().equals(fen)) {
+                state.movePiece(move);
+                history.record(state, move);
+                break;
+            }
+        }
+
+        assertEquals(7, history.getPly());
+        assertEquals("The moves after it are kept", length, history.getLength());
+        history.goTo(state, length);
+        assertEquals(positions.get(length), state.toFen());
+    }
+
+    @Test
+    public void testNewMoveForgetsRedo() {
+        history.goTo(state, 6);
+        history.goTo(state, 7);
+        String next = state.toFen();
+        history.goTo(state, 6);
+        Move move = null;
+        for (Move candidate : state.getLegalMoves()) {
+            GameState copy = GameState.fromFen(state.toFen());
+            copy.movePiece(candidate);
+            if (!copy.toFen().equals(next)) {
+                move = candidate;
+                break;
+            }
+        }
+        state.movePiece(move);
+        history.record(state, move);
+        String fen = state.toFen();
+
+        assertEquals(7, history.getLength());
+        assertFalse(history.canRedo());
+        history.goTo(state, 0);
+        history.goTo(state, 7);
+        assertEquals(fen, state.toFen());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGotoOutOfRange() {
+        history.goTo(state, history.getLength() + 1);
+    }
+}
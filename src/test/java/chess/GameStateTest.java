@@ -1,11 +1,17 @@
 package chess;
 
+import chess.pieces.King;
+import chess.pieces.Pawn;
 import chess.pieces.Piece;
 import chess.pieces.Queen;
 import chess.pieces.Rook;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static junit.framework.Assert.*;
 
 /**
@@ -49,4 +55,221 @@ public class GameStateTest {
         assertTrue("A queen should be at d8", blackQueen instanceof Queen);
         assertEquals("The queen at d8 should be owned by Black", Player.Black, blackQueen.getOwner());
     }
+
+    @Test
+    public void testToFenOfInitialGame() {
+        state.reset();
+
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1", state.toFen());
+    }
+
+    @Test
+    public void testFromFen() {
+        GameState fenState = GameState.fromFen("4k3/8/8/3p4/8/8/8/4K3 b - - 12 57");
+
+        assertEquals("Black should be on move", Player.Black, fenState.getCurrentPlayer());
+        assertEquals("The halfmove clock should be read", 12, fenState.getHalfmoveClock());
+        assertEquals("The fullmove number should be read", 57, fenState.getFullmoveNumber());
+        assertEquals("There should be three pieces", 3, fenState.getGameState().size());
+
+        Piece pawn = fenState.getPieceAt("d5");
+        assertTrue("A pawn should be at d5", pawn instanceof Pawn);
+        assertEquals("The pawn at d5 should be owned by Black", Player.Black, pawn.getOwner());
+
+        Piece king = fenState.getPieceAt("e1");
+        assertTrue("A king should be at e1", king instanceof King);
+        assertEquals("The king at e1 should be owned by White", Player.White, king.getOwner());
+    }
+
+    @Test
+    public void testFenRoundTripAfterMoves() {
+        state.reset();
+        state.movePiece(new Move(new Position("e2"), new Position("e4")));
+        state.movePiece(new Move(new Position("g8"), new Position("f6")));
+        state.movePiece(new Move(new Position("g1"), new Position("f3")));
+
+        String fen = state.toFen();
+        assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/5N2/PPPP1PPP/RNBQKB1R b - - 2 2", fen);
+        assertEquals("The FEN should survive a round trip", fen, GameState.fromFen(fen).toFen());
+    }
+
+    @Test
+    public void testLegalMoveIndex() {
+        state.reset();
+        Random random = new Random(11);
+        for (int ply = 0; ply < 60; ply++) {
+            List<Move> moves = state.getLegalMoves();
+            for (int i = 0; i < moves.size(); i++) {
+                assertEquals(i, state.getLegalMoveIndex(moves.get(i)));
+                assertEquals(moves.get(i), state.getLegalMove(i));
+            }
+            assertNull(state.getLegalMove(moves.size()));
+            if (moves.isEmpty())
+                break;
+            state.movePiece(moves.get(random.nextInt(moves.size())));
+        }
+        assertEquals(-1, GameState.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1")
+                .getLegalMoveIndex(new Move(new Position("e1"), new Position("e3"))));
+    }
+
+    @Test
+    public void testFromEpd() {
+        GameState epdState = GameState.fromFen("4k3/8/8/8/8/8/8/4K3 w - -");
+
+        assertEquals("The halfmove clock should default to 0", 0, epdState.getHalfmoveClock());
+        assertEquals("The fullmove number should default to 1", 1, epdState.getFullmoveNumber());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromFenRejectsShortRank() {
+        GameState.fromFen("4k3/8/8/8/8/8/8/4K2 w - - 0 1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromFenRejectsUnknownPiece() {
+        GameState.fromFen("4k3/8/8/8/8/8/8/4K2X w - - 0 1");
+    }
+
+    @Test
+    public void testHashFollowsMoves() {
+        state.reset();
+        long initial = state.getHash();
+        state.movePiece(new Move(new Position("g1"), new Position("f3")));
+        state.movePiece(new Move(new Position("g8"), new Position("f6")));
+        state.movePiece(new Move(new Position("f3"), new Position("g1")));
+        state.movePiece(new Move(new Position("f6"), new Position("g8")));
+
+        assertEquals("Returning to a position should restore its hash", initial, state.getHash());
+        assertEquals("The hash should match a freshly loaded position",
+                GameState.fromFen(state.toFen()).getHash(), state.getHash());
+    }
+
+    @Test
+    public void testHashCoversSideToMove() {
+        GameState white = GameState.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1");
+        GameState black = GameState.fromFen("4k3/8/8/8/8/8/8/4K3 b - - 0 1");
+
+        assertFalse("The side to move should change the hash", white.getHash() == black.getHash());
+    }
+
+    @Test
+    public void testUndoMove() {
+        state.reset();
+        Move push = new Move(new Position("e2"), new Position("e4"));
+        Move reply = new Move(new Position("d7"), new Position("d5"));
+        Move capture = new Move(new Position("e4"), new Position("d5"));
+        state.movePiece(push);
+        state.movePiece(reply);
+        String fen = state.toFen();
+        long hash = state.getHash();
+
+        state.movePiece(capture);
+        state.undoMove(capture);
+
+        assertEquals("Undoing a capture should restore the position", fen, state.toFen());
+        assertEquals("Undoing a capture should restore the hash", hash, state.getHash());
+
+        state.undoMove(reply);
+        state.undoMove(push);
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1", state.toFen());
+    }
+
+    @Test
+    public void testLegalMovesAvoidCheck() {
+        GameState pinned = GameState.fromFen("4k3/4r3/8/8/8/8/4B3/4K3 w - - 0 1");
+
+        assertFalse("White should not be in check", pinned.isInCheck(Player.White));
+        for (Move move : pinned.getLegalMoves()) {
+            assertFalse("The pinned bishop may not move", move.getOrigin().equals(new Position("e2")));
+        }
+        assertEquals("Only king moves are legal", 4, pinned.getLegalMoves().size());
+    }
+
+    @Test
+    public void testLegalMoveCache() {
+        GameState pinned = GameState.fromFen("4k3/4r3/8/8/8/8/4B3/4K3 w - - 0 1");
+        assertEquals("A pinned piece has no legal destinations", 0, pinned.getLegalDestinations(new Position("e2")));
+        assertFalse(new Move(new Position("e2"), new Position("d3")).VerifyOrigin(pinned));
+        assertTrue(new Move(new Position("e1"), new Position("d1")).VerifyDestination(pinned));
+        assertFalse("Black's pieces are not the current player's",
+                new Move(new Position("e7"), new Position("e6")).VerifyOrigin(pinned));
+
+        // Moving the king out of the pin frees the bishop
+        pinned.movePiece(new Move(new Position("e1"), new Position("d1")));
+        pinned.movePiece(new Move(new Position("e8"), new Position("d8")));
+        long destinations = pinned.getLegalDestinations(new Position("e2"));
+        assertTrue((destinations & 1L << new Position("d3").getIndex()) != 0);
+        assertTrue(pinned.hasLegalMoves());
+    }
+
+    @Test
+    public void testLegalMovesMatchFilteredPossibleMoves() {
+        Random random = new Random(11);
+        state.reset();
+        for (int ply = 0; ply < 60; ply++) {
+            List<Move> expected = new ArrayList<Move>();
+            Player player = state.getCurrentPlayer();
+            for (Move move : state.getPossibleMoves()) {
+                state.movePiece(move);
+                if (!state.isInCheck(player))
+                    expected.add(move);
+                state.undoMove(move);
+            }
+
+            assertEquals(expected, state.getLegalMoves());
+            assertEquals("The cached list should be the same", expected, state.getLegalMoves());
+            if (expected.isEmpty())
+                break;
+            state.movePiece(expected.get(random.nextInt(expected.size())));
+        }
+    }
+
+    @Test
+    public void testPieceListsFollowTheBoard() {
+        Random random = new Random(17);
+        state.reset();
+        assertEquals(new Position("e1"), state.getKingPosition(Player.White));
+        assertEquals(new Position("e8"), state.getKingPosition(Player.Black));
+        assertEquals(8, state.getPieceCount(Player.Black, 0));
+
+        List<Move> played = new ArrayList<Move>();
+        for (int ply = 0; ply < 80; ply++) {
+            assertPieceListsMatch(state);
+            List<Move> moves = state.getLegalMoves();
+            if (moves.isEmpty())
+                break;
+            Move move = moves.get(random.nextInt(moves.size()));
+            state.movePiece(move);
+            played.add(move);
+        }
+        for (int i = played.size() - 1; i >= 0; i--) {
+            state.undoMove(played.get(i));
+            assertPieceListsMatch(state);
+        }
+
+        state.loadFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+        assertPieceListsMatch(state);
+        assertEquals(0, state.getPieceCount(Player.White, 0));
+        assertEquals(new Position("a1").getIndex(), state.getPieceSquare(Player.White, 3, 0));
+    }
+
+    private static void assertPieceListsMatch(GameState state) {
+        for (Player player : Player.values()) {
+            long expected = 0;
+            for (int i = 0; i < 64; i++) {
+                Piece piece = state.getPieceAt(Position.fromIndex(i));
+                if (piece != null && piece.getOwner() == player)
+                    expected |= 1L << i;
+            }
+            assertEquals(state.toFen(), expected, state.getPieceMask(player));
+
+            for (int type = 0; type < 6; type++) {
+                for (int i = 0; i < state.getPieceCount(player, type); i++) {
+                    Piece piece = state.getPieceAt(Position.fromIndex(state.getPieceSquare(player, type, i)));
+                    assertEquals(type, Zobrist.type(piece));
+                    assertEquals(player, piece.getOwner());
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,86 @@
+package chess;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the incremental move generator
+ */
+public class MoveGeneratorTest {
+
+    @Test
+    public void testMatchesPieceGeneratorInRandomGames() {
+        Random random = new Random(5);
+        for (int game = 0; game < 20; game++) {
+            GameState reference = new GameState();
+            reference.reset();
+            GameState incremental = new GameState();
+            incremental.setIncrementalMoveGeneration(true);
+            incremental.reset();
+
+            List<Move> played = new ArrayList<Move>();
+            for (int ply = 0; ply < 80; ply++) {
+                List<Move> expected = reference.getPossibleMoves();
+                assertEquals(reference.toFen(), expected, incremental.getPossibleMoves());
+                assertEquals(reference.isInCheck(Player.White), incremental.isInCheck(Player.White));
+                assertEquals(reference.isInCheck(Player.Black), incremental.isInCheck(Player.Black));
+                if (expected.isEmpty())
+                    break;
+
+                Move move = expected.get(random.nextInt(expected.size()));
+                reference.movePiece(move);
+                Move copy = new Move(move.getOrigin(), move.getDestination());
+                incremental.movePiece(copy);
+                played.add(copy);
+            }
+
+            // Taking the moves back must restore the moves too
+            for (int i = played.size() - 1; i >= 0; i--) {
+                incremental.undoMove(played.get(i));
+            }
+            GameState start = new GameState();
+            start.reset();
+            assertEquals(start.getPossibleMoves(), incremental.getPossibleMoves());
+        }
+    }
+
+    @Test
+    public void testOnlyAffectedPiecesAreRecomputed() {
+        GameState state = new GameState();
+        state.setIncrementalMoveGeneration(true);
+        state.reset();
+        MoveGenerator generator = state.getMoveGenerator();
+
+        long before = generator.getRecomputed();
+        state.movePiece(new Move(new Position("g1"), new Position("f3")));
+        long recomputed = generator.getRecomputed() - before;
+        assertTrue("Only the knight and the pieces next to its squares, not all 32: " + recomputed, recomputed < 10);
+    }
+
+    @Test
+    public void testLoadFenRebuilds() {
+        GameState state = new GameState();
+        state.setIncrementalMoveGeneration(true);
+        state.reset();
+        state.loadFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+
+        assertEquals(GameState.fromFen(state.toFen()).getPossibleMoves(), state.getPossibleMoves());
+    }
+
+    @Test
+    public void testBlockedBishopKeepsOtherDiagonals() {
+        GameState state = GameState.fromFen("4k3/8/8/8/8/4P3/3B4/4K3 w - - 0 1");
+        int moves = 0;
+        for (Move move : state.getPossibleMoves()) {
+            if (move.getOrigin().equals(new Position("d2")))
+                moves++;
+        }
+        // The pawn on e3 blocks the first diagonal, which must not hide c1, c3, b4 and a5
+        assertEquals(4, moves);
+    }
+}
@@ -0,0 +1,157 @@
+package chess.analysis;
+
+import chess.GameState;
+import chess.Player;
+import chess.engine.ClassicEvaluator;
+import chess.engine.Evaluator;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the batch analysis pipeline
+ */
+public class AnalysisPipelineTest {
+    private static final String BACK_RANK = "6k1/5ppp/8/8/8/8/8/R5K1 w - -";
+
+    @Test
+    public void testResultsInInputOrder() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            input.append(BACK_RANK).append(" id \"p").append(i).append("\";\n");
+        }
+        AnalysisPipeline pipeline = pipeline();
+        pipeline.setThreads(4);
+        pipeline.setMaxPending(2);
+
+        String[] lines = run(pipeline, input.toString()).split("\n");
+        assertEquals(20, lines.length);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(lines[i], lines[i].startsWith("p" + i + "\t"));
+        }
+    }
+
+    @Test
+    public void testBestMoveChecked() throws Exception {
+        String input = BACK_RANK + " bm Ra8#; id \"solved\";\n"
+                + BACK_RANK + " bm Kf1; id \"unsolved\";\n"
+                + BACK_RANK + " am Ra8#; id \"avoided\";\n";
+        AnalysisPipeline pipeline = pipeline();
+        StringWriter out = new StringWriter();
+        AnalysisReport report = pipeline.run(new BufferedReader(new StringReader(input)), out);
+
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[0], lines[0].startsWith("solved\tRa8\t"));
+        assertTrue(lines[0], lines[0].endsWith("\tsolved"));
+        assertTrue(lines[1], lines[1].endsWith("\tunsolved"));
+        assertTrue(lines[2], lines[2].endsWith("\tunsolved"));
+        assertEquals(1, report.getSolved());
+        assertEquals(2, report.getUnsolved());
+    }
+
+    @Test
+    public void testFenAndErrors() throws Exception {
+        String input = "# comment\n\n"
+                + "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1\n"
+                + "not a position\n";
+        AnalysisPipeline pipeline = pipeline();
+        StringWriter out = new StringWriter();
+        AnalysisReport report = pipeline.run(new BufferedReader(new StringReader(input)), out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue("Ids default to the line number", lines[0].startsWith("3\t"));
+        assertTrue(lines[1], lines[1].startsWith("4\terror\t"));
+        assertEquals(2, report.getPositions());
+        assertEquals(1, report.getErrors());
+        assertTrue(report.getLatencyMillis(50) <= report.getLatencyMillis(100));
+        assertTrue(report.getPositionsPerSecond() > 0);
+    }
+
+    @Test
+    public void testFailingSearchOnlySpoilsItsLine() throws Exception {
+        AnalysisPipeline pipeline = new AnalysisPipeline(new Supplier<Evaluator>() {
+            @Override
+            public Evaluator get() {
+                return new Evaluator() {
+                    @Override
+                    public int evaluate(GameState state) {
+                        if (state.getPieceCount(Player.White, 4) > 0)
+                            throw new IllegalStateException("no queens");
+                        return 0;
+                    }
+                };
+            }
+        });
+        pipeline.setDepth(1);
+        pipeline.setThreads(2);
+        StringWriter out = new StringWriter();
+        AnalysisReport report = pipeline.run(new BufferedReader(new StringReader(
+                "6k1/8/8/8/8/8/8/Q5K1 w - - id \"queen\";\n" + BACK_RANK + " id \"rook\";\n")), out);
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("queen\terror\t"));
+        assertTrue(lines[0], lines[0].contains("no queens"));
+        assertTrue(lines[1], lines[1].startsWith("rook\tR"));
+        assertEquals(1, report.getErrors());
+    }
+
+    @Test
+    public void testTimeLimit() throws Exception {
+        AnalysisPipeline pipeline = pipeline();
+        pipeline.setDepth(50);
+        pipeline.setTimeLimit(100);
+
+        long start = System.currentTimeMillis();
+        String line = run(pipeline, "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - -\n");
+        assertTrue("The search should stop near the time limit", System.currentTimeMillis() - start < 5000);
+        assertFalse(line, line.contains("error"));
+    }
+
+    @Test
+    public void testParseEpdOperations() {
+        List<String> operations = new ArrayList<String>();
+        AnalysisPipeline.parse(BACK_RANK + " bm Ra8#; id \"semi;colon\"; c0 comment", operations);
+        assertEquals(3, operations.size());
+        assertEquals("bm Ra8#", operations.get(0));
+        assertEquals("id \"semi;colon\"", operations.get(1));
+        assertEquals("c0 comment", operations.get(2));
+    }
+
+    @Test
+    public void testReportLatencies() {
+        AnalysisReport report = new AnalysisReport();
+        for (int i = 1; i <= 100000; i++) {
+            report.addPosition(i * 1000L, false, null);
+        }
+        assertEquals(100000, report.getPositions());
+        assertEquals(50, report.getLatencyMillis(50), 50 * 0.125);
+        assertEquals(100, report.getLatencyMillis(100), 1e-9);
+    }
+
+    private static AnalysisPipeline pipeline() {
+        AnalysisPipeline pipeline = new AnalysisPipeline(new Supplier<Evaluator>() {
+            @Override
+            public Evaluator get() {
+                return new ClassicEvaluator();
+            }
+        });
+        pipeline.setThreads(2);
+        pipeline.setDepth(3);
+        return pipeline;
+    }
+
+    private static String run(AnalysisPipeline pipeline, String input) throws Exception {
+        StringWriter out = new StringWriter();
+        pipeline.run(new BufferedReader(new StringReader(input)), out);
+        return out.toString();
+    }
+}
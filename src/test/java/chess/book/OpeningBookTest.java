@@ -0,0 +1,166 @@
+package chess.book;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+import chess.pgn.PgnGame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for building and probing the opening book
+ */
+public class OpeningBookTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testBuildAndProbe() throws Exception {
+        OpeningBookBuilder builder = new OpeningBookBuilder(4, 1);
+        builder.addGame(game("1-0", "e2", "e4", "e7", "e5"));
+        builder.addGame(game("1-0", "e2", "e4", "c7", "c5"));
+        builder.addGame(game("1/2-1/2", "d2", "d4", "d7", "d5"));
+        builder.addGame(game("*", "c2", "c4"));
+
+        File bookFile = folder.newFile("book.bin");
+        builder.write(bookFile);
+        assertEquals("Only moves that scored should be written", 3 * OpeningBook.ENTRY_SIZE, bookFile.length());
+
+        OpeningBook book = OpeningBook.open(bookFile);
+        try {
+            GameState state = new GameState();
+            state.reset();
+
+            List<BookMove> moves = book.getMoves(state);
+            assertEquals("Unfinished games should not be in the book", 2, moves.size());
+            assertEquals(move("e2", "e4"), moves.get(0).getMove());
+            assertEquals("Two wins score four", 4, moves.get(0).getWeight());
+            assertEquals(move("d2", "d4"), moves.get(1).getMove());
+            assertEquals("A draw scores one", 1, moves.get(1).getWeight());
+
+            state.movePiece(move("e2", "e4"));
+            assertEquals("Black's losing replies score nothing", 0, book.getMoves(state).size());
+
+            state.movePiece(move("e7", "e5"));
+            assertTrue("Positions past the book should have no moves", book.getMoves(state).isEmpty());
+        } finally {
+            book.close();
+        }
+    }
+
+    @Test
+    public void testPickMoveFollowsWeights() throws Exception {
+        OpeningBookBuilder builder = new OpeningBookBuilder(1, 1);
+        for (int i = 0; i < 3; i++) {
+            builder.addGame(game("1-0", "e2", "e4"));
+        }
+        builder.addGame(game("1/2-1/2", "g1", "f3"));
+        File bookFile = folder.newFile("weights.bin");
+        builder.write(bookFile);
+
+        OpeningBook book = OpeningBook.open(bookFile);
+        try {
+            GameState state = new GameState();
+            state.reset();
+
+            Random random = new Random(1);
+            int kingPawn = 0;
+            for (int i = 0; i < 700; i++) {
+                if (move("e2", "e4").equals(book.pickMove(state, random)))
+                    kingPawn++;
+            }
+            assertTrue("e4 should be picked about six times in seven", kingPawn > 550 && kingPawn < 650);
+        } finally {
+            book.close();
+        }
+    }
+
+    @Test
+    public void testPolyglotKeys() {
+        // The keys published with the Polyglot book format
+        GameState state = new GameState();
+        state.reset();
+        assertEquals(0x463b96181691fc9cL, PolyglotKey.key(state));
+
+        String[] squares = {"e2", "e4", "d7", "d5", "e4", "e5", "f7", "f5", "e1", "e2", "e8", "f7"};
+        long[] keys = {0x823c9b50fd114196L, 0x0756b94461c50fb0L, 0x662fafb965db29d4L, 0x22a48b5a8e47ff78L,
+                0x652a607ca3f242c1L, 0x00fdd303c946bdd9L};
+        int castling = PolyglotKey.castlingRights(state);
+        for (int i = 0; i < keys.length; i++) {
+            Move move = move(squares[2 * i], squares[2 * i + 1]);
+            state.movePiece(move);
+            castling = PolyglotKey.updateCastling(castling, move);
+            assertEquals("Key after " + move, keys[i],
+                    PolyglotKey.key(state, castling, PolyglotKey.enPassantFile(state, move)));
+        }
+        assertEquals("Kings off their squares lose their rights", 0, PolyglotKey.castlingRights(state));
+    }
+
+    @Test
+    public void testBooksUsePolyglotKeys() throws Exception {
+        OpeningBookBuilder builder = new OpeningBookBuilder(1, 1);
+        builder.addGame(game("1-0", "e2", "e4"));
+        File bookFile = folder.newFile("polyglot.bin");
+        builder.write(bookFile);
+
+        DataInputStream in = new DataInputStream(new FileInputStream(bookFile));
+        try {
+            assertEquals(0x463b96181691fc9cL, in.readLong());
+            assertEquals("e2e4 as Polyglot packs it", 12 << 6 | 28, in.readShort());
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testIllegalBookMovesAreLeftOut() throws Exception {
+        // The knight is pinned, so only the king's move can be played
+        GameState state = GameState.fromFen("4k3/4r3/8/8/8/8/4N3/4K3 w - - 0 1");
+        File bookFile = folder.newFile("pinned.bin");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(bookFile));
+        try {
+            for (int code : new int[] {12 << 6 | 18, 4 << 6 | 3}) {
+                out.writeLong(PolyglotKey.key(state));
+                out.writeShort(code);
+                out.writeShort(1);
+                out.writeInt(0);
+            }
+        } finally {
+            out.close();
+        }
+
+        OpeningBook book = OpeningBook.open(bookFile);
+        try {
+            List<BookMove> moves = book.getMoves(state);
+            assertEquals(1, moves.size());
+            assertEquals(move("e1", "d1"), moves.get(0).getMove());
+        } finally {
+            book.close();
+        }
+    }
+
+    private static PgnGame game(String result, String... squares) {
+        PgnGame game = new PgnGame();
+        for (int i = 0; i < squares.length; i += 2) {
+            game.addMove(move(squares[i], squares[i + 1]));
+        }
+        game.setResult(result);
+        return game;
+    }
+
+    private static Move move(String from, String to) {
+        return new Move(new Position(from), new Position(to));
+    }
+}
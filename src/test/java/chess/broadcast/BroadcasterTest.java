@@ -0,0 +1,168 @@
+package chess.broadcast;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for broadcasting a game to spectators
+ */
+public class BroadcasterTest {
+    // Knights out and back, which can be repeated forever
+    private static final String[] SHUFFLE = {"g1 f3", "g8 f6", "f3 g1", "f6 g8"};
+
+    private GameState game;
+    private Broadcaster broadcaster;
+
+    @Before
+    public void setUp() {
+        game = new GameState();
+        game.reset();
+        broadcaster = new Broadcaster(8);
+        broadcaster.gameStarted(game);
+    }
+
+    @Test
+    public void testSnapshotOnJoinThenDeltas() {
+        Subscription subscription = broadcaster.subscribe();
+        play(3);
+
+        GameState spectator = new GameState();
+        assertEquals(3, follow(subscription, spectator));
+        assertEquals(game.getHash(), spectator.getHash());
+        assertNull("Nothing new to send", subscription.poll());
+
+        play(1);
+        BoardUpdate update = subscription.poll();
+        assertFalse(update.isSnapshot());
+        assertEquals(4, update.getSequence());
+        assertEquals(game.getFullmoveNumber(), update.getFullmoveNumber());
+    }
+
+    @Test
+    public void testSlowSubscriberResyncs() {
+        GameState spectator = new GameState();
+        Subscription subscription = broadcaster.subscribe();
+        follow(subscription, spectator);
+
+        play(20);
+        BoardUpdate first = subscription.poll();
+        assertTrue("An overwritten update should be replaced by a snapshot", first.isSnapshot());
+        spectator.loadFen(first.getFen());
+        follow(subscription, spectator);
+
+        assertEquals(game.getHash(), spectator.getHash());
+        assertEquals(1, subscription.getResyncs());
+        assertTrue(subscription.getSkipped() > 0);
+    }
+
+    @Test
+    public void testNewGameIsBroadcast() {
+        Subscription subscription = broadcaster.subscribe();
+        play(2);
+        game.loadFen("4k3/8/8/8/8/8/8/4K2R w - - 0 1");
+        broadcaster.gameStarted(game);
+
+        GameState spectator = new GameState();
+        follow(subscription, spectator);
+        assertEquals(game.getHash(), spectator.getHash());
+    }
+
+    @Test
+    public void testConcurrentSubscribers() throws Exception {
+        final int moves = 20000;
+        final Subscription[] subscriptions = new Subscription[4];
+        final long[] hashes = new long[subscriptions.length];
+        Thread[] threads = new Thread[subscriptions.length];
+        for (int i = 0; i < subscriptions.length; i++) {
+            subscriptions[i] = broadcaster.subscribe();
+            final int subscriber = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    GameState spectator = new GameState();
+                    while (true) {
+                        BoardUpdate update = subscriptions[subscriber].poll();
+                        if (update == null) {
+                            Thread.yield();
+                            continue;
+                        }
+                        apply(update, spectator);
+                        if (update.getSequence() == moves) {
+                            hashes[subscriber] = spectator.getHash();
+                            return;
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        play(moves);
+        for (Thread thread : threads) {
+            thread.join(30000);
+        }
+        for (long hash : hashes) {
+            assertEquals(game.getHash(), hash);
+        }
+    }
+
+    @Test
+    public void testEncoding() {
+        play(1);
+        Subscription subscription = broadcaster.subscribe();
+        BoardUpdate snapshot = subscription.poll();
+        play(1);
+        BoardUpdate delta = subscription.poll();
+
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        delta.put(buffer);
+        assertEquals(BoardUpdate.DELTA_SIZE, buffer.position());
+        snapshot.put(buffer);
+        buffer.flip();
+
+        BoardUpdate decoded = BoardUpdate.get(buffer);
+        assertEquals(delta.getSequence(), decoded.getSequence());
+        assertEquals(delta.getOrigin(), decoded.getOrigin());
+        assertEquals(delta.getDestination(), decoded.getDestination());
+        assertEquals(delta.getHash(), decoded.getHash());
+        assertEquals(delta.getHalfmoveClock(), decoded.getHalfmoveClock());
+        assertEquals(BoardUpdate.get(buffer).getFen(), snapshot.getFen());
+    }
+
+    private void play(int plies) {
+        for (int i = 0; i < plies; i++) {
+            String[] squares = SHUFFLE[(int) (broadcaster.getSequence() % SHUFFLE.length)].split(" ");
+            Move move = new Move(new Position(squares[0]), new Position(squares[1]));
+            game.movePiece(move);
+            broadcaster.movePlayed(game, move);
+        }
+    }
+
+    private static int follow(Subscription subscription, GameState spectator) {
+        int deltas = 0;
+        BoardUpdate update;
+        while ((update = subscription.poll()) != null) {
+            apply(update, spectator);
+            if (!update.isSnapshot())
+                deltas++;
+        }
+        return deltas;
+    }
+
+    private static void apply(BoardUpdate update, GameState spectator) {
+        if (update.isSnapshot()) {
+            spectator.loadFen(update.getFen());
+        } else {
+            spectator.movePiece(new Move(Position.fromIndex(update.getOrigin()),
+                    Position.fromIndex(update.getDestination())));
+            assertEquals(update.getHash(), spectator.getHash());
+        }
+    }
+}
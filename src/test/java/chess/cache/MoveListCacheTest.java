@@ -0,0 +1,147 @@
+package chess.cache;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the shared legal move cache
+ */
+public class MoveListCacheTest {
+    private static final long[] BOARD = {1L << 12, 0, 0};
+
+    @After
+    public void tearDown() {
+        GameState.setSharedMoveCache(null);
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        MoveListCache cache = new MoveListCache(1024 * 1024, 4);
+        assertNull(cache.get(42, BOARD, BOARD.length));
+        cache.put(42, new CachedMoveList(new short[] {12 << 6 | 28}, CachedMoveList.ONGOING, BOARD));
+
+        CachedMoveList list = cache.get(42, BOARD, BOARD.length);
+        assertEquals(1, list.size());
+        assertEquals(12 << 6 | 28, list.getMove(0));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+        assertTrue(cache.getFootprint() > 0);
+    }
+
+    @Test
+    public void testCollidingPositionIsAMiss() {
+        MoveListCache cache = new MoveListCache(1024 * 1024, 4);
+        cache.put(42, new CachedMoveList(new short[] {12 << 6 | 28}, CachedMoveList.ONGOING, BOARD));
+        long[] other = {1L << 13, 0, 0};
+        assertNull(cache.get(42, other, other.length));
+        assertEquals(1, cache.getMisses());
+
+        // A game whose hash collides with a cached list works its moves out itself
+        GameState.setSharedMoveCache(cache);
+        GameState state = new GameState();
+        state.reset();
+        cache.put(state.getHash(), new CachedMoveList(new short[] {12 << 6 | 28}, CachedMoveList.ONGOING, BOARD));
+        assertEquals(20, state.getLegalMoves().size());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        CachedMoveList list = new CachedMoveList(new short[20], CachedMoveList.ONGOING, BOARD);
+        MoveListCache cache = new MoveListCache(list.getFootprint() * 3, 1);
+        cache.put(1, list);
+        cache.put(2, list);
+        cache.put(3, list);
+        cache.get(1, BOARD, BOARD.length);
+        cache.put(4, list);
+
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull("The least recently used list should go", cache.get(2, BOARD, BOARD.length));
+        assertNotNull(cache.get(1, BOARD, BOARD.length));
+        assertTrue(cache.getFootprint() <= list.getFootprint() * 3);
+    }
+
+    @Test
+    public void testGamesShareLegalMoves() {
+        MoveListCache cache = new MoveListCache(1024 * 1024);
+        GameState.setSharedMoveCache(cache);
+
+        GameState first = new GameState();
+        first.reset();
+        List<Move> expected = first.getLegalMoves();
+        assertEquals(0, cache.getHits());
+
+        GameState second = new GameState();
+        second.reset();
+        assertEquals(expected, second.getLegalMoves());
+        assertEquals("The second game should not generate moves", 1, cache.getHits());
+    }
+
+    @Test
+    public void testCachedStatus() {
+        MoveListCache cache = new MoveListCache(1024 * 1024);
+        GameState.setSharedMoveCache(cache);
+
+        String mate = "rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w - - 1 3";
+        assertTrue(GameState.fromFen(mate).isCheckmate());
+        GameState again = GameState.fromFen(mate);
+        assertTrue(again.isCheckmate());
+        assertFalse(again.hasLegalMoves());
+        assertEquals(1, cache.getHits());
+
+        assertTrue(GameState.fromFen("7k/5Q2/6K1/8/8/8/8/8 b - - 0 1").isStalemate());
+    }
+
+    @Test
+    public void testConcurrentGames() throws Exception {
+        final MoveListCache cache = new MoveListCache(64 * 1024, 8);
+        GameState.setSharedMoveCache(cache);
+        final boolean[] failed = new boolean[1];
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final Random random = new Random(t % 2);
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int game = 0; game < 20; game++) {
+                        GameState state = new GameState();
+                        state.reset();
+                        for (int ply = 0; ply < 30 && state.hasLegalMoves(); ply++) {
+                            List<Move> moves = state.getLegalMoves();
+                            for (Move move : state.getPossibleMoves()) {
+                                // Anything the cache says is legal must not leave the king in check
+                                if (moves.contains(move) != isLegal(state, move))
+                                    failed[0] = true;
+                            }
+                            state.movePiece(moves.get(random.nextInt(moves.size())));
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed[0]);
+        assertTrue("Threads replaying the same games should hit", cache.getHitRate() > 0.3);
+    }
+
+    private static boolean isLegal(GameState state, Move move) {
+        Player player = state.getCurrentPlayer();
+        state.movePiece(move);
+        boolean legal = !state.isInCheck(player);
+        state.undoMove(move);
+        return legal;
+    }
+}
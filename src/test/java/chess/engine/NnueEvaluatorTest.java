@@ -0,0 +1,123 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Move;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the neural network evaluator
+ */
+public class NnueEvaluatorTest {
+
+    @Test
+    public void testIncrementalMatchesRefresh() {
+        NnueNetwork network = NnueNetwork.random(64, 3);
+        NnueEvaluator incremental = new NnueEvaluator(network);
+        Random random = new Random(9);
+        GameState state = new GameState();
+        state.reset();
+
+        List<Move> played = new ArrayList<Move>();
+        for (int ply = 0; ply < 60; ply++) {
+            assertEquals(state.toFen(), new NnueEvaluator(network).evaluate(GameState.fromFen(state.toFen())),
+                    incremental.evaluate(state));
+            List<Move> moves = state.getLegalMoves();
+            if (moves.isEmpty())
+                break;
+            Move move = moves.get(random.nextInt(moves.size()));
+            state.movePiece(move);
+            played.add(move);
+        }
+
+        for (int i = played.size() - 1; i >= 0; i--) {
+            state.undoMove(played.get(i));
+        }
+        GameState start = new GameState();
+        start.reset();
+        assertEquals(new NnueEvaluator(network).evaluate(start), incremental.evaluate(state));
+
+        state.loadFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1");
+        assertEquals(new NnueEvaluator(network).evaluate(GameState.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1")),
+                incremental.evaluate(state));
+    }
+
+    @Test
+    public void testMaterialNetwork() {
+        NnueEvaluator evaluator = new NnueEvaluator(NnueNetwork.material(32));
+        GameState state = new GameState();
+        state.reset();
+        assertEquals(0, evaluator.evaluate(state));
+
+        GameState queenOdds = GameState.fromFen("rnb1kbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1");
+        assertEquals(900, evaluator.evaluate(queenOdds), 20);
+        GameState blackToMove = GameState.fromFen("rnb1kbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR b - - 0 1");
+        assertEquals(-900, evaluator.evaluate(blackToMove), 20);
+        assertEquals("The first game is no longer followed", 900, evaluator.evaluate(queenOdds), 20);
+        assertSame(evaluator, queenOdds.getPieceListener());
+        assertNull(blackToMove.getPieceListener());
+    }
+
+    @Test
+    public void testWideNetworkDoesNotOverflow() {
+        int hidden = 512;
+        short[] hiddenBiases = new short[hidden];
+        short[] outputWeights = new short[2 * hidden];
+        Arrays.fill(hiddenBiases, Short.MAX_VALUE);
+        Arrays.fill(outputWeights, Short.MAX_VALUE);
+        NnueNetwork network = new NnueNetwork(hidden, new short[NnueNetwork.INPUTS * hidden], hiddenBiases,
+                outputWeights, 0);
+
+        GameState state = new GameState();
+        state.reset();
+        assertEquals("The score should be clamped, not wrapped", Search.MATE / 2,
+                new NnueEvaluator(network).evaluate(state));
+    }
+
+    @Test
+    public void testRefusesGameWithAnotherListener() {
+        GameState state = new GameState();
+        state.reset();
+        NnueEvaluator first = new NnueEvaluator(NnueNetwork.material(32));
+        first.evaluate(state);
+        try {
+            new NnueEvaluator(NnueNetwork.material(32)).evaluate(state);
+            fail("The game's listener should not be replaced");
+        } catch (IllegalStateException e) {
+            assertSame(first, state.getPieceListener());
+        }
+    }
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+        NnueNetwork network = NnueNetwork.random(16, 5);
+        File file = File.createTempFile("network", ".nnue");
+        file.deleteOnExit();
+        network.write(file);
+
+        NnueNetwork loaded = NnueNetwork.load(file);
+        assertEquals(16, loaded.getHiddenSize());
+        GameState state = GameState.fromFen("r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w - - 0 5");
+        assertEquals(new NnueEvaluator(network).evaluate(state),
+                new NnueEvaluator(loaded).evaluate(GameState.fromFen(state.toFen())));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws IOException {
+        File file = File.createTempFile("network", ".nnue");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[100]);
+        out.close();
+        NnueNetwork.load(file);
+    }
+}
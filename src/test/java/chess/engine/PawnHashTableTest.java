@@ -0,0 +1,109 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import chess.Position;
+import chess.pieces.Pawn;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the pawn hash and the pawn structure table
+ */
+public class PawnHashTableTest {
+
+    @Test
+    public void testPawnHashFollowsPawns() {
+        Random random = new Random(4);
+        GameState state = new GameState();
+        state.reset();
+        List<Move> played = new ArrayList<Move>();
+        for (int ply = 0; ply < 60; ply++) {
+            assertEquals(state.toFen(), GameState.fromFen(state.toFen()).getPawnHash(), state.getPawnHash());
+            List<Move> moves = state.getLegalMoves();
+            if (moves.isEmpty())
+                break;
+            Move move = moves.get(random.nextInt(moves.size()));
+            long before = state.getPawnHash();
+            boolean pawns = state.getPieceAt(move.getOrigin()) instanceof Pawn
+                    || state.getPieceAt(move.getDestination()) instanceof Pawn;
+            state.movePiece(move);
+            if (!pawns)
+                assertEquals("Only pawn moves and captures change it", before, state.getPawnHash());
+            played.add(move);
+        }
+        for (int i = played.size() - 1; i >= 0; i--) {
+            state.undoMove(played.get(i));
+        }
+        GameState start = new GameState();
+        start.reset();
+        assertEquals(start.getPawnHash(), state.getPawnHash());
+        assertEquals(0, GameState.fromFen("4k3/8/8/8/8/8/8/R3K3 w - - 0 1").getPawnHash());
+    }
+
+    @Test
+    public void testStructureTerms() {
+        PawnHashTable table = new PawnHashTable(64);
+        // White: doubled and isolated c-pawns, the front one passed, and an isolated passed pawn on e5; Black: an
+        // isolated passed h-pawn
+        GameState state = GameState.fromFen("4k3/7p/8/4P3/8/2P5/2P5/4K3 w - - 0 1");
+        int entry = table.probe(state);
+
+        assertEquals(1L << new Position("c3").getIndex() | 1L << new Position("e5").getIndex(),
+                table.getPassedPawns(entry, Player.White));
+        assertEquals(1L << new Position("h7").getIndex(), table.getPassedPawns(entry, Player.Black));
+        int white = PawnHashTable.DOUBLED + 3 * PawnHashTable.ISOLATED + PawnHashTable.PASSED[2] + PawnHashTable.PASSED[4];
+        int black = PawnHashTable.ISOLATED + PawnHashTable.PASSED[1];
+        assertEquals(white - black, table.getScore(entry));
+    }
+
+    @Test
+    public void testHitRateInSearch() {
+        ClassicEvaluator evaluator = new ClassicEvaluator();
+        PawnHashTable table = new PawnHashTable(1 << 12);
+        evaluator.setPawnHashTable(table);
+        GameState state = GameState.fromFen("r1bqk2r/pppp1ppp/2n2n2/2b1p3/2B1P3/3P1N2/PPP2PPP/RNBQK2R w - - 0 5");
+        new Search(evaluator).search(state, 4);
+
+        assertTrue(table.toString(), table.getHitRate() > 0.8);
+        assertTrue(table.getMisses() > 1);
+    }
+
+    @Test
+    public void testCollisionsGiveTheSameScores() {
+        ClassicEvaluator cached = new ClassicEvaluator();
+        cached.setPawnHashTable(new PawnHashTable(1 << 10));
+        ClassicEvaluator uncached = new ClassicEvaluator();
+        PawnHashTable single = new PawnHashTable(1);
+        uncached.setPawnHashTable(single);
+
+        Random random = new Random(8);
+        GameState state = new GameState();
+        state.reset();
+        for (int ply = 0; ply < 60; ply++) {
+            assertEquals(state.toFen(), uncached.evaluate(state), cached.evaluate(state));
+            List<Move> moves = state.getLegalMoves();
+            if (moves.isEmpty())
+                break;
+            state.movePiece(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void testKingShelter() {
+        ClassicEvaluator evaluator = new ClassicEvaluator();
+        evaluator.setPawnHashTable(new PawnHashTable(16));
+        ClassicEvaluator plain = new ClassicEvaluator();
+
+        GameState sheltered = GameState.fromFen("6k1/5ppp/8/8/8/8/5PPP/6K1 w - - 0 1");
+        assertEquals("Symmetric shelters cancel", plain.evaluate(sheltered), evaluator.evaluate(sheltered));
+        GameState exposed = GameState.fromFen("6k1/8/5ppp/8/8/8/5PPP/6K1 w - - 0 1");
+        assertEquals(3 * ClassicEvaluator.SHIELD, evaluator.evaluate(exposed) - plain.evaluate(exposed));
+    }
+}
@@ -0,0 +1,104 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the alpha-beta search
+ */
+public class SearchTest {
+
+    @Test
+    public void testFindsMateInOne() {
+        GameState state = GameState.fromFen("k7/8/1K6/8/8/8/7Q/8 w - - 0 1");
+        SearchResult result = new Search(new ClassicEvaluator()).search(state, 3);
+
+        assertEquals(new Move(new Position("h2"), new Position("h8")), result.getBestMove());
+        assertTrue("A mate should be scored as one", result.getScore() > Search.MATE - 10);
+        assertEquals("The search should leave the position unchanged", "k7/8/1K6/8/8/8/7Q/8 w - - 0 1", state.toFen());
+    }
+
+    @Test
+    public void testTakesHangingQueen() {
+        GameState state = GameState.fromFen("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1");
+        SearchResult result = new Search(new ClassicEvaluator()).search(state, 2);
+
+        assertEquals(new Move(new Position("d1"), new Position("d5")), result.getBestMove());
+    }
+
+    @Test
+    public void testCheckmatedSideHasNoMove() {
+        GameState state = GameState.fromFen("k6Q/8/1K6/8/8/8/8/8 b - - 0 1");
+        SearchResult result = new Search(new ClassicEvaluator()).search(state, 2);
+
+        assertNull(result.getBestMove());
+        assertEquals(-Search.MATE, result.getScore());
+    }
+
+    @Test
+    public void testEvaluationIsSymmetric() {
+        Evaluator evaluator = new ClassicEvaluator();
+        GameState white = GameState.fromFen("4k3/pppp4/8/8/8/8/4PPPP/1N2K3 w - - 0 1");
+        GameState black = GameState.fromFen("1n2k3/4pppp/8/8/8/8/PPPP4/4K3 b - - 0 1");
+
+        assertEquals(evaluator.evaluate(white), evaluator.evaluate(black));
+    }
+
+    @Test
+    public void testTranspositionTableKeepsScores() {
+        Random random = new Random(12);
+        GameState state = new GameState();
+        state.reset();
+        Search plain = new Search(new ClassicEvaluator());
+        Search cached = new Search(new ClassicEvaluator());
+        cached.setTranspositionTable(new TranspositionTable(1 << 14));
+        for (int ply = 0; ply < 12; ply++) {
+            SearchResult expected = plain.search(state, 3);
+            SearchResult result = cached.search(state, 3);
+            assertEquals(state.toFen(), expected.getScore(), result.getScore());
+            assertTrue("The table should save work", result.getNodes() <= expected.getNodes());
+
+            List<Move> moves = state.getLegalMoves();
+            state.movePiece(moves.get(random.nextInt(moves.size())));
+        }
+    }
+
+    @Test
+    public void testMultiPv() {
+        GameState state = GameState.fromFen("4k3/8/8/3q4/8/8/8/3RK3 w - - 0 1");
+        Search search = new Search(new ClassicEvaluator());
+        search.setTranspositionTable(new TranspositionTable(1 << 12));
+        final List<Integer> updates = new ArrayList<Integer>();
+        List<SearchResult> lines = search.search(state, 3, 0, 3, new SearchListener() {
+            @Override
+            public void lineUpdated(int line, SearchResult result) {
+                updates.add(line);
+            }
+        });
+
+        assertEquals(3, lines.size());
+        assertEquals(new Move(new Position("d1"), new Position("d5")), lines.get(0).getBestMove());
+        assertEquals(3, lines.get(0).getPrincipalVariation().size());
+        Set<Move> moves = new HashSet<Move>();
+        for (int i = 0; i < lines.size(); i++) {
+            moves.add(lines.get(i).getBestMove());
+            if (i > 0)
+                assertTrue("Lines are best first", lines.get(i).getScore() <= lines.get(i - 1).getScore());
+        }
+        assertEquals("Each line has its own move", 3, moves.size());
+        assertEquals("Every line is reported at every depth", 9, updates.size());
+
+        // The best line of a multi-PV search is the single best move
+        assertEquals(new Search(new ClassicEvaluator()).search(state, 3).getScore(), lines.get(0).getScore());
+    }
+}
@@ -0,0 +1,76 @@
+package chess.fuzz;
+
+import chess.GameState;
+import chess.Move;
+import chess.pieces.Bishop;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the move generator fuzzer
+ */
+public class GeneratorFuzzerTest {
+
+    @Test
+    public void testIncrementalGeneratorAgrees() throws Exception {
+        GeneratorFuzzer fuzzer = new GeneratorFuzzer();
+        fuzzer.setGames(40);
+        fuzzer.setMaxPlies(100);
+        fuzzer.setThreads(2);
+
+        List<Discrepancy> discrepancies = fuzzer.run();
+        assertTrue(discrepancies.toString(), discrepancies.isEmpty());
+        assertTrue(fuzzer.getPositions() > 40);
+    }
+
+    @Test
+    public void testFindsAndShrinksBug() throws Exception {
+        GeneratorFuzzer fuzzer = new GeneratorFuzzer();
+        fuzzer.setGames(4);
+        fuzzer.setThreads(2);
+        fuzzer.addGenerator("no bishops", new Supplier<GameState>() {
+            @Override
+            public GameState get() {
+                return new GameState() {
+                    @Override
+                    public List<Move> getPossibleMoves() {
+                        List<Move> moves = new ArrayList<Move>();
+                        for (Move move : super.getPossibleMoves()) {
+                            if (!(getPieceAt(move.getOrigin()) instanceof Bishop))
+                                moves.add(move);
+                        }
+                        return moves;
+                    }
+                };
+            }
+        });
+
+        List<Discrepancy> discrepancies = fuzzer.run();
+        assertEquals(4, discrepancies.size());
+        Discrepancy first = discrepancies.get(0);
+        assertEquals("no bishops", first.getGenerator());
+        assertTrue(first.getDescription(), first.getDescription().startsWith("possible moves missing"));
+
+        // Only the kings and the bishop that can move should be left
+        String shrunk = first.getShrunkFen();
+        int pieces = 0;
+        for (int square = 0; square < 64; square++) {
+            if (GeneratorFuzzer.pieceAt(shrunk, square) != ' ')
+                pieces++;
+        }
+        assertEquals(shrunk, 3, pieces);
+    }
+
+    @Test
+    public void testRemovePiece() {
+        String start = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+        assertEquals('K', GeneratorFuzzer.pieceAt(start, 4));
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQ1BNR w - - 0 1", GeneratorFuzzer.removePiece(start, 4));
+        assertEquals("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/1NBQKBNR w - - 0 1", GeneratorFuzzer.removePiece(start, 0));
+    }
+}
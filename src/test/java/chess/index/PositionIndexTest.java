@@ -0,0 +1,116 @@
+package chess.index;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+import chess.pgn.PgnGame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for building and querying the position index
+ */
+public class PositionIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testLookupAcrossSegments() throws Exception {
+        File directory = folder.newFolder("index");
+        PositionIndexBuilder builder = new PositionIndexBuilder(directory, 5);
+        builder.addGame(0, game("e2", "e4", "e7", "e5"));
+        builder.addGame(1, game("d2", "d4", "d7", "d5"));
+        builder.addGame(2, game("e2", "e4", "c7", "c5"));
+        builder.close();
+
+        PositionIndex index = PositionIndex.open(directory);
+        try {
+            GameState state = new GameState();
+            state.reset();
+            assertTrue("All games start from the initial position",
+                    Arrays.equals(new int[] {0, 1, 2}, index.lookup(state)));
+
+            state.movePiece(new Move(new Position("e2"), new Position("e4")));
+            assertTrue(Arrays.equals(new int[] {0, 2}, index.lookup(state)));
+
+            state.movePiece(new Move(new Position("c7"), new Position("c5")));
+            assertTrue(Arrays.equals(new int[] {2}, index.lookup(state)));
+
+            state.movePiece(new Move(new Position("g1"), new Position("f3")));
+            assertEquals("No game reached this position", 0, index.lookup(state).length);
+            assertEquals("Three positions from each game", 9, index.size());
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testGameSpanningSegmentsIsFoundOnce() throws Exception {
+        File directory = folder.newFolder("spanning");
+        PositionIndexBuilder builder = new PositionIndexBuilder(directory, 5);
+        builder.addGame(0, game("e2", "e4", "e7", "e5"));
+        // Back to the initial position in the second segment
+        builder.addGame(1, game("g1", "f3", "g8", "f6", "f3", "g1", "f6", "g8"));
+        builder.close();
+        assertEquals(2, PositionIndex.listSegments(directory).length);
+
+        PositionIndex index = PositionIndex.open(directory);
+        try {
+            GameState state = new GameState();
+            state.reset();
+            assertTrue(Arrays.toString(index.lookup(state)), Arrays.equals(new int[] {0, 1}, index.lookup(state)));
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void testLookupInLargeSegment() throws Exception {
+        File directory = folder.newFolder("large");
+        PositionIndexBuilder builder = new PositionIndexBuilder(directory, 1 << 16);
+
+        // Random walks from the initial position give a segment with thousands of distinct hashes
+        Random random = new Random(7);
+        long[] finalHashes = new long[200];
+        for (int id = 0; id < finalHashes.length; id++) {
+            PgnGame game = new PgnGame();
+            GameState state = game.createInitialState();
+            for (int ply = 0; ply < 20; ply++) {
+                List<Move> moves = state.getPossibleMoves();
+                Move move = moves.get(random.nextInt(moves.size()));
+                state.movePiece(move);
+                game.addMove(move);
+            }
+            finalHashes[id] = state.getHash();
+            builder.addGame(id, game);
+        }
+        builder.close();
+
+        PositionIndex index = PositionIndex.open(directory);
+        try {
+            for (int id = 0; id < finalHashes.length; id++) {
+                int[] games = index.lookup(finalHashes[id]);
+                assertTrue("Game " + id + " should be found", Arrays.binarySearch(games, id) >= 0);
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    private static PgnGame game(String... squares) {
+        PgnGame game = new PgnGame();
+        for (int i = 0; i < squares.length; i += 2) {
+            game.addMove(new Move(new Position(squares[i]), new Position(squares[i + 1])));
+        }
+        return game;
+    }
+}
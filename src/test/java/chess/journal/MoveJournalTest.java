@@ -0,0 +1,187 @@
+package chess.journal;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import chess.Position;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Map;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for journaling and recovering games
+ */
+public class MoveJournalTest {
+    private static final String[] SHUFFLE = {"g1 f3", "g8 f6", "f3 g1", "f6 g8"};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecoverOpenGames() throws Exception {
+        File file = folder.newFile("games.journal");
+        MoveJournal journal = new MoveJournal(file, 1, 4);
+        GameState first = start(journal.openSession());
+        JournalSession secondSession = journal.openSession();
+        GameState second = start(secondSession);
+        JournalSession thirdSession = journal.openSession();
+        start(thirdSession);
+
+        play(first, journal.resumeSession(1), 3);
+        play(second, secondSession, 10);
+        thirdSession.end();
+        journal.sync();
+
+        // Open the file again without closing, as after a crash
+        MoveJournal recovered = new MoveJournal(file);
+        Map<Integer, GameState> games = recovered.getRecoveredGames();
+        assertEquals("The ended session should not be recovered", 2, games.size());
+        assertEquals(first.getHash(), games.get(1).getHash());
+        assertEquals(second.getHash(), games.get(2).getHash());
+        assertEquals(second.getFullmoveNumber(), games.get(2).getFullmoveNumber());
+        assertEquals("New sessions are numbered after the recovered ones", 4, recovered.openSession().getSession());
+        recovered.close();
+        journal.close();
+    }
+
+    @Test
+    public void testTornTailIsDropped() throws Exception {
+        File file = folder.newFile("torn.journal");
+        MoveJournal journal = new MoveJournal(file);
+        JournalSession session = journal.openSession();
+        GameState state = start(session);
+        play(state, session, 2);
+        journal.close();
+        long length = file.length();
+
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[] {0, 0, 0, 40, 1, 2, 3, 4, 'M', 0});
+        out.close();
+
+        journal = new MoveJournal(file);
+        assertEquals(state.getHash(), journal.getRecoveredGames().get(1).getHash());
+        assertEquals("The torn batch should be cut off", length, file.length());
+
+        // Records written after the cut are recovered too
+        session = journal.resumeSession(1);
+        play(state, session, 1);
+        journal.close();
+        journal = new MoveJournal(file);
+        assertEquals(state.getHash(), journal.getRecoveredGames().get(1).getHash());
+        journal.close();
+    }
+
+    @Test
+    public void testGroupCommit() throws Exception {
+        File file = folder.newFile("busy.journal");
+        final MoveJournal journal = new MoveJournal(file, 5, 64);
+        Thread[] threads = new Thread[8];
+        final GameState[] states = new GameState[threads.length];
+        for (int i = 0; i < threads.length; i++) {
+            final JournalSession session = journal.openSession();
+            states[i] = start(session);
+            final GameState state = states[i];
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    play(state, session, 500);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+
+        assertEquals(8 * 501, journal.getRecords());
+        assertTrue("Moves of many sessions should share a flush", journal.getBatches() < journal.getRecords() / 10);
+        MoveJournal recovered = new MoveJournal(file);
+        for (int i = 0; i < states.length; i++) {
+            assertEquals(states[i].getHash(), recovered.getRecoveredGames().get(i + 1).getHash());
+        }
+        recovered.close();
+    }
+
+    @Test
+    public void testCheckpointKeepsOpenGames() throws Exception {
+        File file = folder.newFile("checkpoint.journal");
+        MoveJournal journal = new MoveJournal(file, 1, 64);
+        JournalSession open = journal.openSession();
+        GameState state = start(open);
+        for (int i = 0; i < 20; i++) {
+            JournalSession session = journal.openSession();
+            play(start(session), session, 30);
+            session.end();
+        }
+        play(state, open, 5);
+        journal.sync();
+        long length = file.length();
+
+        journal.checkpoint();
+        assertTrue("The ended games should be dropped", file.length() < length / 10);
+        assertFalse(new File(file.getPath() + ".checkpoint").exists());
+
+        // Records written after the checkpoint go to the new file
+        play(state, open, 3);
+        journal.sync();
+        MoveJournal recovered = new MoveJournal(file);
+        assertEquals(1, recovered.getRecoveredGames().size());
+        assertEquals(state.getHash(), recovered.getRecoveredGames().get(1).getHash());
+        assertEquals("Session numbers should not be reused", 22, recovered.openSession().getSession());
+        recovered.close();
+        journal.close();
+    }
+
+    @Test
+    public void testCheckpointWhenFileGrows() throws Exception {
+        File file = folder.newFile("growing.journal");
+        MoveJournal journal = new MoveJournal(file, 1, 8, 4096);
+        GameState[] states = new GameState[3];
+        JournalSession[] sessions = new JournalSession[states.length];
+        for (int i = 0; i < states.length; i++) {
+            sessions[i] = journal.openSession();
+            states[i] = start(sessions[i]);
+        }
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < states.length; i++) {
+                play(states[i], sessions[i], 1);
+            }
+            if (round % 10 == 0)
+                journal.sync();
+        }
+        journal.sync();
+
+        assertTrue("The journal should have been checkpointed", journal.getCheckpoints() > 0);
+        assertTrue("The journal should stay near the checkpoint size", file.length() < 2 * 4096);
+        MoveJournal recovered = new MoveJournal(file);
+        for (int i = 0; i < states.length; i++) {
+            assertEquals(states[i].getHash(), recovered.getRecoveredGames().get(i + 1).getHash());
+        }
+        recovered.close();
+        journal.close();
+    }
+
+    private static GameState start(JournalSession session) {
+        GameState state = new GameState();
+        state.reset();
+        session.gameStarted(state);
+        return state;
+    }
+
+    private static void play(GameState state, JournalSession session, int plies) {
+        for (int i = 0; i < plies; i++) {
+            int ply = (state.getFullmoveNumber() - 1) * 2 + (state.getCurrentPlayer() == Player.White ? 0 : 1);
+            String[] squares = SHUFFLE[ply % SHUFFLE.length].split(" ");
+            Move move = new Move(new Position(squares[0]), new Position(squares[1]));
+            state.movePiece(move);
+            session.movePlayed(state, move);
+        }
+    }
+}
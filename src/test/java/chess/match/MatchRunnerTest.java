@@ -0,0 +1,70 @@
+package chess.match;
+
+import chess.engine.ClassicEvaluator;
+import chess.engine.Engine;
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the match runner and its statistics
+ */
+public class MatchRunnerTest {
+
+    @Test
+    public void testRunsAllGames() throws Exception {
+        MatchRunner runner = new MatchRunner(engine("a", 1), engine("b", 1));
+        runner.setGames(4);
+        runner.setThreads(2);
+        runner.setMaxPlies(40);
+
+        MatchResult result = runner.run();
+        assertEquals(4, result.getGames());
+        assertTrue("Throughput should be reported", result.getGamesPerHour() > 0);
+    }
+
+    @Test
+    public void testEloFromScore() {
+        MatchResult result = new MatchResult("a", "b");
+        for (int i = 0; i < 75; i++) {
+            result.addGame(1, 0);
+        }
+        for (int i = 0; i < 25; i++) {
+            result.addGame(0, 0);
+        }
+
+        assertEquals(0.75, result.getScore(), 1e-9);
+        assertEquals("A 75% score is worth about 191 Elo", 190.8, result.getEloDifference(), 0.1);
+        assertTrue(result.getEloError() > 0);
+    }
+
+    @Test
+    public void testSprtDecisions() {
+        MatchResult even = new MatchResult("a", "b");
+        for (int i = 0; i < 2000; i++) {
+            even.addGame(i % 2, 0);
+        }
+        assertEquals("An even score should accept elo0", -1, even.getSprtDecision(0, 20, 0.05, 0.05));
+
+        MatchResult strong = new MatchResult("a", "b");
+        for (int i = 0; i < 2000; i++) {
+            strong.addGame(i % 3 == 0 ? 0 : 1, 0);
+        }
+        assertEquals("A 67% score should accept elo1", 1, strong.getSprtDecision(0, 20, 0.05, 0.05));
+
+        MatchResult early = new MatchResult("a", "b");
+        early.addGame(1, 0);
+        assertEquals("One game decides nothing", 0, early.getSprtDecision(0, 20, 0.05, 0.05));
+    }
+
+    private static Supplier<Engine> engine(final String name, final int depth) {
+        return new Supplier<Engine>() {
+            @Override
+            public Engine get() {
+                return new Engine(name, new ClassicEvaluator(), depth);
+            }
+        };
+    }
+}
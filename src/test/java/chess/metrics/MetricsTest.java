@@ -0,0 +1,93 @@
+package chess.metrics;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the metrics registry and latency histograms
+ */
+public class MetricsTest {
+
+    @Test
+    public void testBucketsAreWithinAnEighth() {
+        for (long value = 0; value < 1L << 40; value = value * 3 / 2 + 1) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.bucket(value));
+            assertTrue(value + " <= " + upper, value <= upper);
+            assertTrue(value + " within 12.5% of " + upper, upper - value <= Math.max(0, value / 8));
+        }
+        assertTrue(LatencyHistogram.bucket(Long.MAX_VALUE) < 496);
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        assertEquals(0, histogram.getPercentile(50));
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500500.0, histogram.getMean(), 1e-6);
+        long median = histogram.getPercentile(50);
+        assertTrue("Median " + median, median >= 500000 && median <= 500000 * 9 / 8);
+        assertEquals(1000000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram("concurrent");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(i + offset);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, histogram.getCount());
+        assertEquals(10002, histogram.getMax());
+    }
+
+    @Test
+    public void testReportAndDump() throws Exception {
+        Metrics.counter("test.counter").add(3);
+        Metrics.histogram("test.histogram").record(2000);
+        assertSame(Metrics.histogram("test.histogram"), Metrics.histogram("test.histogram"));
+
+        String report = Metrics.report();
+        assertTrue(report, report.contains("test.counter"));
+        assertTrue(report, report.contains("test.histogram"));
+
+        File file = File.createTempFile("metrics", ".txt");
+        file.deleteOnExit();
+        Metrics.dump(file);
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            assertTrue(reader.readLine().startsWith("#"));
+            assertNotNull(reader.readLine());
+        } finally {
+            reader.close();
+        }
+
+        Metrics.reset();
+        assertFalse(Metrics.report().contains("test.counter"));
+    }
+}
@@ -0,0 +1,123 @@
+package chess.pgn;
+
+import chess.GameState;
+import chess.Move;
+import chess.Position;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for reading and writing PGN
+ */
+public class PgnTest {
+
+    private static final String ARCHIVE =
+            "[Event \"Fool's \\\"mate\\\"\"]\n" +
+            "[Site \"?\"]\n" +
+            "[Result \"0-1\"]\n" +
+            "\n" +
+            "1. f3 {weak} e5 2. g4?? (2. e4 Nc6) 2... Qh4# $4 0-1\n" +
+            "\n" +
+            "% escaped line\n" +
+            "[Event \"Castles\"]\n" +
+            "\n" +
+            "1.e4 e5 2.Nf3 Nc6 3.Bc4 Bc5 4.O-O Nf6 1/2-1/2\n" +
+            "\n" +
+            "[FEN \"4k3/8/8/8/8/8/8/R3K2R w - - 0 30\"]\n" +
+            "\n" +
+            "30. Rad1 ; the a-rook\n" +
+            "Kf7 *\n";
+
+    @Test
+    public void testReadArchive() throws Exception {
+        List<PgnGame> games = readAll(ARCHIVE);
+
+        assertEquals("Should have read three games", 3, games.size());
+
+        PgnGame foolsMate = games.get(0);
+        assertNull("The first game should replay", foolsMate.getError());
+        assertEquals("Fool's \"mate\"", foolsMate.getTag("Event"));
+        assertEquals("0-1", foolsMate.getResult());
+        assertEquals("Should have replayed four moves", 4, foolsMate.getMoves().size());
+        assertEquals(new Move(new Position("d8"), new Position("h4")), foolsMate.getMoves().get(3));
+        assertEquals("rnb1kbnr/pppp1ppp/8/4p3/6Pq/5P2/PPPPP2P/RNBQKBNR w - - 1 3",
+                foolsMate.getFinalState().toFen());
+
+        PgnGame castles = games.get(1);
+        assertNotNull("Castling is not supported", castles.getError());
+        assertEquals("The moves before castling should replay", 6, castles.getMoves().size());
+        assertEquals("1/2-1/2", castles.getResult());
+
+        PgnGame fromFen = games.get(2);
+        assertNull("The third game should replay", fromFen.getError());
+        assertEquals(new Move(new Position("a1"), new Position("d1")), fromFen.getMoves().get(0));
+        assertEquals("*", fromFen.getResult());
+    }
+
+    @Test
+    public void testReaderStatistics() throws Exception {
+        PgnReader reader = new PgnReader(Channels.newChannel(new ByteArrayInputStream(ARCHIVE.getBytes("ISO-8859-1"))));
+        while (reader.readGame() != null) {
+            // Read everything
+        }
+
+        assertEquals(3, reader.getGamesRead());
+        assertEquals(1, reader.getGamesFailed());
+        assertTrue("Throughput should be reported", reader.getGamesPerSecond() > 0);
+    }
+
+    @Test
+    public void testWriteAndReadBack() throws Exception {
+        PgnGame original = readAll(ARCHIVE).get(0);
+
+        StringWriter out = new StringWriter();
+        PgnWriter writer = new PgnWriter(out);
+        writer.write(original);
+        writer.flush();
+
+        String pgn = out.toString();
+        assertTrue("The movetext should be written in SAN", pgn.contains("1. f3 e5 2. g4 Qh4 0-1"));
+        assertTrue("Quotes should be escaped", pgn.contains("[Event \"Fool's \\\"mate\\\"\"]"));
+
+        PgnGame copy = readAll(pgn).get(0);
+        assertEquals(original.getMoves(), copy.getMoves());
+        assertEquals(original.getTag("Event"), copy.getTag("Event"));
+        assertEquals("Missing roster tags should be filled in", "?", copy.getTag("White"));
+    }
+
+    @Test
+    public void testSanDisambiguation() {
+        GameState state = GameState.fromFen("4k3/8/8/8/8/8/4K3/R6R w - - 0 1");
+        Move move = San.parse(state, "Rad1");
+
+        assertEquals(new Move(new Position("a1"), new Position("d1")), move);
+        assertEquals("Rad1", San.format(state, move));
+    }
+
+    @Test
+    public void testSanIgnoresPinnedPieces() {
+        // Both knights reach d4, but the one on e2 is pinned to its king
+        GameState state = GameState.fromFen("4k3/4r3/8/8/8/8/2N1N3/4K3 w - - 0 1");
+        assertEquals(new Move(new Position("c2"), new Position("d4")), San.parse(state, "Nd4"));
+    }
+
+    private static List<PgnGame> readAll(String pgn) throws Exception {
+        final List<PgnGame> games = new ArrayList<PgnGame>();
+        PgnReader reader = new PgnReader(Channels.newChannel(new ByteArrayInputStream(pgn.getBytes("ISO-8859-1"))));
+        reader.readAll(new Consumer<PgnGame>() {
+            @Override
+            public void accept(PgnGame game) {
+                games.add(game);
+            }
+        });
+        return games;
+    }
+}
@@ -0,0 +1,102 @@
+package chess.record;
+
+import chess.Move;
+import chess.Position;
+import chess.pgn.PgnGame;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the binary game record format
+ */
+public class GameRecordTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        PgnGame foolsMate = new PgnGame();
+        foolsMate.setTag("Event", "Fool's mate");
+        foolsMate.addMove(move("f2", "f3"));
+        foolsMate.addMove(move("e7", "e5"));
+        foolsMate.addMove(move("g2", "g4"));
+        foolsMate.addMove(move("d8", "h4"));
+        foolsMate.setResult("0-1");
+
+        PgnGame endgame = new PgnGame();
+        endgame.setTag("FEN", "4k3/8/8/8/8/8/4K3/R6R w - - 0 1");
+        endgame.addMove(move("a1", "d1"));
+        endgame.setResult("1/2-1/2");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(out);
+        for (int i = 0; i < 1000; i++) {
+            writer.write(i % 2 == 0 ? foolsMate : endgame);
+        }
+        writer.close();
+
+        GameRecordReader reader = new GameRecordReader(new ByteArrayInputStream(out.toByteArray()));
+        for (int i = 0; i < 1000; i++) {
+            PgnGame expected = i % 2 == 0 ? foolsMate : endgame;
+            PgnGame game = reader.readGame();
+
+            assertNotNull("Game " + i + " should be read", game);
+            assertEquals(expected.getMoves(), game.getMoves());
+            assertEquals(expected.getTags(), game.getTags());
+            assertEquals(expected.getResult(), game.getResult());
+        }
+        assertNull("There should be no more games", reader.readGame());
+        assertEquals(1000, reader.getGamesRead());
+    }
+
+    @Test
+    public void testMovesTakeOneByte() throws Exception {
+        PgnGame game = new PgnGame();
+        game.addMove(move("f2", "f3"));
+        game.addMove(move("e7", "e5"));
+        game.addMove(move("g2", "g4"));
+        game.addMove(move("d8", "h4"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(out);
+        writer.write(game);
+        writer.close();
+
+        // header 5, block header 2, result 1, tag count 1, move count 1, moves 4
+        assertEquals(14, out.size());
+    }
+
+    @Test
+    public void testFinalStateIsReplayed() throws Exception {
+        PgnGame game = new PgnGame();
+        game.addMove(move("e2", "e4"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GameRecordWriter writer = new GameRecordWriter(out);
+        writer.write(game);
+        writer.close();
+
+        PgnGame copy = new GameRecordReader(new ByteArrayInputStream(out.toByteArray())).readGame();
+        assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1", copy.getFinalState().toFen());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testImpossibleMoveIsRejected() throws Exception {
+        PgnGame game = new PgnGame();
+        game.addMove(move("e2", "e5"));
+
+        new GameRecordWriter(new ByteArrayOutputStream()).write(game);
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsOtherFiles() throws Exception {
+        new GameRecordReader(new ByteArrayInputStream("[Event \"?\"]".getBytes("US-ASCII")));
+    }
+
+    private static Move move(String from, String to) {
+        return new Move(new Position(from), new Position(to));
+    }
+}
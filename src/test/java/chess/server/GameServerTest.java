@@ -0,0 +1,179 @@
+package chess.server;
+
+import chess.GameState;
+import chess.journal.MoveJournal;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for the game server and its load client
+ */
+public class GameServerTest {
+    private GameServer server;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new GameServer(0);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void testSessionsAreIndependent() throws Exception {
+        Socket first = new Socket("localhost", server.getPort());
+        Socket second = new Socket("localhost", server.getPort());
+        try {
+            send(first, "move e2 e4");
+            send(first, "fen");
+            send(second, "fen");
+            send(first, "quit");
+            send(second, "quit");
+
+            String firstOutput = readAll(first);
+            String secondOutput = readAll(second);
+            assertTrue(firstOutput.contains("Welcome to Chess!"));
+            assertTrue(firstOutput.contains("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1"));
+            assertTrue(secondOutput.contains("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1"));
+            assertTrue("Quit should end the session", secondOutput.contains("Goodbye!"));
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    @Test
+    public void testLoadClient() throws Exception {
+        LoadClient client = new LoadClient("localhost", server.getPort());
+        client.setClients(20);
+        client.setMovesPerClient(10);
+        client.run();
+
+        assertTrue("Every move needs a list and a move command", client.getCommands() >= 20 * 10 * 2);
+        assertTrue(server.getTotalSessions() >= 20);
+        assertTrue(client.getCommandsPerSecond() > 0);
+        assertTrue(client.getMaxLatencyMillis() >= client.getAverageLatencyMillis());
+    }
+
+    @Test
+    public void testResumeAfterRestart() throws Exception {
+        File file = folder.newFile("server.journal");
+        MoveJournal journal = new MoveJournal(file, 1, 64);
+        GameServer crashed = new GameServer(0);
+        crashed.setJournal(journal);
+        crashed.start();
+        MoveJournal restartedJournal = null;
+        GameServer restarted = null;
+        Socket first = new Socket("localhost", crashed.getPort());
+        try {
+            BufferedReader firstIn = reader(first);
+            String session = readUntil(firstIn, "Journal session ").substring("Journal session ".length());
+            send(first, "move e2 e4");
+            send(first, "fen");
+            readUntil(firstIn, "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b - - 0 1");
+            journal.sync();
+
+            // Open the journal again while the first server still holds the game, as after a crash
+            restartedJournal = new MoveJournal(file);
+            restarted = new GameServer(0);
+            restarted.setJournal(restartedJournal);
+            restarted.start();
+            assertTrue(restarted.getResumableSessions().contains(Integer.parseInt(session)));
+
+            Socket second = new Socket("localhost", restarted.getPort());
+            try {
+                send(second, "resume " + session);
+                send(second, "move e7 e5");
+                send(second, "fen");
+                send(second, "resume " + session);
+                send(second, "quit");
+                String output = readAll(second);
+                assertTrue(output.contains("Resumed journal session " + session));
+                assertTrue(output.contains("rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w - - 0 2"));
+                assertTrue("A game is resumed once", output.contains("No recovered game for session " + session));
+            } finally {
+                second.close();
+            }
+            assertTrue(restarted.getResumableSessions().isEmpty());
+        } finally {
+            first.close();
+            if (restarted != null)
+                restarted.close();
+            if (restartedJournal != null)
+                restartedJournal.close();
+            crashed.close();
+            journal.close();
+        }
+    }
+
+    @Test
+    public void testUnclaimedGamesAreEnded() throws Exception {
+        File file = folder.newFile("abandoned.journal");
+        MoveJournal journal = new MoveJournal(file, 1, 64);
+        GameState state = new GameState();
+        state.reset();
+        journal.openSession().gameStarted(state);
+        journal.close();
+
+        journal = new MoveJournal(file, 1, 64);
+        GameServer restarted = new GameServer(0);
+        restarted.setJournal(journal, 10);
+        for (int i = 0; i < 500 && !restarted.getResumableSessions().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(restarted.getResumableSessions().isEmpty());
+        restarted.close();
+        journal.close();
+        journal = new MoveJournal(file);
+        assertTrue("The abandoned game should be ended", journal.getRecoveredGames().isEmpty());
+        journal.close();
+    }
+
+    private static BufferedReader reader(Socket socket) throws Exception {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+    }
+
+    private static String readUntil(BufferedReader in, String prefix) throws Exception {
+        String line;
+        while ((line = in.readLine()) != null) {
+            int start = line.indexOf(prefix);
+            if (start >= 0)
+                return line.substring(start);
+        }
+        fail("No line with " + prefix);
+        return null;
+    }
+
+    private static void send(Socket socket, String command) throws Exception {
+        OutputStream out = socket.getOutputStream();
+        out.write((command + "\n").getBytes("US-ASCII"));
+        out.flush();
+    }
+
+    private static String readAll(Socket socket) throws Exception {
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+        StringBuilder output = new StringBuilder();
+        String line;
+        while ((line = in.readLine()) != null) {
+            output.append(line).append('\n');
+        }
+        return output.toString();
+    }
+}
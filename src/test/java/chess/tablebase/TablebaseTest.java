@@ -0,0 +1,160 @@
+package chess.tablebase;
+
+import chess.GameState;
+import chess.Move;
+import chess.Player;
+import chess.Position;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Unit tests for generating and probing endgame tables
+ */
+public class TablebaseTest {
+
+    private static File directory;
+    private static int longestQueenMate;
+    private static int longestRookMate;
+
+    @BeforeClass
+    public static void generateTables() throws IOException {
+        directory = File.createTempFile("tablebase", "");
+        directory.delete();
+        directory.deleteOnExit();
+
+        TablebaseGenerator generator = new TablebaseGenerator(directory);
+        longestQueenMate = generator.generate("KQK");
+        longestRookMate = generator.generate("KRK");
+        generator.generate("KPK");
+        for (File file : directory.listFiles()) {
+            file.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void testLongestMates() {
+        assertEquals("KQK is mate in at most 10 moves", 20, longestQueenMate);
+        assertEquals("KRK is mate in at most 16 moves", 32, longestRookMate);
+    }
+
+    @Test
+    public void testMateInOne() throws IOException {
+        Tablebase tablebase = new Tablebase(directory);
+        GameState state = GameState.fromFen("k7/8/1K6/8/8/8/7Q/8 w - - 0 1");
+
+        TablebaseResult result = tablebase.probe(state);
+        assertTrue("White should win", result.isWin());
+        assertEquals(1, result.getPlies());
+        assertEquals(new Move(new Position("h2"), new Position("h8")), tablebase.bestMove(state));
+    }
+
+    @Test
+    public void testCheckmatedAndMirrored() throws IOException {
+        Tablebase tablebase = new Tablebase(directory);
+
+        TablebaseResult mated = tablebase.probe(GameState.fromFen("k6Q/8/1K6/8/8/8/8/8 b - - 0 1"));
+        assertTrue("Black should be mated", mated.isLoss());
+        assertEquals(0, mated.getPlies());
+
+        // The same position with the colours swapped is read from the KQK table as well
+        TablebaseResult swapped = tablebase.probe(GameState.fromFen("8/8/8/8/8/1k6/8/K6q w - - 0 1"));
+        assertTrue("White should be mated", swapped.isLoss());
+        assertEquals(0, swapped.getPlies());
+    }
+
+    @Test
+    public void testPawnEndgames() throws IOException {
+        Tablebase tablebase = new Tablebase(directory);
+
+        assertTrue("Stalemate is a draw",
+                tablebase.probe(GameState.fromFen("4k3/4P3/4K3/8/8/8/8/8 b - - 0 1")).isDraw());
+        assertTrue("A pawn never promotes, so king and pawn cannot win",
+                tablebase.probe(GameState.fromFen("4k3/8/4K3/4P3/8/8/8/8 w - - 0 1")).isDraw());
+        TablebaseResult lastRank = tablebase.probe(GameState.fromFen("4P3/8/8/8/8/k7/8/K7 w - - 0 1"));
+        assertNotNull("A pawn on the last rank is a legal position", lastRank);
+        assertTrue(lastRank.isDraw());
+    }
+
+    @Test
+    public void testMovesFollowTheGame() {
+        Random random = new Random(1);
+        char[] men = {'K', 'k', 'P', 'p'};
+        EndgameBoard board = new EndgameBoard();
+        EndgameBoard child = new EndgameBoard();
+        int[] moves = new int[2 * 64 * Material.MAX_MEN];
+        for (int position = 0; position < 2000; position++) {
+            char[] squares = new char[64];
+            for (char man : men) {
+                int square;
+                do {
+                    square = random.nextInt(64);
+                } while (squares[square] != 0);
+                squares[square] = man;
+            }
+            GameState state = GameState.fromFen(toFen(squares, random.nextBoolean() ? "w" : "b"));
+            int side = state.getCurrentPlayer() == Player.White ? Material.WHITE : Material.BLACK;
+            board.men = 4;
+            for (int i = 0; i < 4; i++) {
+                board.squares[i] = new String(squares).indexOf(men[i]);
+                board.types[i] = i < 2 ? Material.KING : Material.PAWN;
+                board.colors[i] = i % 2 == 0 ? Material.WHITE : Material.BLACK;
+            }
+            board.refresh();
+            if (board.inCheck(1 - side))
+                continue;
+
+            // Pawns on every rank, double steps from any rank and no promotion, as in the game
+            Set<Move> expected = new HashSet<Move>(state.getLegalMoves());
+            Set<Move> actual = new HashSet<Move>();
+            int count = board.generateMoves(side, moves);
+            for (int i = 0; i < count; i += 2) {
+                child.copyFrom(board);
+                child.makeMove(moves[i], moves[i + 1]);
+                if (!child.inCheck(side))
+                    actual.add(new Move(Position.fromIndex(board.squares[moves[i]]), Position.fromIndex(moves[i + 1])));
+            }
+            assertEquals(state.toFen(), expected, actual);
+        }
+    }
+
+    @Test
+    public void testUnavailableAndIllegal() throws IOException {
+        Tablebase tablebase = new Tablebase(directory);
+
+        assertNull("KBNK was not generated", tablebase.probe(GameState.fromFen("k7/8/8/8/8/8/8/KBN5 w - - 0 1")));
+        assertNull("The side not to move may not be in check",
+                tablebase.probe(GameState.fromFen("k6Q/8/1K6/8/8/8/8/8 w - - 0 1")));
+        assertTrue("Bare kings are a draw", tablebase.probe(GameState.fromFen("k7/8/8/8/8/8/8/K7 w - - 0 1")).isDraw());
+    }
+
+    private static String toFen(char[] board, String side) {
+        StringBuilder fen = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                char man = board[rank * 8 + file];
+                if (man == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0)
+                    fen.append(empty);
+                empty = 0;
+                fen.append(man);
+            }
+            if (empty > 0)
+                fen.append(empty);
+            if (rank > 0)
+                fen.append('/');
+        }
+        return fen.append(' ').append(side).append(" - - 0 1").toString();
+    }
+}